@@ -0,0 +1,63 @@
+package be.kuleuven.pylos.bench;
+
+import be.kuleuven.pylos.game.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Make/unmake on PylosBoard: add + remove of a reserve sphere and move + moveDown of a used sphere.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+
+	@Param({ReferencePositions.OPENING, ReferencePositions.MIDGAME, ReferencePositions.ENDGAME})
+	public String position;
+
+	private PylosBoard board;
+	private PylosSphere reserve;
+	private PylosLocation addLocation;
+	private PylosSphere movable;
+	private PylosLocation moveFrom;
+	private PylosLocation moveTo;
+
+	@Setup
+	public void setup() {
+		ReferencePositions.Position reference = ReferencePositions.get(position);
+		board = reference.board;
+		reserve = board.getReserve(reference.color);
+		for (PylosLocation location : board.getLocations()) {
+			if (location.isUsable()) addLocation = location;
+		}
+		for (PylosSphere sphere : board.getSpheres()) {
+			for (PylosLocation location : board.getLocations()) {
+				if (!sphere.isReserve() && sphere.canMoveTo(location)) {
+					movable = sphere;
+					moveFrom = sphere.getLocation();
+					moveTo = location;
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public long addRemove() {
+		board.add(reserve, addLocation);
+		board.remove(reserve);
+		return board.toLong();
+	}
+
+	@Benchmark
+	public long moveMoveDown() {
+		if (movable == null) return board.toLong();
+		board.move(movable, moveTo);
+		board.moveDown(movable, moveFrom);
+		return board.toLong();
+	}
+
+}
@@ -0,0 +1,60 @@
+package be.kuleuven.pylos.bench;
+
+import be.kuleuven.pylos.game.PylosGameState;
+import be.kuleuven.pylos.player.PylosPlayerObserver;
+import be.kuleuven.pylos.player.codes.PylosPlayerMiniMax;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed depth PylosPlayerMiniMax searches on the reference positions, reported as searches/s and nodes/s.
+ * The move ordering shows as cutoffs/s and firstMoveCutoffs/s, their ratio is the first move cutoff rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MiniMaxBenchmark {
+
+	@Param({ReferencePositions.OPENING, ReferencePositions.MIDGAME, ReferencePositions.ENDGAME})
+	public String position;
+
+	@Param({"3", "5"})
+	public int depth;
+
+	private ReferencePositions.Position reference;
+	private PylosPlayerMiniMax player;
+	private RecordingGame game;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Nodes {
+		public long nodes;
+		public long cutoffs;
+		public long firstMoveCutoffs;
+	}
+
+	@Setup
+	public void setup() {
+		reference = ReferencePositions.get(position);
+		player = new PylosPlayerMiniMax(depth);
+		player.init(reference.color, null, PylosPlayerObserver.NONE, new Random(0));
+		game = new RecordingGame(PylosGameState.MOVE);
+	}
+
+	@Benchmark
+	public Object search(Nodes counter) {
+		/* a new game, so every search starts from an empty table */
+		player.init(reference.color, null, PylosPlayerObserver.NONE, new Random(0));
+		player.doMove(game, reference.board);
+		counter.nodes += player.getNodes();
+		counter.cutoffs += player.getCutoffs();
+		counter.firstMoveCutoffs += player.getFirstMoveCutoffs();
+		return game.location;
+	}
+
+}
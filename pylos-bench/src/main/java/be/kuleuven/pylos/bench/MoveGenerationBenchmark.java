@@ -0,0 +1,67 @@
+package be.kuleuven.pylos.bench;
+
+import be.kuleuven.pylos.game.*;
+import be.kuleuven.pylos.game.bits.PylosBitBoard;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Move generation through PylosLocation.isUsable and PylosSphere.canMoveTo, and the same on a PylosBitBoard.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveGenerationBenchmark {
+
+	@Param({ReferencePositions.OPENING, ReferencePositions.MIDGAME, ReferencePositions.ENDGAME})
+	public String position;
+
+	private PylosBoard board;
+	private PylosBitBoard bitBoard;
+	private PylosPlayerColor color;
+
+	@Setup
+	public void setup() {
+		ReferencePositions.Position reference = ReferencePositions.get(position);
+		board = reference.board;
+		bitBoard = PylosBitBoard.fromBoard(board);
+		color = reference.color;
+	}
+
+	@Benchmark
+	public int usableLocations() {
+		int usable = 0;
+		for (PylosLocation location : board.getLocations()) {
+			if (location.isUsable()) usable++;
+		}
+		return usable;
+	}
+
+	@Benchmark
+	public int sphereMoves() {
+		int moves = 0;
+		PylosLocation[] locations = board.getLocations();
+		for (PylosSphere sphere : board.getSpheres(color)) {
+			if (!sphere.isReserve()) {
+				for (PylosLocation location : locations) {
+					if (sphere.canMoveTo(location)) moves++;
+				}
+			}
+		}
+		return moves;
+	}
+
+	@Benchmark
+	public int bitBoardMoves() {
+		int moves = Integer.bitCount(bitBoard.getUsable());
+		for (int m = bitBoard.getSpheres(color); m != 0; m &= m - 1) {
+			moves += Integer.bitCount(bitBoard.getMoveTargets(Integer.numberOfTrailingZeros(m)));
+		}
+		return moves;
+	}
+
+}
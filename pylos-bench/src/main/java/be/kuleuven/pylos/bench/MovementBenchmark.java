@@ -0,0 +1,39 @@
+package be.kuleuven.pylos.bench;
+
+import be.kuleuven.pylos.game.PylosGameSimulator;
+import be.kuleuven.pylos.game.PylosGameState;
+import be.kuleuven.pylos.player.student.Movement;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Movement.simulate of pylos-student from the reference positions, as StudentPlayerBestFit calls it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MovementBenchmark {
+
+	@Param({ReferencePositions.OPENING, ReferencePositions.MIDGAME, ReferencePositions.ENDGAME})
+	public String position;
+
+	private ReferencePositions.Position reference;
+
+	@Setup
+	public void setup() {
+		reference = ReferencePositions.get(position);
+	}
+
+	@Benchmark
+	public Movement simulate() {
+		Movement root = new Movement(reference.color.other(), PylosGameState.MOVE);
+		PylosGameSimulator simulator = new PylosGameSimulator(PylosGameState.MOVE, reference.color, reference.board);
+		return root.simulate(simulator, reference.board, 0, true, new HashMap<>());
+	}
+
+}
@@ -0,0 +1,58 @@
+package be.kuleuven.pylos.bench;
+
+import be.kuleuven.pylos.game.PylosGameState;
+import be.kuleuven.pylos.player.PylosPlayerObserver;
+import be.kuleuven.pylos.player.codes.PylosPlayerMiniMax;
+
+import java.util.Random;
+
+/**
+ * Speedup of the young brothers wait search of PylosPlayerMiniMax over the serial search, per thread count,
+ * and a check that every thread count plays the move of the serial search.
+ * <p>
+ * usage: ParallelSearchMain [depth] [max threads] [repetitions]
+ */
+public class ParallelSearchMain {
+
+	private static final String[] POSITIONS = {ReferencePositions.OPENING, ReferencePositions.MIDGAME, ReferencePositions.ENDGAME};
+
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+		int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+		boolean allSame = true;
+		for (String position : POSITIONS) {
+			System.out.println(position + ", depth " + depth);
+			long serialTime = 0;
+			String serialMove = null;
+			for (int threads = 1; threads <= maxThreads; threads *= 2) {
+				long time = Long.MAX_VALUE;
+				long nodes = 0;
+				String move = null;
+				for (int r = 0; r < repetitions; r++) {
+					ReferencePositions.Position reference = ReferencePositions.get(position);
+					PylosPlayerMiniMax player = threads == 1
+							? new PylosPlayerMiniMax(depth)
+							: new PylosPlayerMiniMax(depth, 16, threads, PylosPlayerMiniMax.Parallelism.YOUNG_BROTHERS_WAIT);
+					player.init(reference.color, null, PylosPlayerObserver.NONE, new Random(0));
+					RecordingGame game = new RecordingGame(PylosGameState.MOVE);
+					long startTime = System.nanoTime();
+					player.doMove(game, reference.board);
+					time = Math.min(time, System.nanoTime() - startTime);
+					nodes = player.getNodes();
+					move = game.sphere.getLocation() == null ? "R-" + game.location.toStringCoords() : game.sphere.getLocation().toStringCoords() + "-" + game.location.toStringCoords();
+				}
+				if (threads == 1) {
+					serialTime = time;
+					serialMove = move;
+				}
+				boolean same = move.equals(serialMove);
+				allSame &= same;
+				System.out.printf("  %2d threads\t%8.1f ms\t%10d nodes\tspeedup %5.2f\t%s%n", threads, time / 1e6, nodes, (double) serialTime / time, same ? "same move" : "DIFFERENT MOVE " + move);
+			}
+		}
+		System.out.println(allSame ? "All thread counts play the serial move" : "Some thread counts play another move");
+	}
+
+}
@@ -0,0 +1,72 @@
+package be.kuleuven.pylos.bench;
+
+import be.kuleuven.pylos.game.*;
+import be.kuleuven.pylos.player.PylosPlayer;
+
+/**
+ * Game which only records the decision of a player, so the same position can be searched over and over.
+ */
+class RecordingGame implements PylosGameIF {
+
+	private final PylosGameState state;
+	PylosSphere sphere;
+	PylosLocation location;
+
+	RecordingGame(PylosGameState state) {
+		this.state = state;
+	}
+
+	@Override
+	public PylosGameState getState() {
+		return state;
+	}
+
+	@Override
+	public boolean isFinished() {
+		return false;
+	}
+
+	@Override
+	public PylosPlayer getWinner() {
+		return null;
+	}
+
+	@Override
+	public int getReserveSizeOfWinner() {
+		return -1;
+	}
+
+	@Override
+	public void moveSphere(PylosSphere pylosSphere, PylosLocation toLocation) {
+		sphere = pylosSphere;
+		location = toLocation;
+	}
+
+	@Override
+	public void removeSphere(PylosSphere pylosSphere) {
+		sphere = pylosSphere;
+		location = null;
+	}
+
+	@Override
+	public void pass() {
+		sphere = null;
+		location = null;
+	}
+
+	@Override
+	public boolean moveSphereIsDraw(PylosSphere pylosSphere, PylosLocation toLocation) {
+		return false;
+	}
+
+	@Override
+	public boolean removeSphereIsDraw(PylosSphere pylosSphere) {
+		return false;
+	}
+
+	@Override
+	public boolean passIsDraw() {
+		return false;
+	}
+
+}
@@ -0,0 +1,91 @@
+package be.kuleuven.pylos.bench;
+
+import be.kuleuven.pylos.game.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Reproducible positions for the benchmarks, reached by seeded random play.
+ */
+public class ReferencePositions {
+
+	public static final String OPENING = "opening";
+	public static final String MIDGAME = "midgame";
+	public static final String ENDGAME = "endgame";
+
+	private static final long SEED = 2015;
+
+	private ReferencePositions() {
+	}
+
+	/**
+	 * returns the position with the given name, light or dark to move in MOVE state
+	 *
+	 * @param name
+	 * @return
+	 */
+	public static Position get(String name) {
+		switch (name) {
+			case OPENING:
+				return create(4);
+			case MIDGAME:
+				return create(12);
+			case ENDGAME:
+				return create(20);
+			default:
+				throw new IllegalArgumentException("Unknown position: " + name);
+		}
+	}
+
+	/**
+	 * plays random moves until 'spheresOnBoard' spheres are on the board and a player has to move
+	 *
+	 * @param spheresOnBoard
+	 * @return
+	 */
+	public static Position create(int spheresOnBoard) {
+		Random random = new Random(SEED + spheresOnBoard);
+		PylosBoard board = new PylosBoard();
+		PylosGameSimulator simulator = new PylosGameSimulator(PylosGameState.MOVE, PylosPlayerColor.LIGHT, board);
+		while (board.getNumberOfSpheresOnBoard() < spheresOnBoard || simulator.getState() != PylosGameState.MOVE) {
+			PylosPlayerColor color = simulator.getColor();
+			switch (simulator.getState()) {
+				case MOVE:
+					ArrayList<PylosLocation> usable = new ArrayList<>();
+					for (PylosLocation location : board.getLocations()) {
+						if (location.isUsable()) usable.add(location);
+					}
+					simulator.moveSphere(board.getReserve(color), usable.get(random.nextInt(usable.size())));
+					break;
+				case REMOVE_FIRST:
+				case REMOVE_SECOND:
+					ArrayList<PylosSphere> removable = new ArrayList<>();
+					for (PylosSphere sphere : board.getSpheres(color)) {
+						if (sphere.canRemove()) removable.add(sphere);
+					}
+					if (simulator.getState() == PylosGameState.REMOVE_SECOND) {
+						simulator.pass();
+					} else {
+						simulator.removeSphere(removable.get(random.nextInt(removable.size())));
+					}
+					break;
+				default:
+					throw new IllegalStateException("Reference game finished before " + spheresOnBoard + " spheres were on the board");
+			}
+		}
+		return new Position(board, simulator.getColor());
+	}
+
+	public static final class Position {
+
+		public final PylosBoard board;
+		public final PylosPlayerColor color;
+
+		Position(PylosBoard board, PylosPlayerColor color) {
+			this.board = board;
+			this.color = color;
+		}
+	}
+
+}
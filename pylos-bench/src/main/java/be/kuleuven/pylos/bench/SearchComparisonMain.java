@@ -0,0 +1,49 @@
+package be.kuleuven.pylos.bench;
+
+import be.kuleuven.pylos.game.PylosGameState;
+import be.kuleuven.pylos.player.PylosPlayerObserver;
+import be.kuleuven.pylos.player.codes.PylosPlayerMiniMax;
+import be.kuleuven.pylos.player.codes.PylosPlayerPVS;
+
+import java.util.Random;
+
+/**
+ * Nodes and time of PylosPlayerPVS against PylosPlayerMiniMax at equal depth on the reference positions.
+ * The PVS count includes its shallower iterations and the searches again of its null windows. PVS has no
+ * quiescence search, so MiniMax searches without one as well.
+ * <p>
+ * usage: SearchComparisonMain [max depth]
+ */
+public class SearchComparisonMain {
+
+	private static final String[] POSITIONS = {ReferencePositions.OPENING, ReferencePositions.MIDGAME, ReferencePositions.ENDGAME};
+
+	public static void main(String[] args) {
+		int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+
+		for (String position : POSITIONS) {
+			System.out.println(position);
+			for (int depth = 1; depth <= maxDepth; depth++) {
+				ReferencePositions.Position reference = ReferencePositions.get(position);
+				PylosPlayerMiniMax miniMax = new PylosPlayerMiniMax(depth);
+				miniMax.setQuiescence(false);
+				miniMax.init(reference.color, null, PylosPlayerObserver.NONE, new Random(0));
+				long startTime = System.nanoTime();
+				miniMax.doMove(new RecordingGame(PylosGameState.MOVE), reference.board);
+				long miniMaxTime = System.nanoTime() - startTime;
+
+				reference = ReferencePositions.get(position);
+				PylosPlayerPVS pvs = new PylosPlayerPVS(depth);
+				pvs.init(reference.color, null, PylosPlayerObserver.NONE, new Random(0));
+				startTime = System.nanoTime();
+				pvs.doMove(new RecordingGame(PylosGameState.MOVE), reference.board);
+				long pvsTime = System.nanoTime() - startTime;
+
+				System.out.printf("  depth %2d\tminimax %10d nodes %8.1f ms\tpvs %10d nodes %8.1f ms\tnodes %5.2fx\tfirst move cutoffs %.2f / %.2f%n",
+						depth, miniMax.getNodes(), miniMaxTime / 1e6, pvs.getNodes(), pvsTime / 1e6,
+						(double) miniMax.getNodes() / pvs.getNodes(), miniMax.getFirstMoveCutoffRate(), pvs.getFirstMoveCutoffRate());
+			}
+		}
+	}
+
+}
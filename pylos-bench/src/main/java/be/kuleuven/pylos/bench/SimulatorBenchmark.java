@@ -0,0 +1,61 @@
+package be.kuleuven.pylos.bench;
+
+import be.kuleuven.pylos.game.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PylosGameSimulator round trips: every legal move of the reference position is done and undone.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SimulatorBenchmark {
+
+	@Param({ReferencePositions.OPENING, ReferencePositions.MIDGAME, ReferencePositions.ENDGAME})
+	public String position;
+
+	private PylosBoard board;
+	private PylosPlayerColor color;
+	private PylosGameSimulator simulator;
+
+	@Setup
+	public void setup() {
+		ReferencePositions.Position reference = ReferencePositions.get(position);
+		board = reference.board;
+		color = reference.color;
+		simulator = new PylosGameSimulator(PylosGameState.MOVE, color, board);
+	}
+
+	@Benchmark
+	public int allMovesRoundTrip() {
+		int moves = 0;
+		PylosLocation[] locations = board.getLocations();
+		for (PylosSphere sphere : board.getSpheres(color)) {
+			if (!sphere.isReserve()) {
+				for (PylosLocation location : locations) {
+					if (sphere.canMoveTo(location)) {
+						PylosLocation prevLocation = sphere.getLocation();
+						simulator.moveSphere(sphere, location);
+						simulator.undoMoveSphere(sphere, prevLocation, PylosGameState.MOVE, color);
+						moves++;
+					}
+				}
+			}
+		}
+		PylosSphere reserve = board.getReserve(color);
+		for (PylosLocation location : locations) {
+			if (location.isUsable()) {
+				simulator.moveSphere(reserve, location);
+				simulator.undoAddSphere(reserve, PylosGameState.MOVE, color);
+				moves++;
+			}
+		}
+		return moves;
+	}
+
+}
@@ -0,0 +1,85 @@
+package be.kuleuven.pylos.bench;
+
+import be.kuleuven.pylos.search.TranspositionTable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contention on one TranspositionTable shared by all benchmark threads, reported as operations/s of all threads.
+ * Every operation probes a key and stores it on a miss, like a search node. The threads draw their keys from the
+ * same pool, like lazy SMP helpers searching the same tree: with a small pool they mostly hit the same buckets.
+ * <p>
+ * main runs the benchmark with 1, 2, 4 .. threads and finally N threads, N the argument or the available
+ * processors; with JMH use -t to set the threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TranspositionTableBenchmark {
+
+	@Param({"16"})
+	public int tableSizeMb;
+
+	/* number of distinct keys: fits in the table, or overwrites entries all the time */
+	@Param({"65536", "4194304"})
+	public int keyPoolSize;
+
+	private TranspositionTable table;
+	private long[] keyPool;
+
+	@State(Scope.Thread)
+	public static class Keys {
+		private SplittableRandom random;
+
+		@Setup
+		public void setup() {
+			random = new SplittableRandom(Thread.currentThread().getId());
+		}
+	}
+
+	@Setup
+	public void setup() {
+		table = new TranspositionTable(tableSizeMb);
+		keyPool = new long[keyPoolSize];
+		SplittableRandom random = new SplittableRandom(0);
+		for (int i = 0; i < keyPool.length; i++) keyPool[i] = random.nextLong();
+	}
+
+	@Benchmark
+	public long probeStore(Keys keys) {
+		int index = keys.random.nextInt(keyPool.length);
+		long key = keyPool[index];
+		long entry = table.probe(key);
+		if (entry == TranspositionTable.MISS) {
+			/* the data follows from the key, so a torn entry would show as a wrong move */
+			table.store(key, index & 0x3FF, index & 0x1F, TranspositionTable.EXACT, index & TranspositionTable.MAX_MOVE);
+		} else if (TranspositionTable.move(entry) != (index & TranspositionTable.MAX_MOVE)) {
+			throw new IllegalStateException("Entry of another key: " + key);
+		}
+		return entry;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		if (maxThreads < 1) throw new IllegalArgumentException("Specify at least one thread");
+		/* the powers of two below maxThreads, then maxThreads itself */
+		for (int threads = 1; ; threads = Math.min(2 * threads, maxThreads)) {
+			Options options = new OptionsBuilder()
+					.include(TranspositionTableBenchmark.class.getSimpleName())
+					.threads(threads)
+					.build();
+			new Runner(options).run();
+			if (threads == maxThreads) break;
+		}
+	}
+
+}
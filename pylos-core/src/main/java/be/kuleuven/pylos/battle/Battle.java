@@ -2,8 +2,17 @@ package be.kuleuven.pylos.battle;
 
 import be.kuleuven.pylos.game.*;
 import be.kuleuven.pylos.player.PylosPlayer;
+import be.kuleuven.pylos.player.PylosPlayerObserver;
+import be.kuleuven.pylos.player.PylosPlayerType;
+import be.kuleuven.pylos.search.SearchStats;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Created by Jan on 19/02/2015.
@@ -17,6 +26,22 @@ public class Battle {
 	}
 
 	public static double[] play(PylosPlayer playerLight, PylosPlayer playerDark, int runs, boolean print) {
+		return play(playerLight, playerDark, runs, print, new SearchStats(), new SearchStats());
+	}
+
+	/**
+	 * plays 'runs' games, half of them started by playerLight, and adds the search statistics the players publish
+	 * to lightStats and darkStats
+	 *
+	 * @param playerLight
+	 * @param playerDark
+	 * @param runs
+	 * @param print
+	 * @param lightStats statistics of playerLight, whichever color it plays
+	 * @param darkStats  statistics of playerDark
+	 * @return
+	 */
+	public static double[] play(PylosPlayer playerLight, PylosPlayer playerDark, int runs, boolean print, SearchStats lightStats, SearchStats darkStats) {
 
 		if (runs % 2 != 0) {
 			throw new IllegalArgumentException("Please specify an even number of runs");
@@ -32,11 +57,14 @@ public class Battle {
 		for (int i = 0; i < runs / 2; i++) {
 			System.out.println(i);
 			PylosBoard board = new PylosBoard();
-			PylosGame game = new PylosGame(board, playerLight, playerDark, random);
+			StatsObserver stats = new StatsObserver();
+			PylosGame game = new PylosGame(board, playerLight, playerDark, random, PylosGameObserver.NONE, stats);
 			double startTime = System.currentTimeMillis();
 			game.play();
 			double playTime = System.currentTimeMillis() - startTime;
 			totalPlayTime += playTime;
+			lightStats.add(stats.light);
+			darkStats.add(stats.dark);
 			String message = (i + 1) + "/" + runs + "\tLight: " + playerLightClass + "\tDark: " + playerDarkClass + "\t";
 			if(game.getState()==PylosGameState.DRAW) {
 				lightStartDraw++;
@@ -59,11 +87,14 @@ public class Battle {
 		for (int i = 0; i < runs / 2; i++) {
 			System.out.println(i);
 			PylosBoard board = new PylosBoard();
-			PylosGame game = new PylosGame(board, playerDark, playerLight, random);
+			StatsObserver stats = new StatsObserver();
+			PylosGame game = new PylosGame(board, playerDark, playerLight, random, PylosGameObserver.NONE, stats);
 			double startTime = System.currentTimeMillis();
 			game.play();
 			double playTime = System.currentTimeMillis() - startTime;
 			totalPlayTime += playTime;
+			lightStats.add(stats.dark);
+			darkStats.add(stats.light);
 			String message = (i + 1 + runs / 2) + "/" + runs + "\tLight: " + playerDarkClass + "\tDark: " + playerLightClass + "\t";
 			if(game.getState()==PylosGameState.DRAW) {
 				darkStartDraw++;
@@ -79,6 +110,125 @@ public class Battle {
 //			System.out.println(message);
 		}
 
+		return summarize(playerLightClass, playerDarkClass, runs, lightStartLightWin, lightStartDarkWin, lightStartDraw, darkStartLightWin, darkStartDarkWin, darkStartDraw, totalPlayTime, totalPlayTime, lightStats, darkStats, print);
+	}
+
+	/**
+	 * plays 'runs' games on 'threads' worker threads, half of them started by playerLightType
+	 * every game gets new player instances, its own board and a Random seeded from (seed, game index),
+	 * so the result only depends on the seed and not on the number of threads
+	 *
+	 * @param playerLightType
+	 * @param playerDarkType
+	 * @param runs
+	 * @param seed
+	 * @param threads
+	 * @param print
+	 * @return
+	 */
+	public static double[] play(PylosPlayerType playerLightType, PylosPlayerType playerDarkType, int runs, long seed, int threads, boolean print) {
+		return play(playerLightType, playerDarkType, runs, seed, threads, print, new SearchStats(), new SearchStats());
+	}
+
+	/**
+	 * like play(playerLightType, playerDarkType, runs, seed, threads, print), adds the search statistics the players
+	 * publish to lightStats and darkStats
+	 *
+	 * @param playerLightType
+	 * @param playerDarkType
+	 * @param runs
+	 * @param seed
+	 * @param threads
+	 * @param print
+	 * @param lightStats statistics of the players of playerLightType, whichever color they play
+	 * @param darkStats  statistics of the players of playerDarkType
+	 * @return
+	 */
+	public static double[] play(PylosPlayerType playerLightType, PylosPlayerType playerDarkType, int runs, long seed, int threads, boolean print,
+								SearchStats lightStats, SearchStats darkStats) {
+
+		if (runs % 2 != 0) {
+			throw new IllegalArgumentException("Please specify an even number of runs");
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("Please specify at least one thread");
+		}
+
+		/* the games overlap, so the battle is timed by the wall clock, their play times only give the average */
+		long startTime = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<GameResult>> futures = new ArrayList<>();
+		for (int i = 0; i < runs; i++) {
+			final int game = i;
+			final boolean lightStarts = i < runs / 2;
+			futures.add(executor.submit(() -> playGame(lightStarts ? playerLightType : playerDarkType, lightStarts ? playerDarkType : playerLightType, gameSeed(seed, game))));
+		}
+
+		int lightStartLightWin = 0;
+		int lightStartDarkWin = 0;
+		int lightStartDraw = 0;
+		int darkStartLightWin = 0;
+		int darkStartDarkWin = 0;
+		int darkStartDraw = 0;
+		double totalPlayTime = 0;
+		try {
+			for (int i = 0; i < runs; i++) {
+				GameResult result = futures.get(i).get();
+				totalPlayTime += result.playTime;
+				if (i < runs / 2) {
+					lightStats.add(result.light);
+					darkStats.add(result.dark);
+					if (result.state == PylosGameState.DRAW) lightStartDraw++;
+					else if (result.winner == PylosPlayerColor.LIGHT) lightStartLightWin++;
+					else lightStartDarkWin++;
+				} else {
+					/* playerLightType played with the dark spheres */
+					lightStats.add(result.dark);
+					darkStats.add(result.light);
+					if (result.state == PylosGameState.DRAW) darkStartDraw++;
+					else if (result.winner == PylosPlayerColor.DARK) darkStartLightWin++;
+					else darkStartDarkWin++;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Battle interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Game failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		double elapsedTime = System.currentTimeMillis() - startTime;
+
+		return summarize(playerLightType.toString(), playerDarkType.toString(), runs, lightStartLightWin, lightStartDarkWin, lightStartDraw, darkStartLightWin, darkStartDarkWin, darkStartDraw, elapsedTime, totalPlayTime,
+				lightStats, darkStats, print);
+	}
+
+	private static GameResult playGame(PylosPlayerType lightType, PylosPlayerType darkType, long seed) {
+		PylosPlayer playerLight = lightType.create();
+		PylosPlayer playerDark = darkType.create();
+		PylosBoard board = new PylosBoard();
+		StatsObserver stats = new StatsObserver();
+		PylosGame game = new PylosGame(board, playerLight, playerDark, new Random(seed), PylosGameObserver.NONE, stats);
+		double startTime = System.currentTimeMillis();
+		game.play();
+		double playTime = System.currentTimeMillis() - startTime;
+		PylosPlayerColor winner = game.getWinner() == null ? null : game.getWinner().PLAYER_COLOR;
+		return new GameResult(game.getState(), winner, playTime, stats.light, stats.dark);
+	}
+
+	/* splitmix64 of the seed and game index, neighbouring games get unrelated seeds */
+	private static long gameSeed(long seed, int game) {
+		long z = seed + (game + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private static double[] summarize(String playerLightClass, String playerDarkClass, int runs, int lightStartLightWin, int lightStartDarkWin, int lightStartDraw, int darkStartLightWin, int darkStartDarkWin, int darkStartDraw, double elapsedTime, double totalPlayTime,
+										SearchStats lightStats, SearchStats darkStats, boolean print) {
+
+		elapsedTime /= 1000;
 		totalPlayTime /= 1000;
 		int totalLightWin = lightStartLightWin + darkStartLightWin;
 		int totalDarkWin = lightStartDarkWin + darkStartDarkWin;
@@ -102,7 +252,9 @@ public class Battle {
 			System.out.println(String.format(" * %6s", String.format("%.2f", (double) totalDarkWin / runs * 100)) + "% " + playerDarkClass);
 			System.out.println(String.format(" * %6s", String.format("%.2f", (double) totalDraw / runs * 100)) + "% Draw");
 			System.out.println();
-			System.out.println("Time: " + String.format("%.2f", totalPlayTime) + " sec (" + String.format("%.2f", totalPlayTime / runs) + " sec / game)");
+			System.out.println("Time: " + String.format("%.2f", elapsedTime) + " sec (" + String.format("%.2f", totalPlayTime / runs) + " sec / game)");
+			if (lightStats.getDecisions() > 0) System.out.println("Search " + playerLightClass + ": " + lightStats);
+			if (darkStats.getDecisions() > 0) System.out.println("Search " + playerDarkClass + ": " + darkStats);
 			System.out.println("----------------------------");
 		}
 
@@ -110,4 +262,57 @@ public class Battle {
 		return wins;
 	}
 
+	private static final class GameResult {
+
+		final PylosGameState state;
+		final PylosPlayerColor winner;
+		final double playTime;
+		final SearchStats light;
+		final SearchStats dark;
+
+		GameResult(PylosGameState state, PylosPlayerColor winner, double playTime, SearchStats light, SearchStats dark) {
+			this.state = state;
+			this.winner = winner;
+			this.playTime = playTime;
+			this.light = light;
+			this.dark = dark;
+		}
+	}
+
+	/* sums the search statistics of one game per color, a player may publish from a player it delegates to */
+	private static final class StatsObserver implements PylosPlayerObserver {
+
+		final SearchStats light = new SearchStats();
+		final SearchStats dark = new SearchStats();
+
+		@Override
+		public void searchStats(PylosPlayer player, SearchStats stats) {
+			(player.PLAYER_COLOR == PylosPlayerColor.LIGHT ? light : dark).add(stats);
+		}
+
+		@Override
+		public void shout(String str) {
+		}
+
+		@Override
+		public void shoutGood(String str) {
+		}
+
+		@Override
+		public void shoutBad(String str) {
+		}
+
+		@Override
+		public void checkingMoveSphere(PylosSphere pylosSphere, PylosLocation toLocation) {
+		}
+
+		@Override
+		public void checkingRemoveSphere(PylosSphere pylosSphere) {
+		}
+
+		@Override
+		public void checkingPass() {
+		}
+	}
+
 }
@@ -0,0 +1,183 @@
+package be.kuleuven.pylos.book;
+
+import be.kuleuven.pylos.game.PylosBoard;
+import be.kuleuven.pylos.game.PylosGameState;
+import be.kuleuven.pylos.game.PylosMove;
+import be.kuleuven.pylos.game.PylosPlayerColor;
+import be.kuleuven.pylos.game.PylosSymmetry;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Opening book: a memory-mapped file of (key, move, weight) records, sorted on key and then on descending weight.
+ * <p>
+ * The key is the canonical board state (PylosSymmetry) with the game state and the color to play folded in, the
+ * move is a PylosMove without sphere id on the canonical board. The weight is the result of the move in the games
+ * the book was built from: 2 points per win and 1 per draw of the player who did it.
+ * <p>
+ * file layout: MAGIC (long), number of records (long), records of key (long), move (int) and weight (int)
+ */
+public class OpeningBook implements Closeable {
+
+	private static final long MAGIC = 0x50594C4F53424F4BL;     // "PYLOSBOK"
+	private static final int HEADER_BYTES = 2 * Long.BYTES;
+	private static final int RECORD_BYTES = Long.BYTES + 2 * Integer.BYTES;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer records;
+	private final int size;
+
+	private OpeningBook(RandomAccessFile file) throws IOException {
+		this.file = file;
+		if (file.length() < HEADER_BYTES || file.readLong() != MAGIC) throw new IOException("Not an opening book");
+		long count = file.readLong();
+		if (count > (Integer.MAX_VALUE - HEADER_BYTES) / RECORD_BYTES || file.length() != HEADER_BYTES + count * RECORD_BYTES) {
+			throw new IOException("Book size is " + file.length() + " bytes for " + count + " records");
+		}
+		size = (int) count;
+		records = file.getChannel().map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, (long) size * RECORD_BYTES);
+	}
+
+	/**
+	 * maps the book in the file at 'path', read only
+	 *
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static OpeningBook open(Path path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path.toFile(), "r");
+		try {
+			return new OpeningBook(file);
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * writes a book, the records should be sorted on key and then on descending weight
+	 *
+	 * @param path
+	 * @param keys
+	 * @param moves
+	 * @param weights
+	 * @throws IOException
+	 */
+	public static void write(Path path, long[] keys, int[] moves, int[] weights) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			out.writeLong(MAGIC);
+			out.writeLong(keys.length);
+			for (int i = 0; i < keys.length; i++) {
+				assert i == 0 || keys[i - 1] < keys[i] || keys[i - 1] == keys[i] && weights[i - 1] >= weights[i] : "Records are not sorted";
+				out.writeLong(keys[i]);
+				out.writeInt(moves[i]);
+				out.writeInt(weights[i]);
+			}
+		}
+	}
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * returns the book move with the highest weight for 'color' to play in 'state' on 'board', mapped on 'board',
+	 * or PylosMove.NONE if the position is not in the book or none of its moves scored
+	 *
+	 * @param board
+	 * @param state
+	 * @param color
+	 * @return
+	 */
+	public int probe(PylosBoard board, PylosGameState state, PylosPlayerColor color) {
+		long boardState = board.toLong();
+		int symmetry = PylosSymmetry.canonicalSymmetry(boardState);
+		int first = find(key(PylosSymmetry.transform(boardState, symmetry), state, color));
+		if (first < 0 || getWeight(first) == 0) return PylosMove.NONE;
+		return transform(getMove(first), PylosSymmetry.inverse(symmetry));
+	}
+
+	/**
+	 * returns the index of the first record of 'key', -1 if there is none
+	 *
+	 * @param key
+	 * @return
+	 */
+	public int find(long key) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (getKey(middle) < key) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low < size && getKey(low) == key ? low : -1;
+	}
+
+	public long getKey(int index) {
+		return records.getLong(index * RECORD_BYTES);
+	}
+
+	public int getMove(int index) {
+		return records.getInt(index * RECORD_BYTES + Long.BYTES);
+	}
+
+	public int getWeight(int index) {
+		return records.getInt(index * RECORD_BYTES + Long.BYTES + Integer.BYTES);
+	}
+
+	/**
+	 * returns the number of records
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/* static helpers --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * returns the book key of a canonical board state, the packed state uses bits 0-59
+	 *
+	 * @param canonicalState
+	 * @param state
+	 * @param color
+	 * @return
+	 */
+	public static long key(long canonicalState, PylosGameState state, PylosPlayerColor color) {
+		return canonicalState | (long) state.ordinal() << 60 | (long) color.ordinal() << 62;
+	}
+
+	/**
+	 * returns 'move' with its locations mapped by 'symmetry'
+	 *
+	 * @param move
+	 * @param symmetry
+	 * @return
+	 */
+	public static int transform(int move, int symmetry) {
+		if (PylosMove.kind(move) == PylosMove.PASS) return move;
+		int from = PylosMove.from(move);
+		int to = PylosMove.to(move);
+		return PylosMove.encode(PylosMove.kind(move), PylosMove.color(move), 0,
+				from == PylosMove.NO_LOCATION ? from : PylosSymmetry.transformLocation(from, symmetry),
+				to == PylosMove.NO_LOCATION ? to : PylosSymmetry.transformLocation(to, symmetry));
+	}
+
+}
@@ -0,0 +1,249 @@
+package be.kuleuven.pylos.book;
+
+import be.kuleuven.pylos.game.*;
+import be.kuleuven.pylos.player.PylosPlayer;
+import be.kuleuven.pylos.player.PylosPlayerObserver;
+import be.kuleuven.pylos.player.PylosPlayerType;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds an OpeningBook from self-play games, played in parallel.
+ * <p>
+ * Every game gets new players of the given type and a Random seeded from (seed, game index). The actions of the
+ * first 'plies' decisions are recorded per canonical position and scored with the result of the game for the
+ * player who did them.
+ */
+public class OpeningBookBuilder {
+
+	private static final int WIN_POINTS = 2;
+	private static final int DRAW_POINTS = 1;
+
+	private final PylosPlayerType playerType;
+	private final int plies;
+
+	/* [key] [move] points */
+	private final Map<Long, Map<Integer, Integer>> weights = new HashMap<>();
+	private int games;
+	private int lightWins;
+	private int darkWins;
+
+	/**
+	 * @param playerType players of the self-play games
+	 * @param plies      number of decisions recorded per game
+	 */
+	public OpeningBookBuilder(PylosPlayerType playerType, int plies) {
+		if (plies < 1) throw new IllegalArgumentException("Record at least one ply");
+		this.playerType = playerType;
+		this.plies = plies;
+	}
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * plays 'games' self-play games on 'threads' threads and adds their results
+	 *
+	 * @param games
+	 * @param seed
+	 * @param threads
+	 */
+	public void play(int games, long seed, int threads) {
+		if (threads < 1) throw new IllegalArgumentException("Please specify at least one thread");
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<GameRecord>> futures = new ArrayList<>();
+		for (int i = 0; i < games; i++) {
+			final long gameSeed = gameSeed(seed, this.games + i);
+			futures.add(executor.submit(() -> playGame(gameSeed)));
+		}
+		try {
+			for (Future<GameRecord> future : futures) {
+				add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Self-play interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Game failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * writes the book of the games played so far
+	 *
+	 * @param path
+	 * @throws IOException
+	 */
+	public void write(Path path) throws IOException {
+		int size = 0;
+		for (Map<Integer, Integer> moves : weights.values()) size += moves.size();
+		long[] keys = new long[size];
+		int[] moves = new int[size];
+		int[] points = new int[size];
+		int i = 0;
+		for (long key : weights.keySet().stream().sorted().mapToLong(Long::longValue).toArray()) {
+			List<Map.Entry<Integer, Integer>> entries = new ArrayList<>(weights.get(key).entrySet());
+			/* highest weight first, ties on the move so the book does not depend on the order of the games */
+			entries.sort((a, b) -> a.getValue().equals(b.getValue()) ? Integer.compare(a.getKey(), b.getKey()) : Integer.compare(b.getValue(), a.getValue()));
+			for (Map.Entry<Integer, Integer> entry : entries) {
+				keys[i] = key;
+				moves[i] = entry.getKey();
+				points[i] = entry.getValue();
+				i++;
+			}
+		}
+		OpeningBook.write(path, keys, moves, points);
+	}
+
+	/**
+	 * returns the number of positions in the book
+	 *
+	 * @return
+	 */
+	public int getPositions() {
+		return weights.size();
+	}
+
+	public int getGames() {
+		return games;
+	}
+
+	public int getLightWins() {
+		return lightWins;
+	}
+
+	public int getDarkWins() {
+		return darkWins;
+	}
+
+	/* internals -------------------------------------------------------------------------------------------------- */
+
+	private GameRecord playGame(long seed) {
+		PylosBoard board = new PylosBoard();
+		GameRecord record = new GameRecord(board, plies);
+		PylosGame game = new PylosGame(board, playerType.create(), playerType.create(), new Random(seed), record, PylosPlayerObserver.NONE);
+		game.play();
+		record.state = game.getState();
+		record.winner = game.getWinner() == null ? null : game.getWinner().PLAYER_COLOR;
+		return record;
+	}
+
+	private void add(GameRecord record) {
+		games++;
+		if (record.state == PylosGameState.COMPLETED) {
+			if (record.winner == PylosPlayerColor.LIGHT) lightWins++;
+			else darkWins++;
+		}
+		for (int i = 0; i < record.size; i++) {
+			int points = 0;
+			if (record.state == PylosGameState.DRAW) {
+				points = DRAW_POINTS;
+			} else if (record.state == PylosGameState.COMPLETED && record.winner == record.colors[i]) {
+				points = WIN_POINTS;
+			}
+			weights.computeIfAbsent(record.keys[i], key -> new HashMap<>()).merge(record.moves[i], points, Integer::sum);
+		}
+	}
+
+	/* splitmix64 of the seed and game index, like Battle */
+	private static long gameSeed(long seed, int game) {
+		long z = seed + (game + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/* records the first decisions of a game: the position before and the action after every call of a player */
+	private static final class GameRecord implements PylosGameObserver {
+
+		private final PylosBoard board;
+		private final long[] keys;
+		private final int[] moves;
+		private final PylosPlayerColor[] colors;
+		private int size;
+		private int symmetry;
+		private PylosGameState callState;
+		private PylosPlayerColor callColor;
+		private boolean moved;
+		PylosGameState state;
+		PylosPlayerColor winner;
+
+		GameRecord(PylosBoard board, int plies) {
+			this.board = board;
+			keys = new long[plies];
+			moves = new int[plies];
+			colors = new PylosPlayerColor[plies];
+		}
+
+		@Override
+		public void aboutToCall(PylosGameState currentState, PylosPlayer player) {
+			callState = currentState;
+			callColor = player.PLAYER_COLOR;
+			moved = false;
+			if (size < keys.length) {
+				long boardState = board.toLong();
+				symmetry = PylosSymmetry.canonicalSymmetry(boardState);
+				keys[size] = OpeningBook.key(PylosSymmetry.transform(boardState, symmetry), currentState, callColor);
+			}
+		}
+
+		@Override
+		public void move(PylosSphere pylosSphere, PylosLocation prevLocation) {
+			/* the first move of a call is the action, a finished game puts the spheres of the winner after it */
+			if (callState == null || moved) return;
+			int move;
+			if (pylosSphere.isReserve()) {
+				move = PylosMove.encode(PylosMove.REMOVE, callColor, 0, prevLocation.ID, PylosMove.NO_LOCATION);
+			} else if (prevLocation == null) {
+				move = PylosMove.encode(PylosMove.ADD, callColor, 0, PylosMove.NO_LOCATION, pylosSphere.getLocation().ID);
+			} else {
+				move = PylosMove.encode(PylosMove.MOVE, callColor, 0, prevLocation.ID, pylosSphere.getLocation().ID);
+			}
+			record(move);
+		}
+
+		@Override
+		public void callPerformed() {
+			/* a pass is not reported as a move */
+			if (!moved) record(PylosMove.pass(callColor));
+			callState = null;
+		}
+
+		@Override
+		public void completed(PylosPlayer winningPlayer) {
+		}
+
+		@Override
+		public void aborted() {
+		}
+
+		@Override
+		public void draw() {
+		}
+
+		@Override
+		public void println(String str) {
+		}
+
+		private void record(int move) {
+			moved = true;
+			if (size < keys.length) {
+				moves[size] = OpeningBook.transform(move, symmetry);
+				colors[size] = callColor;
+				size++;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,43 @@
+package be.kuleuven.pylos.book;
+
+import be.kuleuven.pylos.player.PylosPlayer;
+import be.kuleuven.pylos.player.PylosPlayerType;
+import be.kuleuven.pylos.player.codes.PylosPlayerMiniMax;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Builds an opening book offline from self-play games of PylosPlayerMiniMax.
+ * <p>
+ * usage: OpeningBookMain [games] [depth] [plies] [threads] [file]
+ */
+public class OpeningBookMain {
+
+	private static final int DEFAULT_GAMES = 200;
+	private static final int DEFAULT_DEPTH = 8;
+	private static final int DEFAULT_PLIES = 8;
+	private static final String DEFAULT_FILE = "pylos-book.bin";
+
+	public static void main(String[] args) throws IOException {
+		int games = args.length >= 1 ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+		int depth = args.length >= 2 ? Integer.parseInt(args[1]) : DEFAULT_DEPTH;
+		int plies = args.length >= 3 ? Integer.parseInt(args[2]) : DEFAULT_PLIES;
+		int threads = args.length >= 4 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		Path path = Paths.get(args.length >= 5 ? args[4] : DEFAULT_FILE);
+
+		long startTime = System.currentTimeMillis();
+		OpeningBookBuilder builder = new OpeningBookBuilder(new PylosPlayerType("MiniMax " + depth) {
+			@Override
+			public PylosPlayer create() {
+				return new PylosPlayerMiniMax(depth);
+			}
+		}, plies);
+		builder.play(games, 0, threads);
+		builder.write(path);
+		System.out.printf("%d games (light %d, dark %d, draw %d), %d positions in %s, %.1f s%n", builder.getGames(), builder.getLightWins(), builder.getDarkWins(),
+				builder.getGames() - builder.getLightWins() - builder.getDarkWins(), builder.getPositions(), path, (System.currentTimeMillis() - startTime) / 1e3);
+	}
+
+}
@@ -0,0 +1,149 @@
+package be.kuleuven.pylos.endgame;
+
+import be.kuleuven.pylos.game.PylosGameState;
+import be.kuleuven.pylos.game.PylosMove;
+import be.kuleuven.pylos.game.PylosPlayerColor;
+import be.kuleuven.pylos.game.bits.PylosBitBoard;
+
+/**
+ * Enumerates the actions of a position on a PylosBitBoard, with the rules of PylosGameSimulator: the board is
+ * changed in place to the position after each action and restored afterwards. The actions come in the order of
+ * MoveList: moves up before reserve spheres, removals before a pass.
+ * <p>
+ * Also solves a position from the values of the positions after its actions, as the passes of EndgameGenerator and
+ * of the solver do: a value is a signed distance, the number of actions until the end of the game, positive if the
+ * color to play wins and 0 if it is not known (or a draw).
+ */
+public final class Actions {
+
+	public interface Visitor {
+		/**
+		 * called with the board after an action, returns false to stop the enumeration
+		 *
+		 * @param move  the action, see PylosMove (sphere id 0)
+		 * @param state state after the action, COMPLETED if the action ends the game
+		 * @param color color to play after the action, the winner if the game ended
+		 * @return
+		 */
+		boolean visit(int move, PylosGameState state, PylosPlayerColor color);
+	}
+
+	public interface Values {
+		/**
+		 * returns the value of the position for 'color' to play in 'state' on 'board', 0 if not known
+		 *
+		 * @param board
+		 * @param state
+		 * @param color
+		 * @return
+		 */
+		int get(PylosBitBoard board, PylosGameState state, PylosPlayerColor color);
+	}
+
+	private Actions() {
+	}
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * calls 'visitor' for the actions of 'color' to play in 'state', returns false if the visitor stopped
+	 *
+	 * @param board
+	 * @param state
+	 * @param color
+	 * @param visitor
+	 * @return
+	 */
+	public static boolean forEach(PylosBitBoard board, PylosGameState state, PylosPlayerColor color, Visitor visitor) {
+		final PylosPlayerColor other = color.other();
+		boolean next;
+		if (state == PylosGameState.MOVE) {
+			for (int m = board.getRemovable(color); m != 0; m &= m - 1) {
+				int from = Integer.numberOfTrailingZeros(m);
+				for (int t = board.getMoveTargets(from); t != 0; t &= t - 1) {
+					int to = Integer.numberOfTrailingZeros(t);
+					int move = PylosMove.encode(PylosMove.MOVE, color, 0, from, to);
+					boolean completed = board.move(color, from, to);
+					next = completed ? visitor.visit(move, PylosGameState.REMOVE_FIRST, color) : visitor.visit(move, PylosGameState.MOVE, other);
+					board.moveDown(color, to, from);
+					if (!next) return false;
+				}
+			}
+			if (board.getReservesSize(color) == 0) return true;
+			for (int t = board.getUsable(); t != 0; t &= t - 1) {
+				int to = Integer.numberOfTrailingZeros(t);
+				int move = PylosMove.encode(PylosMove.ADD, color, 0, PylosMove.NO_LOCATION, to);
+				boolean completed = board.add(color, to);
+				if (completed) {
+					next = visitor.visit(move, PylosGameState.REMOVE_FIRST, color);
+				} else if (board.getReservesSize(color) == 0) {
+					/* the last reserve sphere is gone: the other player wins */
+					next = visitor.visit(move, PylosGameState.COMPLETED, other);
+				} else {
+					next = visitor.visit(move, PylosGameState.MOVE, other);
+				}
+				board.remove(color, to);
+				if (!next) return false;
+			}
+		} else if (state == PylosGameState.REMOVE_FIRST || state == PylosGameState.REMOVE_SECOND) {
+			PylosGameState nextState = state == PylosGameState.REMOVE_FIRST ? PylosGameState.REMOVE_SECOND : PylosGameState.MOVE;
+			PylosPlayerColor nextColor = state == PylosGameState.REMOVE_FIRST ? color : other;
+			for (int m = board.getRemovable(color); m != 0; m &= m - 1) {
+				int location = Integer.numberOfTrailingZeros(m);
+				board.remove(color, location);
+				next = visitor.visit(PylosMove.encode(PylosMove.REMOVE, color, 0, location, PylosMove.NO_LOCATION), nextState, nextColor);
+				board.add(color, location);
+				if (!next) return false;
+			}
+			if (state == PylosGameState.REMOVE_SECOND && !visitor.visit(PylosMove.pass(color), PylosGameState.MOVE, other)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * returns 'distance' if 'color' wins in 'distance' actions, -'distance' if it loses in 'distance', else 0; if not
+	 * 'exact' in any number of actions, the result is 'distance' anyway
+	 *
+	 * @param board
+	 * @param state
+	 * @param color
+	 * @param distance
+	 * @param exact
+	 * @param values   the values of the positions after the actions
+	 * @return
+	 */
+	public static int solve(PylosBitBoard board, PylosGameState state, PylosPlayerColor color, int distance, boolean exact, Values values) {
+		/* number of actions, number of lost actions, longest loss */
+		final int[] actions = new int[3];
+		boolean won = !forEach(board, state, color, (move, nextState, nextColor) -> {
+			int outcome = nextState == PylosGameState.COMPLETED ? 0 : values.get(board, nextState, nextColor);
+			outcome = outcome(outcome, nextState, nextColor, color);
+			if (exact ? outcome == distance : outcome > 0) return false;
+			actions[0]++;
+			if (outcome < 0) actions[1]++;
+			actions[2] = Math.max(actions[2], -outcome);
+			return true;
+		});
+		if (won) return distance;
+		/* a position without actions can not be reached in a game */
+		boolean lost = actions[0] > 0 && actions[1] == actions[0];
+		return lost && (!exact || actions[2] == distance) ? -distance : 0;
+	}
+
+	/**
+	 * returns the result for 'mover' of an action which led to 'color' to play in 'state', as a signed distance
+	 *
+	 * @param value value of the position after the action, ignored if the game ended
+	 * @param state
+	 * @param color the winner if the game ended
+	 * @param mover
+	 * @return
+	 */
+	public static int outcome(int value, PylosGameState state, PylosPlayerColor color, PylosPlayerColor mover) {
+		if (state == PylosGameState.COMPLETED) return color == mover ? 1 : -1;
+		if (value == 0) return 0;
+		int distance = Math.abs(value) + 1;
+		return (value > 0) == (color == mover) ? distance : -distance;
+	}
+
+}
@@ -0,0 +1,117 @@
+package be.kuleuven.pylos.endgame;
+
+import be.kuleuven.pylos.game.PylosGameState;
+import be.kuleuven.pylos.game.PylosPlayerColor;
+import be.kuleuven.pylos.game.bits.PylosBitBoard;
+
+/**
+ * Fills an EndgameTable by iterated forward value passes, not by a retrograde analysis: no predecessors are
+ * generated, every pass scans all positions of the table and solves them from the values of their successors.
+ * <p>
+ * Pass d solves the positions which are won or lost in exactly d actions: a position is won if an action leads to
+ * a position lost for the other player (or won for the same player) in d - 1 actions, and lost if all its actions
+ * lead to such positions and the longest in d - 1. An action which leaves the table has an unknown result, so its
+ * position is never lost. A pass only reads the results of the previous passes: the positions it solves itself are
+ * one action further. The passes stop after a pass which solves nothing, the unsolved positions stay UNKNOWN.
+ * <p>
+ * The cost is O(N * D) for N positions and D the longest distance (at most MAX_DISTANCE passes), each unsolved
+ * position is expanded again in every pass: with at most 1 reserve sphere, 1.1 billion positions, that is about 12
+ * minutes on one core. A retrograde analysis (un-move generation with a counter of unsolved successors per position
+ * and a queue of solved ones) expands every position once, but needs the un-moves of the removals and of squares.
+ */
+public class EndgameGenerator {
+
+	private final EndgameTable table;
+	private final PositionIndex positions;
+	private long wins;
+	private long losses;
+
+	public EndgameGenerator(EndgameTable table) {
+		this.table = table;
+		this.positions = table.getIndex();
+	}
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * runs the passes until no position is solved, returns the number of solved positions
+	 *
+	 * @return
+	 */
+	public long generate() {
+		for (int distance = 1; distance <= EndgameTable.MAX_DISTANCE; distance++) {
+			long startTime = System.currentTimeMillis();
+			long solved = pass(distance);
+			System.out.printf("distance %3d\t%12d positions\t%8.1f s%n", distance, solved, (System.currentTimeMillis() - startTime) / 1e3);
+			if (solved == 0) break;
+		}
+		return wins + losses;
+	}
+
+	public long getWins() {
+		return wins;
+	}
+
+	public long getLosses() {
+		return losses;
+	}
+
+	/* internals -------------------------------------------------------------------------------------------------- */
+
+	/* scans all positions once, solves the ones won or lost in 'distance' actions, returns their number */
+	private long pass(int distance) {
+		final int maxReserves = table.getMaxReserves();
+		final PylosPlayerColor[] colors = PylosPlayerColor.values();
+		final PylosGameState[] states = PositionIndex.getStates();
+		long solved = 0;
+		for (int lightReserves = 0; lightReserves <= maxReserves; lightReserves++) {
+			for (int darkReserves = 0; darkReserves <= maxReserves; darkReserves++) {
+				if (!positions.hasSlice(lightReserves, darkReserves)) continue;
+				final int lightSpheres = PylosBitBoard.SPHERES_PER_PLAYER - lightReserves;
+				final int spheres = lightSpheres + PylosBitBoard.SPHERES_PER_PLAYER - darkReserves;
+				final int pairCount = positions.getPairCount(lightReserves, darkReserves);
+				final int[] locations = new int[spheres];
+				long index = positions.getSliceOffset(lightReserves, darkReserves);
+
+				for (int occupied : PositionIndex.getOccupancies(spheres)) {
+					int i = 0;
+					for (int m = occupied; m != 0; m &= m - 1) locations[i++] = Integer.numberOfTrailingZeros(m);
+
+					/* the light spheres in colex order: Gosper's hack over the occupied locations */
+					for (int pattern = (1 << lightSpheres) - 1; pattern < (1 << spheres); pattern = nextPattern(pattern)) {
+						PylosBitBoard board = null;
+						for (PylosPlayerColor color : colors) {
+							for (PylosGameState state : states) {
+								int pair = positions.getPairIndex(lightReserves, darkReserves, color, state);
+								if (pair < 0 || table.get(index + pair) != EndgameTable.UNKNOWN) continue;
+								if (board == null) {
+									int light = 0;
+									for (int p = pattern; p != 0; p &= p - 1) light |= PylosBitBoard.bit(locations[Integer.numberOfTrailingZeros(p)]);
+									board = new PylosBitBoard(light, occupied & ~light, lightReserves, darkReserves);
+								}
+								int value = Actions.solve(board, state, color, distance, true, table::probe);
+								if (value != EndgameTable.UNKNOWN) {
+									table.set(index + pair, value);
+									if (value > 0) wins++;
+									else losses++;
+									solved++;
+								}
+							}
+						}
+						index += pairCount;
+						if (lightSpheres == 0) break;
+					}
+				}
+			}
+		}
+		return solved;
+	}
+
+	/* returns the next larger int with the same number of bits set */
+	private static int nextPattern(int pattern) {
+		int lowest = pattern & -pattern;
+		int ripple = pattern + lowest;
+		return (((ripple ^ pattern) >>> 2) / lowest) | ripple;
+	}
+
+}
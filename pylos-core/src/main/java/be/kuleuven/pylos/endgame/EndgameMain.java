@@ -0,0 +1,35 @@
+package be.kuleuven.pylos.endgame;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Generates an endgame table offline.
+ * <p>
+ * usage: EndgameMain [max reserves] [file]
+ * <p>
+ * The table grows quickly: with at most 1 reserve sphere per player it holds about 1.1 billion positions (1.1 GB),
+ * with 2 about 5 billion. Load it in a search player with EndgameTable.open.
+ */
+public class EndgameMain {
+
+	private static final int DEFAULT_MAX_RESERVES = 1;
+	private static final String DEFAULT_FILE = "pylos-endgame.bin";
+
+	public static void main(String[] args) throws IOException {
+		int maxReserves = args.length >= 1 ? Integer.parseInt(args[0]) : DEFAULT_MAX_RESERVES;
+		Path path = Paths.get(args.length >= 2 ? args[1] : DEFAULT_FILE);
+
+		long startTime = System.currentTimeMillis();
+		try (EndgameTable table = EndgameTable.create(path, maxReserves)) {
+			System.out.println("Generating " + path + ": at most " + maxReserves + " reserves, " + table.size() + " positions");
+			EndgameGenerator generator = new EndgameGenerator(table);
+			generator.generate();
+			table.force();
+			System.out.printf("%d wins, %d losses, %d unknown, %.1f s%n", generator.getWins(), generator.getLosses(),
+					table.size() - generator.getWins() - generator.getLosses(), (System.currentTimeMillis() - startTime) / 1e3);
+		}
+	}
+
+}
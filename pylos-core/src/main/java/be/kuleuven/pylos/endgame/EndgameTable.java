@@ -0,0 +1,182 @@
+package be.kuleuven.pylos.endgame;
+
+import be.kuleuven.pylos.game.PylosBoard;
+import be.kuleuven.pylos.game.PylosGameState;
+import be.kuleuven.pylos.game.PylosPlayerColor;
+import be.kuleuven.pylos.game.bits.PylosBitBoard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Endgame tablebase: one byte per position in which both players have at most 'maxReserves' reserve spheres, in a
+ * memory-mapped file written by EndgameGenerator, at the index of the position in a PositionIndex.
+ * <p>
+ * value of a position, for the player to play:
+ * <pre>
+ *  d > 0	wins, the game ends after at most d actions
+ *  d < 0	loses, the game ends after at most -d actions
+ *  0	unknown: a draw, or the result depends on positions outside the table
+ * </pre>
+ * An action is a move, a remove or a pass. The distance is the one of the fastest win within the table, a win
+ * through positions with more reserves may be faster.
+ * <p>
+ * file layout: MAGIC (long), maxReserves (long), one byte per index
+ */
+public class EndgameTable implements Closeable {
+
+	public static final int UNKNOWN = 0;
+	public static final int MAX_DISTANCE = Byte.MAX_VALUE;
+
+	private static final long MAGIC = 0x50594C4F53454754L;     // "PYLOSEGT"
+	private static final int HEADER_BYTES = 2 * Long.BYTES;
+	private static final int CHUNK_BITS = 30;                   // a mapped buffer holds at most 2 GB
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+	private final PositionIndex index;
+	private final long size;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer[] chunks;
+
+	private EndgameTable(int maxReserves, RandomAccessFile file, boolean writable) throws IOException {
+		index = new PositionIndex(maxReserves);
+		size = index.size();
+
+		this.file = file;
+		FileChannel channel = file.getChannel();
+		if (writable) {
+			file.setLength(HEADER_BYTES + size);
+			file.seek(0);
+			file.writeLong(MAGIC);
+			file.writeLong(maxReserves);
+		} else if (file.length() != HEADER_BYTES + size) {
+			throw new IOException("Table size is " + file.length() + " bytes, expected " + (HEADER_BYTES + size));
+		}
+		chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+		for (int c = 0; c < chunks.length; c++) {
+			long position = (long) c << CHUNK_BITS;
+			chunks[c] = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+					HEADER_BYTES + position, Math.min(CHUNK_MASK + 1, size - position));
+		}
+	}
+
+	/**
+	 * creates the file of a table of the positions with at most 'maxReserves' reserves, all values UNKNOWN
+	 *
+	 * @param path
+	 * @param maxReserves
+	 * @return
+	 * @throws IOException
+	 */
+	public static EndgameTable create(Path path, int maxReserves) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+		file.setLength(0);
+		return new EndgameTable(maxReserves, file, true);
+	}
+
+	/**
+	 * maps the table in the file at 'path', read only
+	 *
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static EndgameTable open(Path path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path.toFile(), "r");
+		try {
+			if (file.length() < HEADER_BYTES || file.readLong() != MAGIC) throw new IOException("Not an endgame table: " + path);
+			return new EndgameTable((int) file.readLong(), file, false);
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * returns the value of the position for 'color' to play in 'state', UNKNOWN if the position is not in the table
+	 *
+	 * @param board
+	 * @param state
+	 * @param color
+	 * @return
+	 */
+	public int probe(PylosBoard board, PylosGameState state, PylosPlayerColor color) {
+		/* check the reserves before the board is converted, most positions have too many */
+		int maxReserves = index.getMaxReserves();
+		if (board.getReservesSize(PylosPlayerColor.LIGHT) > maxReserves || board.getReservesSize(PylosPlayerColor.DARK) > maxReserves) {
+			return UNKNOWN;
+		}
+		return probe(PylosBitBoard.fromBoard(board), state, color);
+	}
+
+	/**
+	 * returns the value of the position for 'color' to play in 'state', UNKNOWN if the position is not in the table
+	 *
+	 * @param board
+	 * @param state
+	 * @param color
+	 * @return
+	 */
+	public int probe(PylosBitBoard board, PylosGameState state, PylosPlayerColor color) {
+		long index = indexOf(board, state, color);
+		return index < 0 ? UNKNOWN : get(index);
+	}
+
+	/**
+	 * returns the index of the position, -1 if it is not in the table
+	 *
+	 * @param board
+	 * @param state
+	 * @param color
+	 * @return
+	 */
+	public long indexOf(PylosBitBoard board, PylosGameState state, PylosPlayerColor color) {
+		return index.indexOf(board, state, color);
+	}
+
+	public int get(long index) {
+		return chunks[(int) (index >>> CHUNK_BITS)].get((int) (index & CHUNK_MASK));
+	}
+
+	public void set(long index, int value) {
+		assert value >= -MAX_DISTANCE && value <= MAX_DISTANCE : value;
+		chunks[(int) (index >>> CHUNK_BITS)].put((int) (index & CHUNK_MASK), (byte) value);
+	}
+
+	/**
+	 * returns the number of positions
+	 *
+	 * @return
+	 */
+	public long size() {
+		return size;
+	}
+
+	public int getMaxReserves() {
+		return index.getMaxReserves();
+	}
+
+	public PositionIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * writes the changes of a writable table to the file
+	 */
+	public void force() {
+		for (MappedByteBuffer chunk : chunks) chunk.force();
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+}
@@ -0,0 +1,282 @@
+package be.kuleuven.pylos.endgame;
+
+import be.kuleuven.pylos.game.PylosGameState;
+import be.kuleuven.pylos.game.PylosPlayerColor;
+import be.kuleuven.pylos.game.bits.PylosBitBoard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Perfect hash of the positions in which both players have at most 'maxReserves' reserve spheres, with
+ * SPHERES_PER_PLAYER it holds all positions of the game.
+ * <p>
+ * A position is (board, color to play, game state). The positions are grouped in slices per (light reserves, dark
+ * reserves), within a slice ordered by the rank of the occupied locations among the valid occupancies with that
+ * number of spheres, the colex rank of the light spheres among the occupied locations, and the legal (color, state)
+ * pairs. A pair is legal if the other player has reserves, and the player to play has reserves unless it just
+ * completed a square (REMOVE_FIRST): otherwise the game would be over.
+ */
+public class PositionIndex {
+
+	private static final PylosGameState[] STATES = {PylosGameState.MOVE, PylosGameState.REMOVE_FIRST, PylosGameState.REMOVE_SECOND};
+
+	/* [n] valid occupancies (every sphere above level 0 rests on 4 spheres) with n spheres, ascending */
+	private static final int[][] OCCUPANCIES = new int[PylosBitBoard.LOCATIONS + 1][];
+	/* [n][k] binomial coefficients */
+	private static final long[][] BINOMIAL = new long[PylosBitBoard.LOCATIONS + 1][PylosBitBoard.LOCATIONS + 1];
+
+	static {
+		for (int n = 0; n <= PylosBitBoard.LOCATIONS; n++) {
+			BINOMIAL[n][0] = 1;
+			for (int k = 1; k <= n; k++) BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+		}
+		List<List<Integer>> occupancies = new ArrayList<>();
+		for (int n = 0; n <= PylosBitBoard.LOCATIONS; n++) occupancies.add(new ArrayList<>());
+		addOccupancies(0, 0, occupancies);
+		for (int n = 0; n <= PylosBitBoard.LOCATIONS; n++) {
+			OCCUPANCIES[n] = occupancies.get(n).stream().mapToInt(Integer::intValue).sorted().toArray();
+		}
+	}
+
+	private final int maxReserves;
+	private final long size;
+	/* [light reserves][dark reserves] first index of the slice, -1 if the slice has no legal pairs */
+	private final long[][] sliceOffsets;
+	/* [light reserves][dark reserves][color][state] index of the pair within the slice, -1 if not legal */
+	private final int[][][][] pairIndices;
+	/* [light reserves][dark reserves] number of legal pairs */
+	private final int[][] pairCounts;
+	/* [light reserves][dark reserves][pair] color and state of the pair */
+	private final PylosPlayerColor[][][] pairColors;
+	private final PylosGameState[][][] pairStates;
+	/* the slices with legal pairs in index order, to find the slice of an index */
+	private final long[] sliceStarts;
+	private final int[] sliceLightReserves;
+	private final int[] sliceDarkReserves;
+
+	/**
+	 * @param maxReserves at most SPHERES_PER_PLAYER, which indexes all positions
+	 */
+	public PositionIndex(int maxReserves) {
+		if (maxReserves < 1 || maxReserves > PylosBitBoard.SPHERES_PER_PLAYER) {
+			throw new IllegalArgumentException("Max reserves should be in [1, " + PylosBitBoard.SPHERES_PER_PLAYER + "]: " + maxReserves);
+		}
+		this.maxReserves = maxReserves;
+		sliceOffsets = new long[maxReserves + 1][maxReserves + 1];
+		pairIndices = new int[maxReserves + 1][maxReserves + 1][2][STATES.length];
+		pairCounts = new int[maxReserves + 1][maxReserves + 1];
+		pairColors = new PylosPlayerColor[maxReserves + 1][maxReserves + 1][];
+		pairStates = new PylosGameState[maxReserves + 1][maxReserves + 1][];
+		List<int[]> slices = new ArrayList<>();
+		long offset = 0;
+		for (int light = 0; light <= maxReserves; light++) {
+			for (int dark = 0; dark <= maxReserves; dark++) {
+				int pairs = 0;
+				pairColors[light][dark] = new PylosPlayerColor[2 * STATES.length];
+				pairStates[light][dark] = new PylosGameState[2 * STATES.length];
+				for (PylosPlayerColor color : PylosPlayerColor.values()) {
+					for (int s = 0; s < STATES.length; s++) {
+						if (isLegal(light, dark, color, STATES[s])) {
+							pairColors[light][dark][pairs] = color;
+							pairStates[light][dark][pairs] = STATES[s];
+							pairIndices[light][dark][color.ordinal()][s] = pairs++;
+						} else {
+							pairIndices[light][dark][color.ordinal()][s] = -1;
+						}
+					}
+				}
+				pairCounts[light][dark] = pairs;
+				sliceOffsets[light][dark] = pairs == 0 ? -1 : offset;
+				if (pairs > 0) slices.add(new int[]{light, dark});
+				offset += getSliceSize(light, dark);
+			}
+		}
+		size = offset;
+		sliceStarts = new long[slices.size()];
+		sliceLightReserves = new int[slices.size()];
+		sliceDarkReserves = new int[slices.size()];
+		for (int i = 0; i < slices.size(); i++) {
+			sliceLightReserves[i] = slices.get(i)[0];
+			sliceDarkReserves[i] = slices.get(i)[1];
+			sliceStarts[i] = sliceOffsets[sliceLightReserves[i]][sliceDarkReserves[i]];
+		}
+	}
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * returns the index of the position, -1 if it is not indexed
+	 *
+	 * @param board
+	 * @param state
+	 * @param color
+	 * @return
+	 */
+	public long indexOf(PylosBitBoard board, PylosGameState state, PylosPlayerColor color) {
+		int light = board.getReservesSize(PylosPlayerColor.LIGHT);
+		int dark = board.getReservesSize(PylosPlayerColor.DARK);
+		if (light > maxReserves || dark > maxReserves || state.ordinal() >= STATES.length) return -1;
+		int pair = pairIndices[light][dark][color.ordinal()][state.ordinal()];
+		if (pair < 0) return -1;
+		int occupied = board.getOccupied();
+		int occupancy = Arrays.binarySearch(OCCUPANCIES[Integer.bitCount(occupied)], occupied);
+		assert occupancy >= 0 : "Invalid occupancy " + Integer.toBinaryString(occupied);
+		return sliceOffsets[light][dark] + ((long) occupancy * getColorings(light, dark) + colorRank(occupied, board.getLight())) * pairCounts[light][dark] + pair;
+	}
+
+	/**
+	 * returns the board of the position at 'index', the inverse of indexOf with getState and getColor
+	 *
+	 * @param index
+	 * @return
+	 */
+	public PylosBitBoard getBoard(long index) {
+		int slice = slice(index);
+		int light = sliceLightReserves[slice];
+		int dark = sliceDarkReserves[slice];
+		long colorings = getColorings(light, dark);
+		long rank = (index - sliceStarts[slice]) / pairCounts[light][dark];
+		int occupied = OCCUPANCIES[2 * PylosBitBoard.SPHERES_PER_PLAYER - light - dark][(int) (rank / colorings)];
+		int lightSpheres = colorUnrank(occupied, rank % colorings, PylosBitBoard.SPHERES_PER_PLAYER - light);
+		return new PylosBitBoard(lightSpheres, occupied & ~lightSpheres, light, dark);
+	}
+
+	public PylosGameState getState(long index) {
+		int slice = slice(index);
+		return pairStates[sliceLightReserves[slice]][sliceDarkReserves[slice]][pair(index, slice)];
+	}
+
+	/**
+	 * returns the color to play in the position at 'index'
+	 *
+	 * @param index
+	 * @return
+	 */
+	public PylosPlayerColor getColor(long index) {
+		int slice = slice(index);
+		return pairColors[sliceLightReserves[slice]][sliceDarkReserves[slice]][pair(index, slice)];
+	}
+
+	/**
+	 * returns the number of positions
+	 *
+	 * @return
+	 */
+	public long size() {
+		return size;
+	}
+
+	public int getMaxReserves() {
+		return maxReserves;
+	}
+
+	/* layout, used by the generator ------------------------------------------------------------------------------ */
+
+	/**
+	 * returns true if there is a slice of positions with these reserves
+	 */
+	boolean hasSlice(int lightReserves, int darkReserves) {
+		return sliceOffsets[lightReserves][darkReserves] >= 0;
+	}
+
+	/**
+	 * returns the index of the pair of 'color' to play in 'state' in the slice, -1 if the pair is not legal
+	 */
+	int getPairIndex(int lightReserves, int darkReserves, PylosPlayerColor color, PylosGameState state) {
+		return pairIndices[lightReserves][darkReserves][color.ordinal()][state.ordinal()];
+	}
+
+	int getPairCount(int lightReserves, int darkReserves) {
+		return pairCounts[lightReserves][darkReserves];
+	}
+
+	long getSliceOffset(int lightReserves, int darkReserves) {
+		return sliceOffsets[lightReserves][darkReserves];
+	}
+
+	/**
+	 * returns the number of ways to color the occupied locations of a position with these reserves
+	 */
+	static long getColorings(int lightReserves, int darkReserves) {
+		int light = PylosBitBoard.SPHERES_PER_PLAYER - lightReserves;
+		int dark = PylosBitBoard.SPHERES_PER_PLAYER - darkReserves;
+		return BINOMIAL[light + dark][light];
+	}
+
+	/**
+	 * returns the valid occupancies with 'spheres' spheres, ascending
+	 */
+	static int[] getOccupancies(int spheres) {
+		return OCCUPANCIES[spheres];
+	}
+
+	static PylosGameState[] getStates() {
+		return STATES;
+	}
+
+	/* internals -------------------------------------------------------------------------------------------------- */
+
+	private long getSliceSize(int lightReserves, int darkReserves) {
+		int spheres = 2 * PylosBitBoard.SPHERES_PER_PLAYER - lightReserves - darkReserves;
+		return (long) OCCUPANCIES[spheres].length * getColorings(lightReserves, darkReserves) * pairCounts[lightReserves][darkReserves];
+	}
+
+	/* returns the slice of 'index', the last one which starts at or before it */
+	private int slice(long index) {
+		assert index >= 0 && index < size : "Index out of range: " + index;
+		int slice = Arrays.binarySearch(sliceStarts, index);
+		return slice >= 0 ? slice : -slice - 2;
+	}
+
+	private int pair(long index, int slice) {
+		return (int) ((index - sliceStarts[slice]) % pairCounts[sliceLightReserves[slice]][sliceDarkReserves[slice]]);
+	}
+
+	private static boolean isLegal(int lightReserves, int darkReserves, PylosPlayerColor color, PylosGameState state) {
+		int own = color == PylosPlayerColor.LIGHT ? lightReserves : darkReserves;
+		int other = color == PylosPlayerColor.LIGHT ? darkReserves : lightReserves;
+		return other > 0 && (own > 0 || state == PylosGameState.REMOVE_FIRST);
+	}
+
+	/* returns the colex rank of the light spheres among the occupied locations */
+	private static long colorRank(int occupied, int light) {
+		long rank = 0;
+		int i = 0;
+		int j = 0;
+		for (int m = occupied; m != 0; m &= m - 1, i++) {
+			if ((light & m & -m) != 0) rank += BINOMIAL[i][++j];
+		}
+		return rank;
+	}
+
+	/* returns the 'lightSpheres' light spheres among the occupied locations of colex rank 'rank' */
+	private static int colorUnrank(int occupied, long rank, int lightSpheres) {
+		int[] locations = new int[Integer.bitCount(occupied)];
+		int n = 0;
+		for (int m = occupied; m != 0; m &= m - 1) locations[n++] = Integer.numberOfTrailingZeros(m);
+		int light = 0;
+		int i = n - 1;
+		for (int j = lightSpheres; j > 0; j--, i--) {
+			/* the largest location i with BINOMIAL[i][j] <= rank, 0 for i < j so the search stops */
+			while (BINOMIAL[i][j] > rank) i--;
+			rank -= BINOMIAL[i][j];
+			light |= PylosBitBoard.bit(locations[i]);
+		}
+		return light;
+	}
+
+	private static void addOccupancies(int location, int occupied, List<List<Integer>> occupancies) {
+		if (location == PylosBitBoard.LOCATIONS) {
+			occupancies.get(Integer.bitCount(occupied)).add(occupied);
+			return;
+		}
+		addOccupancies(location + 1, occupied, occupancies);
+		/* the lower levels come first, so the support of 'location' is decided */
+		if ((PylosBitBoard.usable(occupied) & PylosBitBoard.bit(location)) != 0) {
+			addOccupancies(location + 1, occupied | PylosBitBoard.bit(location), occupancies);
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+package be.kuleuven.pylos.game;
+
+import java.util.Arrays;
+
+/**
+ * Reusable list of PylosMove encoded moves backed by an int array, keep one per search depth so move generation
+ * does not allocate.
+ */
+public class MoveList {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private int[] moves = new int[INITIAL_CAPACITY];
+	private int size;
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * replaces the content of this list by all legal actions of 'color' in 'state'
+	 * (moves up before reserve spheres, removals before a pass), returns the number of actions
+	 *
+	 * @param board
+	 * @param state
+	 * @param color
+	 * @return
+	 */
+	public int generate(PylosBoard board, PylosGameState state, PylosPlayerColor color) {
+		size = 0;
+		switch (state) {
+			case MOVE:
+				generateMoves(board, color);
+				break;
+			case REMOVE_FIRST:
+				generateRemoves(board, color);
+				break;
+			case REMOVE_SECOND:
+				generateRemoves(board, color);
+				add(PylosMove.pass(color));
+				break;
+			default:
+				break;
+		}
+		return size;
+	}
+
+	public void add(int move) {
+		if (size == moves.length) moves = Arrays.copyOf(moves, size * 2);
+		moves[size++] = move;
+	}
+
+	public int get(int index) {
+		assert index < size : "Index " + index + " out of bounds, size " + size;
+		return moves[index];
+	}
+
+	public void set(int index, int move) {
+		assert index < size : "Index " + index + " out of bounds, size " + size;
+		moves[index] = move;
+	}
+
+	public void swap(int i, int j) {
+		int move = moves[i];
+		moves[i] = moves[j];
+		moves[j] = move;
+	}
+
+	/**
+	 * returns the index of 'move', -1 if this list does not contain it
+	 *
+	 * @param move
+	 * @return
+	 */
+	public int indexOf(int move) {
+		for (int i = 0; i < size; i++) {
+			if (moves[i] == move) return i;
+		}
+		return -1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * keeps the first 'size' moves
+	 *
+	 * @param size
+	 */
+	public void truncate(int size) {
+		assert size <= this.size : "Size " + size + " larger than " + this.size;
+		this.size = size;
+	}
+
+	/* internals -------------------------------------------------------------------------------------------------- */
+
+	private void generateMoves(PylosBoard board, PylosPlayerColor color) {
+		PylosLocation[] locations = board.getLocations();
+		for (PylosSphere sphere : board.getSpheres(color)) {
+			if (!sphere.isReserve() && sphere.canMove()) {
+				for (PylosLocation location : locations) {
+					if (sphere.canMoveTo(location)) add(PylosMove.move(sphere, location));
+				}
+			}
+		}
+		if (board.getReservesSize(color) > 0) {
+			PylosSphere reserve = board.getReserve(color);
+			for (PylosLocation location : locations) {
+				if (location.isUsable()) add(PylosMove.add(reserve, location));
+			}
+		}
+	}
+
+	private void generateRemoves(PylosBoard board, PylosPlayerColor color) {
+		for (PylosSphere sphere : board.getSpheres(color)) {
+			if (sphere.canRemove()) add(PylosMove.remove(sphere));
+		}
+	}
+
+}
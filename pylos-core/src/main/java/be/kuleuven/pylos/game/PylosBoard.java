@@ -3,7 +3,7 @@ package be.kuleuven.pylos.game;
 import be.kuleuven.pylos.player.PylosPlayer;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
  * Created by Jan on 13/02/2015.
@@ -15,7 +15,6 @@ public class PylosBoard {
 
 	private final ArrayList<ArrayList<ArrayList<PylosLocation>>> locations; // z,x,y
 	private final PylosLocation[] allLocations;
-	private final PylosLocation[][] symmetrics;
 	private final PylosSquare[] allSquares;
 
 	private final PylosSphere[] spheresLight;
@@ -87,6 +86,14 @@ public class PylosBoard {
 	private final static long[][][][] BIT_MASK_FOR_OR;    // [z][x][y][0/1 color]
 	private final static long[][][][] BIT_MASK_FOR_AND;
 
+	/* zobrist key of the board: xor of a random key per (location, color) and per (color, reserve count)
+	 * the color to move and game state are folded in by getZobristKey(color, state) */
+	private long zobrist;
+	private final static long[][][][] ZOBRIST_LOCATION;    // [z][x][y][0/1 color]
+	private final static long[][] ZOBRIST_RESERVES;        // [0/1 color][reserves]
+	private final static long[] ZOBRIST_GAME_STATE;        // [game state]
+	private final static long ZOBRIST_DARK;
+
 	static {
 		int index = 0;
 		BIT_MASK_FOR_OR = new long[4][][][];
@@ -108,6 +115,29 @@ public class PylosBoard {
 				}
 			}
 		}
+
+		SplittableRandom random = new SplittableRandom(0);
+		ZOBRIST_LOCATION = new long[4][][][];
+		for (int z = 0; z < 4; z++) {
+			ZOBRIST_LOCATION[z] = new long[4 - z][4 - z][2];
+			for (int x = 0; x < 4 - z; x++) {
+				for (int y = 0; y < 4 - z; y++) {
+					ZOBRIST_LOCATION[z][x][y][0] = random.nextLong();
+					ZOBRIST_LOCATION[z][x][y][1] = random.nextLong();
+				}
+			}
+		}
+		ZOBRIST_RESERVES = new long[2][16];
+		for (int c = 0; c < 2; c++) {
+			for (int r = 0; r < ZOBRIST_RESERVES[c].length; r++) {
+				ZOBRIST_RESERVES[c][r] = random.nextLong();
+			}
+		}
+		ZOBRIST_GAME_STATE = new long[PylosGameState.values().length];
+		for (int i = 0; i < ZOBRIST_GAME_STATE.length; i++) {
+			ZOBRIST_GAME_STATE[i] = random.nextLong();
+		}
+		ZOBRIST_DARK = random.nextLong();
 	}
 
 	public PylosBoard() {
@@ -161,56 +191,13 @@ public class PylosBoard {
 				ArrayList<PylosLocation> yList = new ArrayList<>();
 				xList.add(yList);
 				for (int y = 0; y < size - z; y++) {
-					PylosLocation pylosLocation = new PylosLocation(x, y, z);
+					PylosLocation pylosLocation = new PylosLocation(x, y, z, allLocId);
 					yList.add(pylosLocation);
 					allLocations[allLocId++] = pylosLocation;
 				}
 			}
 		}
 
-		/* order locations for 8 symmetric */
-		symmetrics = new PylosLocation[8][30];
-		// xy(0,0) >
-		int index = 0;
-		for (int z = 0; z < 4; z++)
-			for (int x = 0; x < 4 - z; x++)
-				for (int y = 0; y < 4 - z; y++) symmetrics[0][index++] = getBoardLocation(x, y, z);
-		// xy(0,0) v
-		index = 0;
-		for (int z = 0; z < 4; z++)
-			for (int y = 0; y < 4 - z; y++)
-				for (int x = 0; x < 4 - z; x++) symmetrics[1][index++] = getBoardLocation(x, y, z);
-		// xy(0,3) <
-		index = 0;
-		for (int z = 0; z < 4; z++)
-			for (int x = 3 - z; x >= 0; x--)
-				for (int y = 0; y < 4 - z; y++) symmetrics[2][index++] = getBoardLocation(x, y, z);
-		// xy(0,3) v
-		index = 0;
-		for (int z = 0; z < 4; z++)
-			for (int y = 0; y < 4 - z; y++)
-				for (int x = 3 - z; x >= 0; x--) symmetrics[3][index++] = getBoardLocation(x, y, z);
-		// xy(3,3) <
-		index = 0;
-		for (int z = 0; z < 4; z++)
-			for (int x = 3 - z; x >= 0; x--)
-				for (int y = 3 - z; y >= 0; y--) symmetrics[4][index++] = getBoardLocation(x, y, z);
-		// xy(3,3) ^
-		index = 0;
-		for (int z = 0; z < 4; z++)
-			for (int y = 3 - z; y >= 0; y--)
-				for (int x = 3 - z; x >= 0; x--) symmetrics[5][index++] = getBoardLocation(x, y, z);
-		// xy(0,3) >
-		index = 0;
-		for (int z = 0; z < 4; z++)
-			for (int x = 0; x < 4 - z; x++)
-				for (int y = 3 - z; y >= 0; y--) symmetrics[6][index++] = getBoardLocation(x, y, z);
-		// xy(0,3) ^
-		index = 0;
-		for (int z = 0; z < 4; z++)
-			for (int y = 3 - z; y >= 0; y--)
-				for (int x = 0; x < 4 - z; x++) symmetrics[7][index++] = getBoardLocation(x, y, z);
-
 		/* create squares */
 		ArrayList<PylosSquare> squares = new ArrayList<>();
 		for (int z = 0; z < size - 1; z++) {
@@ -233,63 +220,59 @@ public class PylosBoard {
 		/* link locations */
 		PylosLocation top = getBoardLocation(0, 0, SIZE - 1);
 		link(top);
+
+		zobrist = ZOBRIST_RESERVES[0][SPHERES_PER_PLAYER] ^ ZOBRIST_RESERVES[1][SPHERES_PER_PLAYER];
 	}
 
 	/* public methods --------------------------------------------------------------------------------------------- */
 
-	private long toLowestLong() {
-
-		ArrayList<PylosLocation[]> symSeqs = new ArrayList<>();
-		symSeqs.addAll(Arrays.asList(symmetrics));
-
-		for (int i = 0; i < 30; i++) {
-			int smallestOrdinal = Integer.MAX_VALUE;
-			for (int j = 0; j < symSeqs.size(); j++) {
-				PylosLocation pl = symSeqs.get(j)[i];
-				int ordinal;
-				if(!pl.isUsed()) ordinal = 0;
-				else if(pl.getSphere().PLAYER_COLOR==PylosPlayerColor.LIGHT) ordinal = 1;
-				else ordinal = 2;
-				smallestOrdinal = Math.min(smallestOrdinal, ordinal);
-			}
-			// remove larger ordinals
-			for (int j = 0; j < symSeqs.size(); ) {
-				PylosLocation pl = symSeqs.get(j)[i];
-				int ordinal;
-				if(!pl.isUsed()) ordinal = 0;
-				else if(pl.getSphere().PLAYER_COLOR==PylosPlayerColor.LIGHT) ordinal = 1;
-				else ordinal = 2;
-				if (ordinal > smallestOrdinal) {
-					symSeqs.remove(j);
-				} else {
-					j++;
-				}
-			}
-			if (symSeqs.size() == 1) break;
-		}
+	/**
+	 * returns a long representation of this board state
+	 *
+	 * @return
+	 */
+	public long toLong() {
+		return state;
+	}
 
-		PylosLocation[] sequence = symSeqs.get(0);
+	/**
+	 * returns the smallest long representation of this board state over all 8 symmetries
+	 *
+	 * @return
+	 */
+	public long toCanonicalLong() {
+		return PylosSymmetry.canonical(state);
+	}
 
-		long state = 0;
-		for (int i = 0; i < sequence.length; i++) {
-			PylosLocation pl = sequence[i];
-			long ordinal;
-			if(!pl.isUsed()) ordinal = 0;
-			else if(pl.getSphere().PLAYER_COLOR==PylosPlayerColor.LIGHT) ordinal = 1;
-			else ordinal = 2;
-			state |= (ordinal << (i*2));
-		}
+	/**
+	 * returns the symmetry which maps this board state on toCanonicalLong()
+	 * use PylosSymmetry.inverse(..) to map a location of the canonical board back
+	 *
+	 * @return
+	 */
+	public int getCanonicalSymmetry() {
+		return PylosSymmetry.canonicalSymmetry(state);
+	}
 
-		return state;
+	/**
+	 * returns the zobrist key of the spheres on this board and the reserves of both players
+	 *
+	 * @return
+	 */
+	public long getZobristKey() {
+		return zobrist;
 	}
 
 	/**
-	 * returns a long representation of this board state
+	 * returns the zobrist key of this board with the color to move and the game state folded in
 	 *
+	 * @param color
+	 * @param gameState
 	 * @return
 	 */
-	public long toLong() {
-		return state;
+	public long getZobristKey(PylosPlayerColor color, PylosGameState gameState) {
+		long key = zobrist ^ ZOBRIST_GAME_STATE[gameState.ordinal()];
+		return color == PylosPlayerColor.DARK ? key ^ ZOBRIST_DARK : key;
 	}
 
 	/**
@@ -409,6 +392,7 @@ public class PylosBoard {
 
 	void reset() {
 		state = 0;
+		zobrist = ZOBRIST_RESERVES[0][SPHERES_PER_PLAYER] ^ ZOBRIST_RESERVES[1][SPHERES_PER_PLAYER];
 		reservesLight.clear();
 		reservesDark.clear();
 
@@ -433,17 +417,21 @@ public class PylosBoard {
 		assert !sphere.isReserve() : "Can't remove " + sphere + ", it's not used";
 		assert !sphere.pylosLocation.hasAbove() : "Can't remove " + sphere + ", at " + sphere.pylosLocation + ", it has other spheres above";
 
+		ArrayList<PylosSphere> reserves = sphere.PLAYER_COLOR == PylosPlayerColor.LIGHT ? reservesLight : reservesDark;
+		zobrist ^= zobristLocation(sphere.getLocation(), sphere.PLAYER_COLOR) ^ zobristReserves(sphere.PLAYER_COLOR, reserves.size(), reserves.size() + 1);
 		clearBit(sphere.getLocation());
 		sphere.pylosLocation.remove();
-		(sphere.PLAYER_COLOR == PylosPlayerColor.LIGHT ? reservesLight : reservesDark).add(sphere);
+		reserves.add(sphere);
 	}
 
 	public boolean add(PylosSphere reserveSphere, PylosLocation toLocation) {
 		assert reserveSphere.isReserve() : reserveSphere + " is not a reserve sphere";
 		assert toLocation.isUsable() : toLocation + " is not usable";
 
+		ArrayList<PylosSphere> reserves = reserveSphere.PLAYER_COLOR == PylosPlayerColor.LIGHT ? reservesLight : reservesDark;
+		zobrist ^= zobristLocation(toLocation, reserveSphere.PLAYER_COLOR) ^ zobristReserves(reserveSphere.PLAYER_COLOR, reserves.size(), reserves.size() - 1);
 		setBit(toLocation, reserveSphere.PLAYER_COLOR);
-		(reserveSphere.PLAYER_COLOR == PylosPlayerColor.LIGHT ? reservesLight : reservesDark).remove(reserveSphere);
+		reserves.remove(reserveSphere);
 		return toLocation.put(reserveSphere);
 	}
 
@@ -456,6 +444,7 @@ public class PylosBoard {
 		assert fromLocation.Z < toLocation.Z : "Can't move " + sphere + ", at " + fromLocation.toStringCoords() + ", to " + toLocation.toStringCoords() + ", should be moved to higher z-level";
 		assert !fromLocation.isBelow(toLocation) : "Can't move, " + fromLocation.toStringCoords() + " is supporting " + toLocation.toStringCoords();
 
+		zobrist ^= zobristLocation(fromLocation, sphere.PLAYER_COLOR) ^ zobristLocation(toLocation, sphere.PLAYER_COLOR);
 		clearBit(fromLocation);
 		setBit(toLocation, sphere.PLAYER_COLOR);
 		fromLocation.remove();
@@ -471,6 +460,7 @@ public class PylosBoard {
 		assert fromLocation.Z > toLocation.Z : "Can't move down " + sphere + ", at " + fromLocation.toStringCoords() + ", to " + toLocation.toStringCoords() + ", should be moved to lower z-level";
 		assert !fromLocation.isBelow(toLocation) : "Can't move, " + fromLocation.toStringCoords() + " is supporting " + toLocation.toStringCoords();
 
+		zobrist ^= zobristLocation(fromLocation, sphere.PLAYER_COLOR) ^ zobristLocation(toLocation, sphere.PLAYER_COLOR);
 		clearBit(fromLocation);
 		setBit(toLocation, sphere.PLAYER_COLOR);
 		fromLocation.remove();
@@ -520,6 +510,14 @@ public class PylosBoard {
 		return state;
 	}
 
+	private static long zobristLocation(PylosLocation location, PylosPlayerColor color) {
+		return ZOBRIST_LOCATION[location.Z][location.X][location.Y][color.ordinal()];
+	}
+
+	private static long zobristReserves(PylosPlayerColor color, int from, int to) {
+		return ZOBRIST_RESERVES[color.ordinal()][from] ^ ZOBRIST_RESERVES[color.ordinal()][to];
+	}
+
 	private void link(PylosLocation location) {
 		if (location.Z > 0) {
 			link(location, getBoardLocation(location.X, location.Y, location.Z - 1));
@@ -3,7 +3,6 @@ package be.kuleuven.pylos.game;
 import be.kuleuven.pylos.player.PylosPlayer;
 import be.kuleuven.pylos.player.PylosPlayerObserver;
 
-import java.util.HashMap;
 import java.util.Random;
 
 /**
@@ -18,7 +17,7 @@ public class PylosGame implements PylosGameIF {
 	private final PylosPlayer playerDark;
 	private final PylosGameObserver gameObserver;
 	private final PylosPlayerObserver playerObserver;
-	private final HashMap<Long, Integer> boardStateCounts;
+	private final StateCounts boardStateCounts = new StateCounts();
 
 	private PylosPlayer currentPlayer;
 	private PylosGameState currentState;
@@ -51,7 +50,6 @@ public class PylosGame implements PylosGameIF {
 		this.gameObserver = gameObserver;
 		this.playerObserver = playerObserver;
 		this.currentState = PylosGameState.MOVE;
-		this.boardStateCounts = new HashMap<>();
 	}
 
 	/* public methods --------------------------------------------------------------------------------------------- */
@@ -235,21 +233,13 @@ public class PylosGame implements PylosGameIF {
 	}
 
 	private boolean isDrawState(long state) {
-		Integer stateCount = boardStateCounts.get(state);
-		return stateCount != null && stateCount + 1 >= MAX_BOARD_STATE_COUNT;
+		return boardStateCounts.get(state) + 1 >= MAX_BOARD_STATE_COUNT;
 	}
 
 	private boolean isDrawState() {
-		long boardState = board.toLong();
-		Integer stateCount = boardStateCounts.get(boardState);
-		if (stateCount == null) {
-			boardStateCounts.put(boardState, 1);
-		} else {
-			boardStateCounts.put(boardState, ++stateCount);
-			if (stateCount == MAX_BOARD_STATE_COUNT) {
-				setState(PylosGameState.DRAW);
-				return true;
-			}
+		if (boardStateCounts.increment(board.toLong()) == MAX_BOARD_STATE_COUNT) {
+			setState(PylosGameState.DRAW);
+			return true;
 		}
 		return false;
 	}
@@ -76,8 +76,62 @@ public class PylosGameSimulator {
 		switchPlayerColor();
 	}
 
+	/**
+	 * does the PylosMove encoded 'move', spheres on the board are looked up by location
+	 *
+	 * @param move
+	 */
+	public void doMove(int move) {
+		PylosLocation[] locations = board.getLocations();
+		switch (PylosMove.kind(move)) {
+			case PylosMove.ADD:
+				moveSphere(board.getReserve(currentColor), locations[PylosMove.to(move)]);
+				break;
+			case PylosMove.MOVE:
+				moveSphere(locations[PylosMove.from(move)].getSphere(), locations[PylosMove.to(move)]);
+				break;
+			case PylosMove.REMOVE:
+				removeSphere(locations[PylosMove.from(move)].getSphere());
+				break;
+			default:
+				pass();
+				break;
+		}
+	}
+
 	/* undo */
 
+	/**
+	 * undoes the PylosMove encoded 'move', done in 'prevState' by 'prevColor', the last move done on this board
+	 *
+	 * @param move
+	 * @param prevState
+	 * @param prevColor
+	 */
+	public void undoMove(int move, PylosGameState prevState, PylosPlayerColor prevColor) {
+		PylosLocation[] locations = board.getLocations();
+		switch (PylosMove.kind(move)) {
+			case PylosMove.ADD:
+				undoAddSphere(locations[PylosMove.to(move)].getSphere(), prevState, prevColor);
+				break;
+			case PylosMove.MOVE:
+				undoMoveSphere(locations[PylosMove.to(move)].getSphere(), locations[PylosMove.from(move)], prevState, prevColor);
+				break;
+			case PylosMove.REMOVE:
+				/* the removed sphere was put back last in the reserves */
+				PylosSphere sphere = board.getReserve(PylosMove.color(move));
+				if (prevState == PylosGameState.REMOVE_FIRST) {
+					undoRemoveFirstSphere(sphere, locations[PylosMove.from(move)], prevState, prevColor);
+				} else {
+					undoRemoveSecondSphere(sphere, locations[PylosMove.from(move)], prevState, prevColor);
+				}
+				break;
+			default:
+				undoPass(prevState, prevColor);
+				break;
+		}
+	}
+
 	public void undoMoveSphere(PylosSphere pylosSphere, PylosLocation prevLocation, PylosGameState prevState, PylosPlayerColor prevColor) {
 		assert currentState != PylosGameState.REMOVE_SECOND : currentState;
 		board.moveDown(pylosSphere, prevLocation);
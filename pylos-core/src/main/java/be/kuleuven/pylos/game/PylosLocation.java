@@ -13,6 +13,7 @@ import java.util.List;
 public class PylosLocation {
 
 	public final int X, Y, Z;
+	public final int ID;    // index in PylosBoard.getLocations()
 	final ArrayList<PylosLocation> above = new ArrayList<>();
 	final ArrayList<PylosLocation> below = new ArrayList<>();
 	final ArrayList<PylosSquare> squares = new ArrayList<>();
@@ -23,10 +24,11 @@ public class PylosLocation {
 
 	/* package constructor ---------------------------------------------------------------------------------------- */
 
-	PylosLocation(int x, int y, int z) {
+	PylosLocation(int x, int y, int z, int id) {
 		X = x;
 		Y = y;
 		Z = z;
+		ID = id;
 		if (z == 0) nUsedBelow = 4;
 	}
 
@@ -82,9 +84,13 @@ public class PylosLocation {
 	}
 
 	public int getMaxInSquare(PylosPlayer player) {
+		return getMaxInSquare(player.PLAYER_COLOR);
+	}
+
+	public int getMaxInSquare(PylosPlayerColor color) {
 		int maxInSquare = 0;
 		for (PylosSquare bs : squares) {
-			maxInSquare = Math.max(maxInSquare, bs.getInSquare(player.PLAYER_COLOR));
+			maxInSquare = Math.max(maxInSquare, bs.getInSquare(color));
 		}
 		return maxInSquare;
 	}
@@ -0,0 +1,179 @@
+package be.kuleuven.pylos.game;
+
+/**
+ * Compact int encoding of a single action, so search code can store and pass moves without allocating.
+ * <p>
+ * encoding (every legal action is non zero, NONE = 0 is never a move):
+ * <pre>
+ * bits  0-4 	to location index (PylosLocation.ID), NO_LOCATION when removing or passing
+ * bits  5-9 	from location index, NO_LOCATION for a reserve sphere or a pass
+ * bits 10-13	sphere id (PylosSphere.ID)
+ * bit  14   	sphere color, 1 = dark
+ * bits 15-16	kind: ADD, MOVE, REMOVE or PASS
+ * </pre>
+ */
+public final class PylosMove {
+
+	public static final int ADD = 0;
+	public static final int MOVE = 1;
+	public static final int REMOVE = 2;
+	public static final int PASS = 3;
+
+	public static final int NONE = 0;
+	public static final int NO_LOCATION = 31;
+
+	private static final int FROM_SHIFT = 5;
+	private static final int SPHERE_SHIFT = 10;
+	private static final int COLOR_SHIFT = 14;
+	private static final int KIND_SHIFT = 15;
+	private static final int LOCATION_MASK = 0b11111;
+
+	private PylosMove() {
+	}
+
+	/* encoding --------------------------------------------------------------------------------------------------- */
+
+	/**
+	 * returns the move adding reserve sphere 'sphere' on 'to'
+	 *
+	 * @param sphere
+	 * @param to
+	 * @return
+	 */
+	public static int add(PylosSphere sphere, PylosLocation to) {
+		return encode(ADD, sphere.PLAYER_COLOR, sphere.ID, NO_LOCATION, to.ID);
+	}
+
+	/**
+	 * returns the move of 'sphere' from its current location to 'to'
+	 *
+	 * @param sphere
+	 * @param to
+	 * @return
+	 */
+	public static int move(PylosSphere sphere, PylosLocation to) {
+		return encode(MOVE, sphere.PLAYER_COLOR, sphere.ID, sphere.getLocation().ID, to.ID);
+	}
+
+	/**
+	 * returns the removal of 'sphere' from its current location
+	 *
+	 * @param sphere
+	 * @return
+	 */
+	public static int remove(PylosSphere sphere) {
+		return encode(REMOVE, sphere.PLAYER_COLOR, sphere.ID, sphere.getLocation().ID, NO_LOCATION);
+	}
+
+	/**
+	 * returns the pass of 'color'
+	 *
+	 * @param color
+	 * @return
+	 */
+	public static int pass(PylosPlayerColor color) {
+		return encode(PASS, color, 0, NO_LOCATION, NO_LOCATION);
+	}
+
+	public static int encode(int kind, PylosPlayerColor color, int sphereId, int from, int to) {
+		return to | (from << FROM_SHIFT) | (sphereId << SPHERE_SHIFT) | ((color == PylosPlayerColor.DARK ? 1 : 0) << COLOR_SHIFT) | (kind << KIND_SHIFT);
+	}
+
+	/* decoding --------------------------------------------------------------------------------------------------- */
+
+	public static int kind(int move) {
+		return move >>> KIND_SHIFT;
+	}
+
+	public static PylosPlayerColor color(int move) {
+		return ((move >>> COLOR_SHIFT) & 1) == 0 ? PylosPlayerColor.LIGHT : PylosPlayerColor.DARK;
+	}
+
+	public static int sphereId(int move) {
+		return (move >>> SPHERE_SHIFT) & 0b1111;
+	}
+
+	public static int from(int move) {
+		return (move >>> FROM_SHIFT) & LOCATION_MASK;
+	}
+
+	public static int to(int move) {
+		return move & LOCATION_MASK;
+	}
+
+	/**
+	 * returns 'move' without its sphere id, the same for the same action on a copy of the board
+	 *
+	 * @param move
+	 * @return
+	 */
+	public static int action(int move) {
+		return move & ~(0b1111 << SPHERE_SHIFT);
+	}
+
+	/**
+	 * returns the sphere of 'move' on 'board', null for a pass
+	 *
+	 * @param move
+	 * @param board
+	 * @return
+	 */
+	public static PylosSphere getSphere(int move, PylosBoard board) {
+		return kind(move) == PASS ? null : board.getSpheres(color(move))[sphereId(move)];
+	}
+
+	/**
+	 * returns the location the sphere of 'move' comes from, null for a reserve sphere or a pass
+	 *
+	 * @param move
+	 * @param board
+	 * @return
+	 */
+	public static PylosLocation getFrom(int move, PylosBoard board) {
+		return from(move) == NO_LOCATION ? null : board.getLocations()[from(move)];
+	}
+
+	/**
+	 * returns the location the sphere of 'move' goes to, null for a removal or a pass
+	 *
+	 * @param move
+	 * @param board
+	 * @return
+	 */
+	public static PylosLocation getTo(int move, PylosBoard board) {
+		return to(move) == NO_LOCATION ? null : board.getLocations()[to(move)];
+	}
+
+	/**
+	 * returns 'move' as text, locations as "zxy": "R-012" adds, "012-103" moves, "x012" removes, "pass" passes
+	 *
+	 * @param move
+	 * @return
+	 */
+	public static String toString(int move) {
+		switch (kind(move)) {
+			case ADD:
+				return "R-" + format(to(move));
+			case MOVE:
+				return format(from(move)) + "-" + format(to(move));
+			case REMOVE:
+				return "x" + format(from(move));
+			default:
+				return "pass";
+		}
+	}
+
+	/* internals -------------------------------------------------------------------------------------------------- */
+
+	private static String format(int location) {
+		int z = 0;
+		int offset = 0;
+		while (location >= offset + (4 - z) * (4 - z)) {
+			offset += (4 - z) * (4 - z);
+			z++;
+		}
+		int n = 4 - z;
+		return "" + z + (location - offset) / n + (location - offset) % n;
+	}
+
+}
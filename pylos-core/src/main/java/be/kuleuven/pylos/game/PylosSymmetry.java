@@ -0,0 +1,170 @@
+package be.kuleuven.pylos.game;
+
+/**
+ * The 8 symmetries of the square board (4 rotations, 4 reflections), applied to the packed state of
+ * {@link PylosBoard#toLong()} through precomputed lookup tables.
+ * <p>
+ * The state is split in 10 chunks of 3 locations (6 bits), every chunk is mapped with one table lookup.
+ * Symmetry 0 is the identity.
+ */
+public final class PylosSymmetry {
+
+	public static final int COUNT = 8;
+
+	private static final int LOCATIONS = 30;
+	private static final int CHUNK_LOCATIONS = 3;
+	private static final int CHUNKS = LOCATIONS / CHUNK_LOCATIONS;
+	private static final int CHUNK_BITS = 2 * CHUNK_LOCATIONS;
+	private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+	private static final int[][] PERMUTATION = new int[COUNT][LOCATIONS];    // [symmetry][location] -> location
+	private static final int[] INVERSE = new int[COUNT];
+	private static final long[][][] TABLE = new long[COUNT][CHUNKS][1 << CHUNK_BITS];    // [symmetry][chunk][chunk bits]
+
+	static {
+		for (int s = 0; s < COUNT; s++) {
+			int index = 0;
+			for (int z = 0; z < 4; z++) {
+				int n = 4 - z;
+				for (int x = 0; x < n; x++) {
+					for (int y = 0; y < n; y++) {
+						PERMUTATION[s][index++] = locationIndex(mapX(s, x, y, n), mapY(s, x, y, n), z);
+					}
+				}
+			}
+		}
+		for (int s = 0; s < COUNT; s++) {
+			for (int t = 0; t < COUNT; t++) {
+				boolean inverse = true;
+				for (int i = 0; i < LOCATIONS && inverse; i++) {
+					inverse = PERMUTATION[t][PERMUTATION[s][i]] == i;
+				}
+				if (inverse) INVERSE[s] = t;
+			}
+		}
+		for (int s = 0; s < COUNT; s++) {
+			for (int c = 0; c < CHUNKS; c++) {
+				for (int bits = 0; bits <= CHUNK_MASK; bits++) {
+					long mapped = 0;
+					for (int k = 0; k < CHUNK_LOCATIONS; k++) {
+						long location = (bits >>> (2 * k)) & 0b11;
+						mapped |= location << (2 * PERMUTATION[s][c * CHUNK_LOCATIONS + k]);
+					}
+					TABLE[s][c][bits] = mapped;
+				}
+			}
+		}
+	}
+
+	private PylosSymmetry() {
+	}
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * returns the packed state after applying 'symmetry'
+	 *
+	 * @param state
+	 * @param symmetry
+	 * @return
+	 */
+	public static long transform(long state, int symmetry) {
+		long[][] table = TABLE[symmetry];
+		long result = 0;
+		for (int c = 0; c < CHUNKS; c++) {
+			result |= table[c][(int) (state >>> (c * CHUNK_BITS)) & CHUNK_MASK];
+		}
+		return result;
+	}
+
+	/**
+	 * returns the symmetry which maps 'state' on its canonical (numerically smallest) form
+	 *
+	 * @param state
+	 * @return
+	 */
+	public static int canonicalSymmetry(long state) {
+		int best = 0;
+		long bestState = state;
+		for (int s = 1; s < COUNT; s++) {
+			long transformed = transform(state, s);
+			if (transformed < bestState) {
+				bestState = transformed;
+				best = s;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * returns the canonical (numerically smallest) form of 'state' over all 8 symmetries
+	 *
+	 * @param state
+	 * @return
+	 */
+	public static long canonical(long state) {
+		long bestState = state;
+		for (int s = 1; s < COUNT; s++) {
+			bestState = Math.min(bestState, transform(state, s));
+		}
+		return bestState;
+	}
+
+	/**
+	 * returns the location index (see PylosLocation.ID) 'location' is mapped to by 'symmetry'
+	 *
+	 * @param location
+	 * @param symmetry
+	 * @return
+	 */
+	public static int transformLocation(int location, int symmetry) {
+		return PERMUTATION[symmetry][location];
+	}
+
+	/**
+	 * returns the symmetry which undoes 'symmetry', use it to map a move on the canonical board back
+	 *
+	 * @param symmetry
+	 * @return
+	 */
+	public static int inverse(int symmetry) {
+		return INVERSE[symmetry];
+	}
+
+	/* internals -------------------------------------------------------------------------------------------------- */
+
+	private static int mapX(int symmetry, int x, int y, int n) {
+		switch (symmetry) {
+			case 0: return x;
+			case 1: return n - 1 - y;
+			case 2: return n - 1 - x;
+			case 3: return y;
+			case 4: return n - 1 - x;
+			case 5: return x;
+			case 6: return y;
+			case 7: return n - 1 - y;
+			default: throw new IllegalArgumentException("Unknown symmetry " + symmetry);
+		}
+	}
+
+	private static int mapY(int symmetry, int x, int y, int n) {
+		switch (symmetry) {
+			case 0: return y;
+			case 1: return x;
+			case 2: return n - 1 - y;
+			case 3: return n - 1 - x;
+			case 4: return y;
+			case 5: return n - 1 - y;
+			case 6: return x;
+			case 7: return n - 1 - x;
+			default: throw new IllegalArgumentException("Unknown symmetry " + symmetry);
+		}
+	}
+
+	private static int locationIndex(int x, int y, int z) {
+		int index = 0;
+		for (int l = 0; l < z; l++) index += (4 - l) * (4 - l);
+		return index + x * (4 - z) + y;
+	}
+
+}
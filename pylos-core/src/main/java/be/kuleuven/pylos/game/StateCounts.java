@@ -0,0 +1,114 @@
+package be.kuleuven.pylos.game;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from a packed board state (PylosBoard.toLong()) to the number of times it occurred,
+ * on primitive arrays (linear probing, no boxing).
+ * <p>
+ * Every slot carries the generation it was written in, a slot of an older generation is empty. clear() only
+ * starts a new generation, so the history is reset in constant time.
+ * <p>
+ * A PylosGame keeps one for the game it plays, the boards the players search on have none.
+ */
+final class StateCounts {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private long[] keys;
+	private int[] counts;
+	private int[] generations;
+	private int generation = 1;
+	private int size;
+	private int mask;
+
+	StateCounts() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * returns the number of times 'state' occurred, 0 if never
+	 *
+	 * @param state
+	 * @return
+	 */
+	int get(long state) {
+		for (int i = slot(state); generations[i] == generation; i = (i + 1) & mask) {
+			if (keys[i] == state) return counts[i];
+		}
+		return 0;
+	}
+
+	/**
+	 * counts one more occurrence of 'state', returns the new count
+	 *
+	 * @param state
+	 * @return
+	 */
+	int increment(long state) {
+		int i = slot(state);
+		for (; generations[i] == generation; i = (i + 1) & mask) {
+			if (keys[i] == state) return ++counts[i];
+		}
+		if (2 * (size + 1) > keys.length) {
+			grow();
+			return increment(state);
+		}
+		keys[i] = state;
+		counts[i] = 1;
+		generations[i] = generation;
+		size++;
+		return 1;
+	}
+
+	/**
+	 * forgets all states in constant time
+	 */
+	void clear() {
+		size = 0;
+		if (++generation == 0) {
+			/* wrapped around, slots of generation 1 would come back to life */
+			Arrays.fill(generations, 0);
+			generation = 1;
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	/* internals -------------------------------------------------------------------------------------------------- */
+
+	private int slot(long state) {
+		long hash = state * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldCounts = counts;
+		int[] oldGenerations = generations;
+		int oldGeneration = generation;
+		allocate(oldKeys.length * 2);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldGenerations[i] == oldGeneration) {
+				int j = slot(oldKeys[i]);
+				while (generations[j] == generation) j = (j + 1) & mask;
+				keys[j] = oldKeys[i];
+				counts[j] = oldCounts[i];
+				generations[j] = generation;
+				size++;
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		counts = new int[capacity];
+		generations = new int[capacity];
+		generation = 1;
+		size = 0;
+		mask = capacity - 1;
+	}
+
+}
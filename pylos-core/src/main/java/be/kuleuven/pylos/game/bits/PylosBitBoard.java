@@ -0,0 +1,458 @@
+package be.kuleuven.pylos.game.bits;
+
+import be.kuleuven.pylos.game.PylosBoard;
+import be.kuleuven.pylos.game.PylosLocation;
+import be.kuleuven.pylos.game.PylosPlayerColor;
+
+/**
+ * Primitive Pylos board: two 30-bit occupancy masks and two reserve counters.
+ * <p>
+ * Location i uses the same order as {@link PylosBoard#getLocations()} (z, x, y), so bit i of a mask
+ * corresponds with bits 2i (light) and 2i+1 (dark) of {@link PylosBoard#toLong()}.
+ * Support, square and removability checks are answered from precomputed masks.
+ */
+public final class PylosBitBoard {
+
+	public static final int SIZE = 4;
+	public static final int LOCATIONS = 30;
+	public static final int SQUARES = 14;
+	public static final int SPHERES_PER_PLAYER = 15;
+	public static final int ALL_LOCATIONS = (1 << LOCATIONS) - 1;
+
+	/* location index of the first location of layer z */
+	private static final int[] LAYER_OFFSET = {0, 16, 25, 29, 30};
+
+	public static final int[] X = new int[LOCATIONS];
+	public static final int[] Y = new int[LOCATIONS];
+	public static final int[] Z = new int[LOCATIONS];
+
+	/* [location] the 4 locations a sphere at this location rests on (0 on level 0) */
+	static final int[] SUPPORT = new int[LOCATIONS];
+	/* [location] the (up to 4) locations resting on this location */
+	static final int[] ABOVE = new int[LOCATIONS];
+	/* [location] the locations on a strictly higher level */
+	static final int[] HIGHER = new int[LOCATIONS];
+	/* [square] the 4 locations of the square */
+	static final int[] SQUARE = new int[SQUARES];
+	/* [location] the squares (bit per square index) this location is part of */
+	static final int[] SQUARES_OF = new int[LOCATIONS];
+
+	static {
+		for (int z = 0; z < SIZE; z++) {
+			for (int x = 0; x < SIZE - z; x++) {
+				for (int y = 0; y < SIZE - z; y++) {
+					int i = index(x, y, z);
+					X[i] = x;
+					Y[i] = y;
+					Z[i] = z;
+					for (int zz = z + 1; zz < SIZE; zz++) {
+						HIGHER[i] |= ((1 << (LAYER_OFFSET[zz + 1] - LAYER_OFFSET[zz])) - 1) << LAYER_OFFSET[zz];
+					}
+				}
+			}
+		}
+		int square = 0;
+		for (int z = 0; z < SIZE - 1; z++) {
+			for (int x = 0; x < SIZE - z - 1; x++) {
+				for (int y = 0; y < SIZE - z - 1; y++) {
+					int top = index(x, y, z + 1);
+					int mask = bit(index(x, y, z)) | bit(index(x + 1, y, z)) | bit(index(x, y + 1, z)) | bit(index(x + 1, y + 1, z));
+					SQUARE[square] = mask;
+					SUPPORT[top] = mask;
+					for (int i = 0; i < LOCATIONS; i++) {
+						if ((mask & bit(i)) != 0) {
+							ABOVE[i] |= bit(top);
+							SQUARES_OF[i] |= 1 << square;
+						}
+					}
+					square++;
+				}
+			}
+		}
+	}
+
+	private int light;
+	private int dark;
+	private int reservesLight;
+	private int reservesDark;
+
+	/* constructors ----------------------------------------------------------------------------------------------- */
+
+	public PylosBitBoard() {
+		this(0, 0, SPHERES_PER_PLAYER, SPHERES_PER_PLAYER);
+	}
+
+	public PylosBitBoard(int light, int dark, int reservesLight, int reservesDark) {
+		assert (light & dark) == 0 : "Light and dark overlap: " + Integer.toBinaryString(light & dark);
+		assert ((light | dark) & ~ALL_LOCATIONS) == 0;
+		this.light = light;
+		this.dark = dark;
+		this.reservesLight = reservesLight;
+		this.reservesDark = reservesDark;
+	}
+
+	public PylosBitBoard(PylosBitBoard other) {
+		this(other.light, other.dark, other.reservesLight, other.reservesDark);
+	}
+
+	/* conversion ------------------------------------------------------------------------------------------------- */
+
+	/**
+	 * returns the bitboard of the given board
+	 *
+	 * @param board
+	 * @return
+	 */
+	public static PylosBitBoard fromBoard(PylosBoard board) {
+		int light = 0, dark = 0;
+		PylosLocation[] locations = board.getLocations();
+		for (int i = 0; i < LOCATIONS; i++) {
+			if (locations[i].isUsed()) {
+				if (locations[i].getSphere().PLAYER_COLOR == PylosPlayerColor.LIGHT) {
+					light |= bit(i);
+				} else {
+					dark |= bit(i);
+				}
+			}
+		}
+		return new PylosBitBoard(light, dark, board.getReservesSize(PylosPlayerColor.LIGHT), board.getReservesSize(PylosPlayerColor.DARK));
+	}
+
+	/**
+	 * returns the bitboard of a PylosBoard.toLong() state, the reserves are whatever is not on the board
+	 *
+	 * @param state
+	 * @return
+	 */
+	public static PylosBitBoard fromLong(long state) {
+		int light = compact(state);
+		int dark = compact(state >>> 1);
+		return new PylosBitBoard(light, dark, SPHERES_PER_PLAYER - Integer.bitCount(light), SPHERES_PER_PLAYER - Integer.bitCount(dark));
+	}
+
+	/**
+	 * returns a new PylosBoard with the same position
+	 * spheres are put in location order, so their ids may differ from the board this bitboard was taken from
+	 *
+	 * @return
+	 */
+	public PylosBoard toBoard() {
+		assert reservesLight + Integer.bitCount(light) == SPHERES_PER_PLAYER : "Light spheres are not accounted for";
+		assert reservesDark + Integer.bitCount(dark) == SPHERES_PER_PLAYER : "Dark spheres are not accounted for";
+		PylosBoard board = new PylosBoard();
+		PylosLocation[] locations = board.getLocations();
+		for (int i = 0; i < LOCATIONS; i++) {
+			if ((light & bit(i)) != 0) {
+				board.add(board.getReserve(PylosPlayerColor.LIGHT), locations[i]);
+			} else if ((dark & bit(i)) != 0) {
+				board.add(board.getReserve(PylosPlayerColor.DARK), locations[i]);
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * returns the state in the format of PylosBoard.toLong()
+	 *
+	 * @return
+	 */
+	public long toLong() {
+		return spread(light) | (spread(dark) << 1);
+	}
+
+	/**
+	 * returns both occupancy masks in one long, light in the low and dark in the high 32 bits
+	 *
+	 * @return
+	 */
+	public long toPackedLong() {
+		return (light & 0xFFFFFFFFL) | ((long) dark << 32);
+	}
+
+	/* getters ---------------------------------------------------------------------------------------------------- */
+
+	public int getLight() {
+		return light;
+	}
+
+	public int getDark() {
+		return dark;
+	}
+
+	public int getSpheres(PylosPlayerColor color) {
+		return color == PylosPlayerColor.LIGHT ? light : dark;
+	}
+
+	public int getOccupied() {
+		return light | dark;
+	}
+
+	public int getReservesSize(PylosPlayerColor color) {
+		return color == PylosPlayerColor.LIGHT ? reservesLight : reservesDark;
+	}
+
+	public int getNumberOfSpheresOnBoard() {
+		return Integer.bitCount(light | dark);
+	}
+
+	/* queries ---------------------------------------------------------------------------------------------------- */
+
+	/**
+	 * returns true if location is free and fully supported
+	 *
+	 * @param location
+	 * @return
+	 */
+	public boolean isUsable(int location) {
+		int occupied = light | dark;
+		return (occupied & bit(location)) == 0 && (SUPPORT[location] & ~occupied) == 0;
+	}
+
+	/**
+	 * returns all free and fully supported locations
+	 *
+	 * @return
+	 */
+	public int getUsable() {
+		return usable(light | dark);
+	}
+
+	/**
+	 * returns true if the sphere at location has no spheres on top of it
+	 *
+	 * @param location
+	 * @return
+	 */
+	public boolean isFree(int location) {
+		return (ABOVE[location] & (light | dark)) == 0;
+	}
+
+	/**
+	 * returns the spheres of 'color' which can be removed (or moved)
+	 *
+	 * @param color
+	 * @return
+	 */
+	public int getRemovable(PylosPlayerColor color) {
+		int own = getSpheres(color);
+		int occupied = light | dark;
+		int removable = 0;
+		for (int m = own; m != 0; m &= m - 1) {
+			int i = Integer.numberOfTrailingZeros(m);
+			if ((ABOVE[i] & occupied) == 0) removable |= bit(i);
+		}
+		return removable;
+	}
+
+	/**
+	 * returns the locations the sphere at 'from' can be moved to
+	 *
+	 * @param from
+	 * @return
+	 */
+	public int getMoveTargets(int from) {
+		int occupied = light | dark;
+		if ((ABOVE[from] & occupied) != 0) return 0;
+		/* the target should be usable once 'from' is gone, and not rest on 'from' */
+		return usable(occupied) & HIGHER[from] & ~ABOVE[from];
+	}
+
+	/**
+	 * returns true if the sphere of 'color' at 'from' can be moved to 'to'
+	 *
+	 * @param color
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	public boolean canMove(PylosPlayerColor color, int from, int to) {
+		return (getSpheres(color) & bit(from)) != 0 && (getMoveTargets(from) & bit(to)) != 0;
+	}
+
+	/**
+	 * returns true if the sphere at location is part of a square of its own color
+	 *
+	 * @param color
+	 * @param location
+	 * @return
+	 */
+	public boolean isInSquare(PylosPlayerColor color, int location) {
+		return completesSquare(getSpheres(color), location);
+	}
+
+	/**
+	 * returns the maximum number of spheres of 'color' in one of the squares of location
+	 *
+	 * @param color
+	 * @param location
+	 * @return
+	 */
+	public int getMaxInSquare(PylosPlayerColor color, int location) {
+		int own = getSpheres(color);
+		int max = 0;
+		for (int s = SQUARES_OF[location]; s != 0; s &= s - 1) {
+			max = Math.max(max, Integer.bitCount(own & SQUARE[Integer.numberOfTrailingZeros(s)]));
+		}
+		return max;
+	}
+
+	/* make / unmake ---------------------------------------------------------------------------------------------- */
+
+	/**
+	 * puts a reserve sphere of 'color' at location, returns true if a square of 'color' is completed
+	 *
+	 * @param color
+	 * @param location
+	 * @return
+	 */
+	public boolean add(PylosPlayerColor color, int location) {
+		assert isUsable(location) : "Location " + location + " is not usable";
+		if (color == PylosPlayerColor.LIGHT) {
+			assert reservesLight > 0 : "Light has no reserves";
+			light |= bit(location);
+			reservesLight--;
+			return completesSquare(light, location);
+		} else {
+			assert reservesDark > 0 : "Dark has no reserves";
+			dark |= bit(location);
+			reservesDark--;
+			return completesSquare(dark, location);
+		}
+	}
+
+	/**
+	 * moves the sphere of 'color' from 'from' to 'to', returns true if a square of 'color' is completed
+	 *
+	 * @param color
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	public boolean move(PylosPlayerColor color, int from, int to) {
+		assert canMove(color, from, to) : "Can't move from " + from + " to " + to;
+		int delta = bit(from) | bit(to);
+		if (color == PylosPlayerColor.LIGHT) {
+			light ^= delta;
+			return completesSquare(light, to);
+		} else {
+			dark ^= delta;
+			return completesSquare(dark, to);
+		}
+	}
+
+	/**
+	 * moves the sphere of 'color' from 'from' back down to 'to', the inverse of move(color, to, from)
+	 *
+	 * @param color
+	 * @param from
+	 * @param to
+	 */
+	public void moveDown(PylosPlayerColor color, int from, int to) {
+		assert (getSpheres(color) & bit(from)) != 0 && (getOccupied() & bit(to)) == 0;
+		int delta = bit(from) | bit(to);
+		if (color == PylosPlayerColor.LIGHT) {
+			light ^= delta;
+		} else {
+			dark ^= delta;
+		}
+	}
+
+	/**
+	 * takes the sphere of 'color' at location back to the reserves
+	 *
+	 * @param color
+	 * @param location
+	 */
+	public void remove(PylosPlayerColor color, int location) {
+		assert (getSpheres(color) & bit(location)) != 0 : "No " + color + " sphere at " + location;
+		if (color == PylosPlayerColor.LIGHT) {
+			light &= ~bit(location);
+			reservesLight++;
+		} else {
+			dark &= ~bit(location);
+			reservesDark++;
+		}
+	}
+
+	/* static helpers --------------------------------------------------------------------------------------------- */
+
+	public static int index(int x, int y, int z) {
+		return LAYER_OFFSET[z] + x * (SIZE - z) + y;
+	}
+
+	public static int bit(int location) {
+		return 1 << location;
+	}
+
+	/**
+	 * returns the free locations which are fully supported by 'occupied'
+	 *
+	 * @param occupied
+	 * @return
+	 */
+	public static int usable(int occupied) {
+		int usable = ~occupied & ((1 << LAYER_OFFSET[1]) - 1);
+		for (int m = ~occupied & ALL_LOCATIONS & ~((1 << LAYER_OFFSET[1]) - 1); m != 0; m &= m - 1) {
+			int i = Integer.numberOfTrailingZeros(m);
+			if ((SUPPORT[i] & ~occupied) == 0) usable |= bit(i);
+		}
+		return usable;
+	}
+
+	/**
+	 * returns true if 'own' contains a complete square through location
+	 *
+	 * @param own
+	 * @param location
+	 * @return
+	 */
+	public static boolean completesSquare(int own, int location) {
+		for (int s = SQUARES_OF[location]; s != 0; s &= s - 1) {
+			int square = SQUARE[Integer.numberOfTrailingZeros(s)];
+			if ((own & square) == square) return true;
+		}
+		return false;
+	}
+
+	/* spreads 30 bits to the even bits of a long */
+	static long spread(int mask) {
+		long x = mask & 0xFFFFFFFFL;
+		x = (x | (x << 16)) & 0x0000FFFF0000FFFFL;
+		x = (x | (x << 8)) & 0x00FF00FF00FF00FFL;
+		x = (x | (x << 4)) & 0x0F0F0F0F0F0F0F0FL;
+		x = (x | (x << 2)) & 0x3333333333333333L;
+		x = (x | (x << 1)) & 0x5555555555555555L;
+		return x;
+	}
+
+	/* gathers the even bits of a long into an int */
+	static int compact(long state) {
+		long x = state & 0x5555555555555555L;
+		x = (x | (x >>> 1)) & 0x3333333333333333L;
+		x = (x | (x >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+		x = (x | (x >>> 4)) & 0x00FF00FF00FF00FFL;
+		x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+		x = (x | (x >>> 16)) & 0x00000000FFFFFFFFL;
+		return (int) x;
+	}
+
+	/* object ----------------------------------------------------------------------------------------------------- */
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (!(o instanceof PylosBitBoard)) return false;
+		PylosBitBoard other = (PylosBitBoard) o;
+		return light == other.light && dark == other.dark && reservesLight == other.reservesLight && reservesDark == other.reservesDark;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(toPackedLong() * 0x9E3779B97F4A7C15L) ^ (reservesLight << 4 | reservesDark);
+	}
+
+	public String toString() {
+		return "PylosBitBoard[light=" + Integer.toBinaryString(light) + ", dark=" + Integer.toBinaryString(dark) + ", reservesLight=" + reservesLight + ", reservesDark=" + reservesDark + "]";
+	}
+
+}
@@ -0,0 +1,269 @@
+package be.kuleuven.pylos.oracle;
+
+import be.kuleuven.pylos.endgame.PositionIndex;
+import be.kuleuven.pylos.game.PylosBoard;
+import be.kuleuven.pylos.game.PylosGameState;
+import be.kuleuven.pylos.game.PylosPlayerColor;
+import be.kuleuven.pylos.game.bits.PylosBitBoard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+
+/**
+ * Perfect-play oracle: the value of every position reachable from the start of the game, written by the solver of
+ * module pylos-solver in a memory-mapped file, at the index of the position in PositionIndex(SPHERES_PER_PLAYER), so
+ * a probe is one read.
+ * <p>
+ * value of a position, for the player to play:
+ * <pre>
+ *  d > 0	wins, the game ends after d actions
+ *  d < 0	loses, the game ends after -d actions
+ *  DRAW	neither player can force the end of the game
+ *  UNKNOWN	the position is not reachable from the position the solver started from
+ * </pre>
+ * An action is a move, a remove or a pass. The winner ends the game as fast as it can, the loser as late as it can.
+ * The solver gives the oracle enough value bits for the longest distance it finds, up to MAX_VALUE_BITS. Only if
+ * that is not enough, distances of getMaxDistance() and more are stored as getMaxDistance(): such a value only
+ * tells who wins, and isExact() is false.
+ * <p>
+ * The values do not depend on the history of the game. PylosGame ends a game in which neither player can force the
+ * end as a draw when a board repeats MAX_BOARD_STATE_COUNT times, but it also ends a won game as a draw when the
+ * winner repeats a board too often, see PylosPlayerOracle.
+ * <p>
+ * code of a position, in 'valueBits' bits:
+ * <pre>
+ *  0		not reached
+ *  1		reached, a draw once the solver is done
+ *  2 * d	wins in d
+ *  2 * d + 1	loses in d
+ * </pre>
+ * file layout: MAGIC (long), valueBits (long), exact (long, 1 if no distance was capped), zeros up to HEADER_BYTES,
+ * the codes (see PackedValues)
+ */
+public class Oracle implements Closeable {
+
+	public static final int UNKNOWN = Integer.MIN_VALUE;
+	public static final int DRAW = 0;
+
+	public static final int NOT_REACHED = 0;
+	public static final int REACHED = 1;
+
+	public static final int MAX_VALUE_BITS = 16;
+
+	private static final long MAGIC = 0x50594C4F534F5243L;     // "PYLOSORC"
+	private static final int HEADER_BYTES = 4096;               // the codes start on a page
+	private static final int EXACT_OFFSET = 2 * Long.BYTES;
+
+	private final PositionIndex index = new PositionIndex(PylosBitBoard.SPHERES_PER_PLAYER);
+	private final int maxDistance;
+	private boolean exact;
+
+	private final RandomAccessFile file;
+	private final PackedValues codes;
+
+	private Oracle(int valueBits, RandomAccessFile file, boolean create, boolean writable) throws IOException {
+		if (valueBits < 2 || valueBits > MAX_VALUE_BITS || Integer.bitCount(valueBits) != 1) throw new IOException("Value bits should be 2, 4, 8 or 16: " + valueBits);
+		maxDistance = (1 << (valueBits - 1)) - 1;
+		this.file = file;
+		long length = HEADER_BYTES + PackedValues.bytes(index.size(), valueBits);
+		if (create) {
+			/* a new file reads as zeros, which are positions not reached */
+			file.setLength(length);
+			file.seek(0);
+			file.writeLong(MAGIC);
+			file.writeLong(valueBits);
+			file.writeLong(1);
+			exact = true;
+		} else if (file.length() != length) {
+			throw new IOException("Oracle size is " + file.length() + " bytes, expected " + length);
+		} else {
+			file.seek(EXACT_OFFSET);
+			exact = file.readLong() == 1;
+		}
+		codes = new PackedValues(file.getChannel(), HEADER_BYTES, index.size(), valueBits, writable);
+	}
+
+	/**
+	 * creates the file of an oracle with 'valueBits' bits per position, no position reached
+	 *
+	 * @param path
+	 * @param valueBits 2, 4, 8 or 16
+	 * @return
+	 * @throws IOException
+	 */
+	public static Oracle create(Path path, int valueBits) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+		try {
+			file.setLength(0);
+			return new Oracle(valueBits, file, true, true);
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * maps the oracle in the file at 'path', read only
+	 *
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static Oracle open(Path path) throws IOException {
+		return open(path, false);
+	}
+
+	/**
+	 * maps the oracle in the file at 'path', 'writable' for a solver which continues on it
+	 *
+	 * @param path
+	 * @param writable
+	 * @return
+	 * @throws IOException
+	 */
+	public static Oracle open(Path path, boolean writable) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path.toFile(), writable ? "rw" : "r");
+		try {
+			if (file.length() < HEADER_BYTES || file.readLong() != MAGIC) throw new IOException("Not an oracle: " + path);
+			return new Oracle((int) file.readLong(), file, false, writable);
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * returns the value of the position for 'color' to play in 'state'
+	 *
+	 * @param board
+	 * @param state
+	 * @param color
+	 * @return
+	 */
+	public int probe(PylosBoard board, PylosGameState state, PylosPlayerColor color) {
+		return probe(PylosBitBoard.fromBoard(board), state, color);
+	}
+
+	/**
+	 * returns the value of the position for 'color' to play in 'state'
+	 *
+	 * @param board
+	 * @param state
+	 * @param color
+	 * @return
+	 */
+	public int probe(PylosBitBoard board, PylosGameState state, PylosPlayerColor color) {
+		long i = index.indexOf(board, state, color);
+		return i < 0 ? UNKNOWN : value(getCode(i));
+	}
+
+	/**
+	 * returns the value of a code
+	 *
+	 * @param code
+	 * @return
+	 */
+	public static int value(int code) {
+		if (code == NOT_REACHED) return UNKNOWN;
+		if (code == REACHED) return DRAW;
+		return (code & 1) == 0 ? code >>> 1 : -(code >>> 1);
+	}
+
+	/**
+	 * returns the code of a win in 'distance' actions, at most getMaxDistance()
+	 *
+	 * @param distance
+	 * @return
+	 */
+	public static int winCode(int distance) {
+		return distance << 1;
+	}
+
+	public static int lossCode(int distance) {
+		return distance << 1 | 1;
+	}
+
+	public int getCode(long index) {
+		return codes.get(index);
+	}
+
+	public void setCode(long index, int code) {
+		codes.set(index, code);
+	}
+
+	/**
+	 * sets the code of the position at 'index' if it is 'expected', returns whether it did
+	 *
+	 * @param index
+	 * @param expected
+	 * @param code
+	 * @return
+	 */
+	public boolean compareAndSetCode(long index, int expected, int code) {
+		return codes.compareAndSet(index, expected, code);
+	}
+
+	public PositionIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * returns the number of positions
+	 *
+	 * @return
+	 */
+	public long size() {
+		return index.size();
+	}
+
+	public int getValueBits() {
+		return codes.getBits();
+	}
+
+	/**
+	 * returns the largest distance the codes hold, larger distances are stored as this one
+	 *
+	 * @return
+	 */
+	public int getMaxDistance() {
+		return maxDistance;
+	}
+
+	/**
+	 * returns true if every win and loss is stored with its distance, false if distances of getMaxDistance() and
+	 * more are stored as getMaxDistance()
+	 *
+	 * @return
+	 */
+	public boolean isExact() {
+		return exact;
+	}
+
+	/**
+	 * records in the file of a writable oracle that distances are capped from now on
+	 *
+	 * @throws IOException
+	 */
+	public void setCapped() throws IOException {
+		exact = false;
+		file.seek(EXACT_OFFSET);
+		file.writeLong(0);
+	}
+
+	/**
+	 * writes the changes of a writable oracle to the file
+	 */
+	public void force() {
+		codes.force();
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+}
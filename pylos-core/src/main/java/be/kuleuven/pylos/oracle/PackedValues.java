@@ -0,0 +1,144 @@
+package be.kuleuven.pylos.oracle;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Array of small unsigned values of 'bits' bits in a memory-mapped region of a file, for arrays larger than the heap:
+ * the operating system pages the values in and out.
+ * <p>
+ * The values are packed in longs, 64 / bits per long, so a value never spans two longs. The longs are accessed
+ * atomically, so threads may update different values of the same long at the same time.
+ */
+public class PackedValues {
+
+	private static final int CHUNK_BITS = 30;                   // a mapped buffer holds at most 2 GB
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+	private static final VarHandle WORD = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private final long size;
+	private final int bits;
+	private final int valuesPerWordShift;      // log2 of the values per long
+	private final long valueMask;
+	private final MappedByteBuffer[] chunks;
+
+	/**
+	 * maps the values at 'offset' in the file of 'channel', the file should be at least offset + bytes(size, bits)
+	 * long; a new region of a file reads as zeros
+	 *
+	 * @param channel
+	 * @param offset   a multiple of Long.BYTES
+	 * @param size     number of values
+	 * @param bits     1, 2, 4, 8, 16 or 32
+	 * @param writable
+	 * @throws IOException
+	 */
+	public PackedValues(FileChannel channel, long offset, long size, int bits, boolean writable) throws IOException {
+		if (bits < 1 || bits > 32 || Integer.bitCount(bits) != 1) throw new IllegalArgumentException("Bits should be a power of two up to 32: " + bits);
+		if (offset % Long.BYTES != 0) throw new IllegalArgumentException("Offset should be a multiple of " + Long.BYTES + ": " + offset);
+		this.size = size;
+		this.bits = bits;
+		this.valuesPerWordShift = Integer.numberOfTrailingZeros(Long.SIZE / bits);
+		this.valueMask = (1L << bits) - 1;
+		long bytes = bytes(size, bits);
+		chunks = new MappedByteBuffer[(int) ((bytes + CHUNK_MASK) >>> CHUNK_BITS)];
+		for (int c = 0; c < chunks.length; c++) {
+			long position = (long) c << CHUNK_BITS;
+			chunks[c] = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+					offset + position, Math.min(CHUNK_MASK + 1, bytes - position));
+		}
+	}
+
+	/**
+	 * returns the number of bytes 'size' values of 'bits' bits take
+	 *
+	 * @param size
+	 * @param bits
+	 * @return
+	 */
+	public static long bytes(long size, int bits) {
+		long valuesPerWord = Long.SIZE / bits;
+		return (size + valuesPerWord - 1) / valuesPerWord * Long.BYTES;
+	}
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	public int get(long i) {
+		return (int) ((getWord(i >>> valuesPerWordShift) >>> shift(i)) & valueMask);
+	}
+
+	public void set(long i, int value) {
+		while (true) {
+			int old = get(i);
+			if (old == value || compareAndSet(i, old, value)) return;
+		}
+	}
+
+	/**
+	 * sets value 'i' to 'value' if it is 'expected', returns whether it did
+	 *
+	 * @param i
+	 * @param expected
+	 * @param value
+	 * @return
+	 */
+	public boolean compareAndSet(long i, int expected, int value) {
+		assert value >= 0 && value <= valueMask : "Value out of range: " + value;
+		long word = i >>> valuesPerWordShift;
+		int shift = shift(i);
+		while (true) {
+			long old = getWord(word);
+			if (((old >>> shift) & valueMask) != expected) return false;
+			long updated = old & ~(valueMask << shift) | ((long) value << shift);
+			long offset = word * Long.BYTES;
+			if (WORD.compareAndSet(chunks[(int) (offset >>> CHUNK_BITS)], (int) (offset & CHUNK_MASK), old, updated)) return true;
+		}
+	}
+
+	/**
+	 * returns long 'word', which packs the values from word * 64 / bits
+	 *
+	 * @param word
+	 * @return
+	 */
+	public long getWord(long word) {
+		long offset = word * Long.BYTES;
+		return (long) WORD.getOpaque(chunks[(int) (offset >>> CHUNK_BITS)], (int) (offset & CHUNK_MASK));
+	}
+
+	public void setWord(long word, long values) {
+		long offset = word * Long.BYTES;
+		WORD.setOpaque(chunks[(int) (offset >>> CHUNK_BITS)], (int) (offset & CHUNK_MASK), values);
+	}
+
+	/**
+	 * returns the number of values
+	 *
+	 * @return
+	 */
+	public long size() {
+		return size;
+	}
+
+	public int getBits() {
+		return bits;
+	}
+
+	/**
+	 * writes the changes to the file
+	 */
+	public void force() {
+		for (MappedByteBuffer chunk : chunks) chunk.force();
+	}
+
+	/* internals -------------------------------------------------------------------------------------------------- */
+
+	private int shift(long i) {
+		return (int) (i & ((1 << valuesPerWordShift) - 1)) * bits;
+	}
+
+}
@@ -0,0 +1,86 @@
+package be.kuleuven.pylos.perft;
+
+import be.kuleuven.pylos.game.*;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts the leaf sequences of all legal actions up to a given depth through PylosGameSimulator.
+ * <p>
+ * Every action is one ply: a move (add a reserve sphere or move a sphere up), the removal of a sphere or a pass.
+ * Only one reserve sphere is tried per location, as all reserve spheres of a player are interchangeable.
+ * Completed games before the requested depth add no leaves.
+ */
+public class Perft {
+
+	private final PylosBoard board;
+	private final PylosGameSimulator simulator;
+	private MoveList[] moveLists = new MoveList[0];    // one per remaining depth
+
+	public Perft(PylosBoard board, PylosGameState state, PylosPlayerColor color) {
+		this.board = board;
+		this.simulator = new PylosGameSimulator(state, color, board);
+	}
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * returns the number of leaf sequences 'depth' plies deep
+	 *
+	 * @param depth
+	 * @return
+	 */
+	public long perft(int depth) {
+		if (depth == 0) {
+			return 1;
+		}
+		return perft(depth, null);
+	}
+
+	/**
+	 * returns the number of leaf sequences 'depth' plies deep per root action, in generation order
+	 *
+	 * @param depth
+	 * @return
+	 */
+	public Map<String, Long> divide(int depth) {
+		if (depth <= 0) {
+			throw new IllegalArgumentException("Depth should be positive: " + depth);
+		}
+		Map<String, Long> counts = new LinkedHashMap<>();
+		perft(depth, counts);
+		return counts;
+	}
+
+	/* internals -------------------------------------------------------------------------------------------------- */
+
+	private long perft(int depth, Map<String, Long> counts) {
+		PylosGameState state = simulator.getState();
+		PylosPlayerColor color = simulator.getColor();
+		MoveList moves = moveList(depth);
+		moves.generate(board, state, color);
+		long nodes = 0;
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			simulator.doMove(move);
+			long count = depth == 1 ? 1 : perft(depth - 1, null);
+			simulator.undoMove(move, state, color);
+			nodes += count;
+			if (counts != null) counts.put(PylosMove.toString(move), count);
+		}
+		return nodes;
+	}
+
+	private MoveList moveList(int depth) {
+		if (depth >= moveLists.length) {
+			moveLists = Arrays.copyOf(moveLists, depth + 1);
+		}
+		if (moveLists[depth] == null) {
+			moveLists[depth] = new MoveList();
+		}
+		return moveLists[depth];
+	}
+
+}
@@ -0,0 +1,101 @@
+package be.kuleuven.pylos.perft;
+
+import be.kuleuven.pylos.game.PylosBoard;
+import be.kuleuven.pylos.game.PylosGameState;
+import be.kuleuven.pylos.game.PylosPlayerColor;
+import be.kuleuven.pylos.game.bits.PylosBitBoard;
+
+import java.util.Map;
+
+/**
+ * Runs perft on a set of reference positions and checks the counts of the object engine.
+ * <p>
+ * usage: PerftMain [max depth] or PerftMain divide [position] [depth]
+ */
+public class PerftMain {
+
+	/* name, packed state (PylosBoard.toLong()), color to play, game state, counts for depth 1, 2, ... */
+	private static final String[] NAMES = {"start", "midgame", "remove", "endgame"};
+	private static final long[] STATES = {0x0L, 0x85698900L, 0x10008569a800L, 0x52029529aa45L};
+	private static final PylosPlayerColor[] COLORS = {PylosPlayerColor.LIGHT, PylosPlayerColor.LIGHT, PylosPlayerColor.DARK, PylosPlayerColor.LIGHT};
+	private static final PylosGameState[] GAME_STATES = {PylosGameState.MOVE, PylosGameState.MOVE, PylosGameState.REMOVE_FIRST, PylosGameState.MOVE};
+	private static final long[][] COUNTS = {
+			{16, 240, 3360, 43680, 524376, 5786496},
+			{13, 162, 1677, 17431, 167086, 1571430},
+			{5, 25, 207, 1705, 13208, 115725},
+			{4, 30, 149, 898, 4964, 27596}
+	};
+
+	public static void main(String[] args) {
+		if (args.length == 3 && args[0].equals("divide")) {
+			divide(indexOf(args[1]), Integer.parseInt(args[2]));
+		} else {
+			run(args.length == 1 ? Integer.parseInt(args[0]) : COUNTS[0].length);
+		}
+	}
+
+	/**
+	 * runs perft on all reference positions up to 'maxDepth', returns false on a count mismatch
+	 *
+	 * @param maxDepth
+	 * @return
+	 */
+	public static boolean run(int maxDepth) {
+		boolean ok = true;
+		for (int p = 0; p < NAMES.length; p++) {
+			System.out.println(NAMES[p] + " (" + COLORS[p] + ", " + GAME_STATES[p] + ")");
+			for (int depth = 1; depth <= maxDepth; depth++) {
+				Perft perft = new Perft(createBoard(p), GAME_STATES[p], COLORS[p]);
+				long startTime = System.nanoTime();
+				long nodes = perft.perft(depth);
+				double seconds = Math.max(System.nanoTime() - startTime, 1) / 1e9;
+				String check = "";
+				if (depth <= COUNTS[p].length) {
+					boolean match = nodes == COUNTS[p][depth - 1];
+					ok &= match;
+					check = match ? "\tok" : "\tMISMATCH, expected " + COUNTS[p][depth - 1];
+				}
+				System.out.printf("  depth %d\t%12d nodes\t%8.3f s\t%12.0f nodes/s%s%n", depth, nodes, seconds, nodes / seconds, check);
+			}
+		}
+		System.out.println(ok ? "All counts match" : "Count mismatch");
+		return ok;
+	}
+
+	/**
+	 * prints the perft counts per root action of reference position 'position'
+	 *
+	 * @param position
+	 * @param depth
+	 */
+	public static void divide(int position, int depth) {
+		Perft perft = new Perft(createBoard(position), GAME_STATES[position], COLORS[position]);
+		long startTime = System.nanoTime();
+		Map<String, Long> counts = perft.divide(depth);
+		double seconds = Math.max(System.nanoTime() - startTime, 1) / 1e9;
+		long total = 0;
+		for (Map.Entry<String, Long> entry : counts.entrySet()) {
+			System.out.println(entry.getKey() + "\t" + entry.getValue());
+			total += entry.getValue();
+		}
+		System.out.printf("%d actions, %d nodes, %.3f s, %.0f nodes/s%n", counts.size(), total, seconds, total / seconds);
+	}
+
+	/**
+	 * returns a new board in reference position 'position', the reserves follow from the spheres on the board
+	 *
+	 * @param position
+	 * @return
+	 */
+	public static PylosBoard createBoard(int position) {
+		return PylosBitBoard.fromLong(STATES[position]).toBoard();
+	}
+
+	private static int indexOf(String name) {
+		for (int p = 0; p < NAMES.length; p++) {
+			if (NAMES[p].equals(name)) return p;
+		}
+		throw new IllegalArgumentException("Unknown position: " + name);
+	}
+
+}
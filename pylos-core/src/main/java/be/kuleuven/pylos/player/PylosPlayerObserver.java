@@ -2,6 +2,7 @@ package be.kuleuven.pylos.player;
 
 import be.kuleuven.pylos.game.PylosLocation;
 import be.kuleuven.pylos.game.PylosSphere;
+import be.kuleuven.pylos.search.SearchStats;
 
 /**
  * Created by Jan on 5/03/2015.
@@ -79,4 +80,12 @@ public interface PylosPlayerObserver {
 	void checkingRemoveSphere(PylosSphere pylosSphere);
 	void checkingPass();
 
+	/**
+	 * called by a searching player after every decision, with the counters of that decision
+	 *
+	 * @param player
+	 * @param stats
+	 */
+	default void searchStats(PylosPlayer player, SearchStats stats) {}
+
 }
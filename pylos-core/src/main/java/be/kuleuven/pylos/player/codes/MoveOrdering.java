@@ -0,0 +1,176 @@
+package be.kuleuven.pylos.player.codes;
+
+import be.kuleuven.pylos.game.MoveList;
+import be.kuleuven.pylos.game.PylosBoard;
+import be.kuleuven.pylos.game.PylosLocation;
+import be.kuleuven.pylos.game.PylosMove;
+import be.kuleuven.pylos.game.PylosPlayerColor;
+import be.kuleuven.pylos.game.bits.PylosBitBoard;
+
+import java.util.Arrays;
+
+/**
+ * Move ordering of the search players, one instance per searching thread.
+ * <p>
+ * The moves of a branch are sorted on: the transposition table move, moves completing a square of the mover, and
+ * then moves up before reserve additions, both ranked by blocking a square of the other color, the killer moves
+ * of the branch depth and a history table indexed by (color, from location, to location). Moving up saves a
+ * reserve sphere, ranking blocks or killers above it searches more branches.
+ * <p>
+ * Moves are compared by action (PylosMove.action), so a table move or killer found on a copy of the board matches.
+ */
+final class MoveOrdering {
+
+	private static final int ORDER_TABLE_MOVE = 1 << 30;
+	private static final int ORDER_COMPLETES_SQUARE = 1 << 29;
+	private static final int ORDER_MOVE_UP = 1 << 28;
+	private static final int ORDER_BLOCKS_SQUARE = 1 << 27;
+	private static final int ORDER_KILLER = 1 << 26;       // second killer slot scores half
+	private static final int HISTORY_LIMIT = 1 << 24;      // history scores are halved when one reaches this
+	private static final int KILLER_SLOTS = 2;
+
+	private MoveList[] moveLists = new MoveList[0];        // [branch depth]
+	private int[][] moveScores = new int[0][];             // [branch depth][move]
+	private int[][] killers = new int[0][];                // [branch depth][slot] actions which caused a cutoff
+	private final int[][][] history = new int[2][PylosMove.NO_LOCATION + 1][PylosBitBoard.LOCATIONS];    // [color][from][to]
+
+	/**
+	 * returns the move list of branch depth 'depth', growing the tables if needed
+	 *
+	 * @param depth
+	 * @return
+	 */
+	MoveList getMoveList(int depth) {
+		ensureDepth(depth);
+		return moveLists[depth];
+	}
+
+	/**
+	 * sorts 'moves', the moves up and reserve additions of 'color' at branch depth 'depth'
+	 *
+	 * @param moves
+	 * @param depth
+	 * @param board
+	 * @param color
+	 * @param tableMove best move stored in the transposition table, 0 if none
+	 */
+	void orderMoves(MoveList moves, int depth, PylosBoard board, PylosPlayerColor color, int tableMove) {
+		ensureDepth(depth);
+		final int tableAction = PylosMove.action(tableMove);
+		final int[] depthKillers = killers[depth];
+		final int[][] colorHistory = history[color.ordinal()];
+		final PylosLocation[] locations = board.getLocations();
+		final int size = moves.size();
+		if (moveScores[depth].length < size) moveScores[depth] = new int[size];
+		final int[] scores = moveScores[depth];
+
+		for (int i = 0; i < size; i++) {
+			int move = moves.get(i);
+			int action = PylosMove.action(move);
+			PylosLocation to = locations[PylosMove.to(move)];
+			int score;
+			if (action == tableAction) {
+				score = ORDER_TABLE_MOVE;
+			} else if (to.getMaxInSquare(color) == 3) {
+				/* a sphere moves up out of a lower layer, it is never part of a square of 'to' */
+				score = ORDER_COMPLETES_SQUARE;
+			} else {
+				score = colorHistory[PylosMove.from(move)][PylosMove.to(move)];
+				if (PylosMove.kind(move) == PylosMove.MOVE) score += ORDER_MOVE_UP;
+				if (to.getMaxInSquare(color.other()) == 3) score += ORDER_BLOCKS_SQUARE;
+				if (action == depthKillers[0]) {
+					score += ORDER_KILLER;
+				} else if (action == depthKillers[1]) {
+					score += ORDER_KILLER / 2;
+				}
+			}
+			scores[i] = score;
+		}
+
+		/* insertion sort on descending score, equal moves keep the order they were generated in */
+		for (int i = 1; i < size; i++) {
+			int move = moves.get(i);
+			int score = scores[i];
+			int j = i - 1;
+			while (j >= 0 && scores[j] < score) {
+				moves.set(j + 1, moves.get(j));
+				scores[j + 1] = scores[j];
+				j--;
+			}
+			moves.set(j + 1, move);
+			scores[j + 1] = score;
+		}
+	}
+
+	/**
+	 * moves the table move to the front of 'moves', the order of the others is kept
+	 *
+	 * @param moves
+	 * @param tableMove best move stored in the transposition table, 0 if none
+	 */
+	void tableMoveFirst(MoveList moves, int tableMove) {
+		if (tableMove == 0) return;
+		int tableAction = PylosMove.action(tableMove);
+		for (int i = 0; i < moves.size(); i++) {
+			if (PylosMove.action(moves.get(i)) == tableAction) {
+				int move = moves.get(i);
+				for (int j = i; j > 0; j--) moves.set(j, moves.get(j - 1));
+				moves.set(0, move);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * registers that 'move', a move up or reserve addition of 'color', pruned its branch at branch depth 'depth'
+	 *
+	 * @param move
+	 * @param depth
+	 * @param remainingDepth depth the branch was searched with, deeper cutoffs weigh more
+	 * @param color
+	 */
+	void addCutoff(int move, int depth, int remainingDepth, PylosPlayerColor color) {
+		int action = PylosMove.action(move);
+		int[] depthKillers = killers[depth];
+		if (depthKillers[0] != action) {
+			depthKillers[1] = depthKillers[0];
+			depthKillers[0] = action;
+		}
+
+		int[][] colorHistory = history[color.ordinal()];
+		int score = colorHistory[PylosMove.from(move)][PylosMove.to(move)] += remainingDepth * remainingDepth;
+		if (score >= HISTORY_LIMIT) {
+			for (int[] fromHistory : colorHistory) {
+				for (int to = 0; to < fromHistory.length; to++) fromHistory[to] /= 2;
+			}
+		}
+	}
+
+	/**
+	 * forgets the killer moves and history
+	 */
+	void clear() {
+		for (int[] depthKillers : killers) Arrays.fill(depthKillers, 0);
+		for (int[][] colorHistory : history) {
+			for (int[] fromHistory : colorHistory) Arrays.fill(fromHistory, 0);
+		}
+	}
+
+	/* internals -------------------------------------------------------------------------------------------------- */
+
+	private void ensureDepth(int depth) {
+		if (depth >= moveLists.length) {
+			int length = Math.max(depth + 1, 2 * moveLists.length);
+			int oldLength = moveLists.length;
+			moveLists = Arrays.copyOf(moveLists, length);
+			moveScores = Arrays.copyOf(moveScores, length);
+			killers = Arrays.copyOf(killers, length);
+			for (int i = oldLength; i < length; i++) {
+				moveLists[i] = new MoveList();
+				moveScores[i] = new int[0];
+				killers[i] = new int[KILLER_SLOTS];
+			}
+		}
+	}
+
+}
@@ -11,8 +11,23 @@ import java.lang.reflect.Constructor;
  */
 public class PlayerFactoryCodes extends PylosPlayerFactory {
 
+	/* threads of the time managed minimax and the mcts players, read when a player is created */
+	private final int searchThreads;
+
+	/* node cap of the proof-number search of the time managed minimax, about 50 MB */
+	private static final int PROOF_MAX_NODES = 1 << 21;
+
 	public PlayerFactoryCodes() {
+		this(1);
+	}
+
+	/**
+	 * @param searchThreads number of threads the time managed minimax and the mcts players search with
+	 */
+	public PlayerFactoryCodes(int searchThreads) {
 		super("CODeS");
+		if (searchThreads < 1) throw new IllegalArgumentException("Specify at least one thread");
+		this.searchThreads = searchThreads;
 	}
 
 	@Override
@@ -35,6 +50,53 @@ public class PlayerFactoryCodes extends PylosPlayerFactory {
 		tryToAddType("CODeS - Level 13", "PylosPlayerMiniMax", 13);
 		tryToAddType("CODeS - Level 14", "PylosPlayerMiniMax", 14);
 		tryToAddType("CODeS - Level 15", "PylosPlayerMiniMax", 15);
+		addTimedType("CODeS - 1 sec", 1000, 0);
+		addTimedType("CODeS - 5 sec", 5000, 0);
+		addTimedType("CODeS - 5 min game", 0, 5 * 60 * 1000);
+		addTimedType("CODeS - 5 sec pondering", 5000, 0, true);
+		addTimedType("CODeS - 5 sec proof-number search", 5000, 0, false, PROOF_MAX_NODES);
+		tryToAddType("CODeS - PVS Level 6", "PylosPlayerPVS", 6);
+		tryToAddType("CODeS - PVS Level 8", "PylosPlayerPVS", 8);
+		tryToAddType("CODeS - PVS Level 10", "PylosPlayerPVS", 10);
+		tryToAddType("CODeS - PVS Level 12", "PylosPlayerPVS", 12);
+		add(new PylosPlayerType("CODeS - PVS 1 sec") {
+			@Override
+			public PylosPlayer create() {
+				return new PylosPlayerPVS(1000L, 0L);
+			}
+		});
+		add(new PylosPlayerType("CODeS - MCTS 10000 playouts") {
+			@Override
+			public PylosPlayer create() {
+				return new PylosPlayerMCTS(10000, searchThreads);
+			}
+		});
+		add(new PylosPlayerType("CODeS - MCTS 1 sec") {
+			@Override
+			public PylosPlayer create() {
+				return new PylosPlayerMCTS(1000L, searchThreads);
+			}
+		});
+	}
+
+	private void addTimedType(String name, long moveTimeMillis, long gameTimeMillis) {
+		addTimedType(name, moveTimeMillis, gameTimeMillis, false);
+	}
+
+	private void addTimedType(String name, long moveTimeMillis, long gameTimeMillis, boolean ponder) {
+		addTimedType(name, moveTimeMillis, gameTimeMillis, ponder, 0);
+	}
+
+	private void addTimedType(String name, long moveTimeMillis, long gameTimeMillis, boolean ponder, int proofMaxNodes) {
+		add(new PylosPlayerType(name) {
+			@Override
+			public PylosPlayer create() {
+				PylosPlayerMiniMax player = new PylosPlayerMiniMax(moveTimeMillis, gameTimeMillis, searchThreads);
+				player.setPonder(ponder);
+				player.setProofNumberSearch(proofMaxNodes);
+				return player;
+			}
+		});
 	}
 
 	private void tryToAddType(String name, String className) {
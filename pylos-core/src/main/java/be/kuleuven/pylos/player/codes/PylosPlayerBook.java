@@ -0,0 +1,94 @@
+package be.kuleuven.pylos.player.codes;
+
+import be.kuleuven.pylos.book.OpeningBook;
+import be.kuleuven.pylos.game.*;
+import be.kuleuven.pylos.player.PylosPlayer;
+import be.kuleuven.pylos.player.PylosPlayerObserver;
+
+import java.util.Random;
+
+/**
+ * Plays the moves of an OpeningBook, and lets another player search once the game is out of book.
+ */
+public class PylosPlayerBook extends PylosPlayer {
+
+	private final OpeningBook book;
+	private final PylosPlayer fallback;
+	private int bookMoves;
+
+	/**
+	 * @param book
+	 * @param fallback player deciding the positions which are not in the book
+	 */
+	public PylosPlayerBook(OpeningBook book, PylosPlayer fallback) {
+		this.book = book;
+		this.fallback = fallback;
+	}
+
+	@Override
+	public void init(PylosPlayerColor playerColor, PylosPlayer other, PylosPlayerObserver observer, Random random) {
+		super.init(playerColor, other, observer, random);
+		fallback.init(playerColor, other, observer, random);
+		bookMoves = 0;
+	}
+
+	@Override
+	public void doMove(PylosGameIF game, PylosBoard board) {
+		int move = probe(board, PylosGameState.MOVE);
+		if (move == PylosMove.NONE) {
+			fallback.doMove(game, board);
+			return;
+		}
+		PylosLocation[] locations = board.getLocations();
+		PylosSphere sphere = PylosMove.kind(move) == PylosMove.ADD ? board.getReserve(PLAYER_COLOR) : locations[PylosMove.from(move)].getSphere();
+		game.moveSphere(sphere, locations[PylosMove.to(move)]);
+	}
+
+	@Override
+	public void doRemove(PylosGameIF game, PylosBoard board) {
+		int move = probe(board, PylosGameState.REMOVE_FIRST);
+		if (move == PylosMove.NONE) {
+			fallback.doRemove(game, board);
+			return;
+		}
+		game.removeSphere(board.getLocations()[PylosMove.from(move)].getSphere());
+	}
+
+	@Override
+	public void doRemoveOrPass(PylosGameIF game, PylosBoard board) {
+		int move = probe(board, PylosGameState.REMOVE_SECOND);
+		if (move == PylosMove.NONE) {
+			fallback.doRemoveOrPass(game, board);
+		} else if (PylosMove.kind(move) == PylosMove.PASS) {
+			game.pass();
+		} else {
+			game.removeSphere(board.getLocations()[PylosMove.from(move)].getSphere());
+		}
+	}
+
+	/**
+	 * returns the number of decisions taken from the book in this game
+	 *
+	 * @return
+	 */
+	public int getBookMoves() {
+		return bookMoves;
+	}
+
+	/* returns the book move if it is legal on 'board', PylosMove.NONE otherwise */
+	private int probe(PylosBoard board, PylosGameState state) {
+		int move = book.probe(board, state, PLAYER_COLOR);
+		if (move == PylosMove.NONE) return PylosMove.NONE;
+		MoveList moves = new MoveList();
+		moves.generate(board, state, PLAYER_COLOR);
+		for (int i = 0; i < moves.size(); i++) {
+			if (PylosMove.action(moves.get(i)) == move) {
+				bookMoves++;
+				getObserver().shout("Book move " + PylosMove.toString(move));
+				return move;
+			}
+		}
+		return PylosMove.NONE;
+	}
+
+}
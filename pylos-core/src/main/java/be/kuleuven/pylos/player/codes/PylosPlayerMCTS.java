@@ -0,0 +1,474 @@
+package be.kuleuven.pylos.player.codes;
+
+import be.kuleuven.pylos.endgame.Actions;
+import be.kuleuven.pylos.game.*;
+import be.kuleuven.pylos.game.bits.PylosBitBoard;
+import be.kuleuven.pylos.player.PylosPlayer;
+import be.kuleuven.pylos.player.PylosPlayerObserver;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Monte Carlo tree search player (UCT) with root parallelism.
+ * <p>
+ * Every thread grows its own tree on its own PylosBitBoard copy of the position, the root moves are merged by visit
+ * count. Playouts follow a fast policy with the PylosPlayerBestFit heuristics: complete a square, block a square of
+ * the other player, move a sphere up, and otherwise add a reserve sphere, with some random moves in between.
+ * The trees are kept between decisions, the subtree of the new position is searched further.
+ * <p>
+ * Moves are encoded with PylosMove, with sphere id 0: a reserve sphere is taken when the move is played.
+ */
+public class PylosPlayerMCTS extends PylosPlayer {
+
+	private static final double EXPLORATION = 1.0;         // UCT exploration constant, rewards are 0, 0.5 or 1
+	private static final double RANDOM_PLAYOUT_MOVE = 0.1;  // chance of a random move in a playout
+	private static final int MAX_PLAYOUT_MOVES = 200;       // then the reserves decide
+	private static final int MAX_REUSE_DEPTH = 6;           // moves between two decisions searched for the new root
+	private static final int TIME_CHECK_INTERVAL = 16;      // playouts between two clock reads
+	private static final int MAX_MOVES = 128;
+
+	/* every thread but the calling one searches on a helper thread */
+	private static final ExecutorService HELPER_POOL = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "mcts-helper");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final int PLAYOUTS;             // per decision, 0 if time managed
+	private final long MOVE_TIME_MILLIS;    // per decision, 0 if playout managed
+	private final int THREADS;
+
+	private Tree[] trees;
+	private long playouts;
+
+	/**
+	 * player doing 'playouts' playouts per decision, spread over 'threads' threads
+	 *
+	 * @param playouts
+	 * @param threads
+	 */
+	public PylosPlayerMCTS(Integer playouts, Integer threads) {
+		if (playouts < 1) throw new IllegalArgumentException("Specify at least one playout");
+		if (threads < 1) throw new IllegalArgumentException("Specify at least one thread");
+		PLAYOUTS = playouts;
+		MOVE_TIME_MILLIS = 0;
+		THREADS = threads;
+	}
+
+	public PylosPlayerMCTS(Integer playouts) {
+		this(playouts, 1);
+	}
+
+	/**
+	 * player searching 'moveTimeMillis' per decision on 'threads' threads
+	 *
+	 * @param moveTimeMillis
+	 * @param threads
+	 */
+	public PylosPlayerMCTS(Long moveTimeMillis, Integer threads) {
+		if (moveTimeMillis <= 0) throw new IllegalArgumentException("Specify a positive move time");
+		if (threads < 1) throw new IllegalArgumentException("Specify at least one thread");
+		PLAYOUTS = 0;
+		MOVE_TIME_MILLIS = moveTimeMillis;
+		THREADS = threads;
+	}
+
+	@Override
+	public void init(PylosPlayerColor playerColor, PylosPlayer other, PylosPlayerObserver observer, Random random) {
+		super.init(playerColor, other, observer, random);
+		trees = null;
+	}
+
+	@Override
+	public void doMove(PylosGameIF game, PylosBoard board) {
+		int move = search(PylosGameState.MOVE, board);
+		PylosLocation[] locations = board.getLocations();
+		PylosSphere sphere = PylosMove.kind(move) == PylosMove.ADD ? board.getReserve(PLAYER_COLOR) : locations[PylosMove.from(move)].getSphere();
+		game.moveSphere(sphere, locations[PylosMove.to(move)]);
+	}
+
+	@Override
+	public void doRemove(PylosGameIF game, PylosBoard board) {
+		int move = search(PylosGameState.REMOVE_FIRST, board);
+		game.removeSphere(board.getLocations()[PylosMove.from(move)].getSphere());
+	}
+
+	@Override
+	public void doRemoveOrPass(PylosGameIF game, PylosBoard board) {
+		int move = search(PylosGameState.REMOVE_SECOND, board);
+		if (PylosMove.kind(move) == PylosMove.PASS) {
+			game.pass();
+		} else {
+			game.removeSphere(board.getLocations()[PylosMove.from(move)].getSphere());
+		}
+	}
+
+	/**
+	 * returns the number of playouts of the last decision, over all threads
+	 *
+	 * @return
+	 */
+	public long getPlayouts() {
+		return playouts;
+	}
+
+	/* search ----------------------------------------------------------------------------------------------------- */
+
+	/**
+	 * returns the most visited root move over all trees, see PylosMove
+	 *
+	 * @param state
+	 * @param board
+	 * @return
+	 */
+	private int search(PylosGameState state, PylosBoard board) {
+		if (trees == null) {
+			trees = new Tree[THREADS];
+			for (int i = 0; i < THREADS; i++) {
+				trees[i] = new Tree(new Random(getRandom().nextLong()));
+			}
+		}
+		final PylosBitBoard root = PylosBitBoard.fromBoard(board);
+		final long deadline = MOVE_TIME_MILLIS > 0 ? System.currentTimeMillis() + MOVE_TIME_MILLIS : Long.MAX_VALUE;
+		final int treePlayouts = PLAYOUTS > 0 ? Math.max(1, PLAYOUTS / THREADS) : Integer.MAX_VALUE;
+
+		Future<?>[] futures = new Future<?>[THREADS - 1];
+		for (int i = 1; i < THREADS; i++) {
+			final Tree tree = trees[i];
+			futures[i - 1] = HELPER_POOL.submit(() -> tree.search(root, state, PLAYER_COLOR, treePlayouts, deadline));
+		}
+		trees[0].search(root, state, PLAYER_COLOR, treePlayouts, deadline);
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Helper search failed", e.getCause());
+			}
+		}
+
+		/* merge the root moves of all trees: every tree shuffles its own untried moves, so a move may be expanded in
+		 * some trees only; each move is counted once, when it is first met */
+		int bestMove = PylosMove.NONE;
+		long bestVisits = -1;
+		double bestWins = 0;
+		playouts = 0;
+		for (Tree tree : trees) playouts += tree.playouts;
+		for (int t = 0; t < trees.length; t++) {
+			Node treeRoot = trees[t].root;
+			for (int c = 0; c < treeRoot.childCount; c++) {
+				int move = treeRoot.children[c].move;
+				if (isMerged(move, t)) continue;
+				long visits = 0;
+				double wins = 0;
+				for (int u = t; u < trees.length; u++) {
+					Node child = trees[u].root.getChild(move);
+					if (child != null) {
+						visits += child.visits;
+						wins += child.wins;
+					}
+				}
+				if (visits > bestVisits) {
+					bestVisits = visits;
+					bestWins = wins;
+					bestMove = move;
+				}
+			}
+		}
+		if (bestMove == PylosMove.NONE) {
+			/* no tree got to expand its root, e.g. the time was up before the first playout */
+			int[] moves = new int[MAX_MOVES];
+			generate(root, state, PLAYER_COLOR, moves);
+			bestMove = moves[0];
+		}
+		getObserver().shout("Win rate " + Math.round(100 * bestWins / Math.max(1, bestVisits)) + "% after " + playouts + " playouts");
+		return bestMove;
+	}
+
+	/* returns true if 'move' is a root move of one of the trees before tree 'tree' */
+	private boolean isMerged(int move, int tree) {
+		for (int t = 0; t < tree; t++) {
+			if (trees[t].root.getChild(move) != null) return true;
+		}
+		return false;
+	}
+
+	/* tree ------------------------------------------------------------------------------------------------------- */
+
+	/* the tree of one thread, with the board it plays its playouts on */
+	private static final class Tree {
+
+		private final Random random;
+		private final int[] moves = new int[MAX_MOVES];
+		private Node[] path = new Node[PylosBitBoard.LOCATIONS * 4 + 1];    // grows, a move/remove cycle has no depth limit
+		private Node root;
+		private long playouts;
+
+		/* playout position */
+		private PylosBitBoard board;
+		private PylosGameState state;
+		private PylosPlayerColor color;
+		private PylosPlayerColor winner;
+
+		Tree(Random random) {
+			this.random = random;
+		}
+
+		/**
+		 * grows this tree from the position of 'rootBoard', until 'maxPlayouts' playouts are done or 'deadline' passed
+		 */
+		void search(PylosBitBoard rootBoard, PylosGameState rootState, PylosPlayerColor rootColor, int maxPlayouts, long deadline) {
+			long key = key(rootBoard.toLong(), rootState, rootColor);
+			root = root == null ? null : root.find(key, MAX_REUSE_DEPTH);
+			if (root == null) root = new Node(PylosMove.NONE, null, key);
+			playouts = 0;
+
+			while (playouts < maxPlayouts && (playouts % TIME_CHECK_INTERVAL != 0 || System.currentTimeMillis() < deadline)) {
+				board = new PylosBitBoard(rootBoard);
+				state = rootState;
+				color = rootColor;
+				winner = null;
+
+				/* selection and expansion */
+				Node node = root;
+				int length = 0;
+				length = addToPath(length, node);
+				while (state != PylosGameState.COMPLETED) {
+					if (node.untried == null) node.setUntried(moves, generate(board, state, color, moves), random);
+					if (node.untriedSize > 0) {
+						int move = node.untried[--node.untriedSize];
+						PylosPlayerColor mover = color;
+						play(move);
+						node = node.addChild(move, mover, key(board.toLong(), state, color));
+						length = addToPath(length, node);
+						break;
+					}
+					node = node.select();
+					play(node.move);
+					length = addToPath(length, node);
+				}
+
+				/* simulation */
+				for (int i = 0; i < MAX_PLAYOUT_MOVES && state != PylosGameState.COMPLETED; i++) {
+					play(playoutMove());
+				}
+				if (winner == null) {
+					int difference = board.getReservesSize(PylosPlayerColor.LIGHT) - board.getReservesSize(PylosPlayerColor.DARK);
+					winner = difference > 0 ? PylosPlayerColor.LIGHT : difference < 0 ? PylosPlayerColor.DARK : null;
+				}
+
+				/* backpropagation, a node is scored for the player who moved into it */
+				for (int i = 0; i < length; i++) {
+					Node visited = path[i];
+					visited.visits++;
+					if (visited.mover != null) {
+						visited.wins += winner == null ? 0.5 : winner == visited.mover ? 1 : 0;
+					}
+				}
+				playouts++;
+			}
+		}
+
+		/* puts 'node' on the selection path after 'length' nodes, returns the new length */
+		private int addToPath(int length, Node node) {
+			if (length == path.length) path = Arrays.copyOf(path, 2 * length);
+			path[length] = node;
+			return length + 1;
+		}
+
+		/* plays 'move' on the playout board, following the rules of PylosGameSimulator */
+		private void play(int move) {
+			switch (PylosMove.kind(move)) {
+				case PylosMove.ADD:
+				case PylosMove.MOVE:
+					boolean completed = PylosMove.kind(move) == PylosMove.ADD ? board.add(color, PylosMove.to(move)) : board.move(color, PylosMove.from(move), PylosMove.to(move));
+					if (completed) {
+						state = PylosGameState.REMOVE_FIRST;
+					} else if (board.getReservesSize(color) == 0) {
+						state = PylosGameState.COMPLETED;
+						winner = color.other();
+					} else {
+						color = color.other();
+					}
+					break;
+				case PylosMove.REMOVE:
+					board.remove(color, PylosMove.from(move));
+					if (state == PylosGameState.REMOVE_FIRST) {
+						state = PylosGameState.REMOVE_SECOND;
+					} else {
+						state = PylosGameState.MOVE;
+						color = color.other();
+					}
+					break;
+				default:
+					state = PylosGameState.MOVE;
+					color = color.other();
+					break;
+			}
+		}
+
+		/* the fast playout policy */
+		private int playoutMove() {
+			if (state != PylosGameState.MOVE) {
+				/* taking a sphere back is always worth a reserve sphere */
+				int removable = board.getRemovable(color);
+				if (removable == 0) return PylosMove.pass(color);
+				return PylosMove.encode(PylosMove.REMOVE, color, 0, randomBit(removable), PylosMove.NO_LOCATION);
+			}
+			if (random.nextDouble() < RANDOM_PLAYOUT_MOVE) {
+				int size = generate(board, state, color, moves);
+				return moves[random.nextInt(size)];
+			}
+
+			int own = board.getSpheres(color);
+			int other = board.getSpheres(color.other());
+			int usable = board.getUsable();
+			int complete = 0;
+			int block = 0;
+			for (int m = usable; m != 0; m &= m - 1) {
+				int location = Integer.numberOfTrailingZeros(m);
+				if (PylosBitBoard.completesSquare(own | PylosBitBoard.bit(location), location)) complete |= PylosBitBoard.bit(location);
+				if (PylosBitBoard.completesSquare(other | PylosBitBoard.bit(location), location)) block |= PylosBitBoard.bit(location);
+			}
+			if (complete != 0) return moveTo(randomBit(complete));
+			if (block != 0) return moveTo(randomBit(block));
+
+			/* move a sphere up, but not out of a square the other player could then complete */
+			int count = 0;
+			for (int m = board.getRemovable(color); m != 0; m &= m - 1) {
+				int from = Integer.numberOfTrailingZeros(m);
+				if (board.getMaxInSquare(color.other(), from) == 3) continue;
+				for (int t = board.getMoveTargets(from); t != 0 && count < MAX_MOVES; t &= t - 1) {
+					moves[count++] = PylosMove.encode(PylosMove.MOVE, color, 0, from, Integer.numberOfTrailingZeros(t));
+				}
+			}
+			if (count > 0) return moves[random.nextInt(count)];
+			return PylosMove.encode(PylosMove.ADD, color, 0, PylosMove.NO_LOCATION, randomBit(usable));
+		}
+
+		/* returns a move up to 'to' if there is one, otherwise a reserve sphere on 'to' */
+		private int moveTo(int to) {
+			for (int m = board.getRemovable(color); m != 0; m &= m - 1) {
+				int from = Integer.numberOfTrailingZeros(m);
+				if ((board.getMoveTargets(from) & PylosBitBoard.bit(to)) != 0) {
+					return PylosMove.encode(PylosMove.MOVE, color, 0, from, to);
+				}
+			}
+			return PylosMove.encode(PylosMove.ADD, color, 0, PylosMove.NO_LOCATION, to);
+		}
+
+		private int randomBit(int mask) {
+			int n = random.nextInt(Integer.bitCount(mask));
+			for (int i = 0; i < n; i++) mask &= mask - 1;
+			return Integer.numberOfTrailingZeros(mask);
+		}
+	}
+
+	/**
+	 * generates the legal moves of 'color' on 'board' in 'state' into 'moves', in the order of MoveList, returns
+	 * the number of moves
+	 */
+	private static int generate(PylosBitBoard board, PylosGameState state, PylosPlayerColor color, int[] moves) {
+		final int[] size = new int[1];
+		Actions.forEach(board, state, color, (move, nextState, nextColor) -> {
+			moves[size[0]++] = move;
+			return true;
+		});
+		return size[0];
+	}
+
+	/* the packed board uses bits 0-59, the game state and color to move are put above */
+	private static long key(long board, PylosGameState state, PylosPlayerColor color) {
+		return board | ((long) state.ordinal() << 60) | (color == PylosPlayerColor.DARK ? 1L << 63 : 0);
+	}
+
+	/* node ------------------------------------------------------------------------------------------------------- */
+
+	private static final class Node {
+
+		final int move;                     // move into this node, see PylosMove
+		final PylosPlayerColor mover;       // player who did 'move', null at the root
+		final long key;                     // position, see key(..)
+		Node[] children = new Node[4];
+		int childCount;
+		int[] untried;                      // moves without a child yet, null until the node is first expanded
+		int untriedSize;
+		long visits;
+		double wins;                        // for 'mover'
+
+		Node(int move, PylosPlayerColor mover, long key) {
+			this.move = move;
+			this.mover = mover;
+			this.key = key;
+		}
+
+		void setUntried(int[] moves, int size, Random random) {
+			untried = new int[size];
+			System.arraycopy(moves, 0, untried, 0, size);
+			for (int i = size - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int move = untried[i];
+				untried[i] = untried[j];
+				untried[j] = move;
+			}
+			untriedSize = size;
+		}
+
+		Node addChild(int move, PylosPlayerColor mover, long key) {
+			if (childCount == children.length) children = Arrays.copyOf(children, childCount * 2);
+			Node child = new Node(move, mover, key);
+			children[childCount++] = child;
+			return child;
+		}
+
+		Node getChild(int move) {
+			for (int i = 0; i < childCount; i++) {
+				if (children[i].move == move) return children[i];
+			}
+			return null;
+		}
+
+		/* returns the child with the highest upper confidence bound */
+		Node select() {
+			double logVisits = Math.log(visits);
+			Node best = null;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < childCount; i++) {
+				Node child = children[i];
+				double value = child.wins / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+				if (value > bestValue) {
+					bestValue = value;
+					best = child;
+				}
+			}
+			return best;
+		}
+
+		/* returns the node of 'key' at most 'maxDepth' moves below this one, breadth first, null if there is none */
+		Node find(long key, int maxDepth) {
+			ArrayDeque<Node> queue = new ArrayDeque<>();
+			ArrayDeque<Integer> depths = new ArrayDeque<>();
+			queue.add(this);
+			depths.add(0);
+			while (!queue.isEmpty()) {
+				Node node = queue.poll();
+				int depth = depths.poll();
+				if (node.key == key) return node;
+				if (depth == maxDepth) continue;
+				for (int i = 0; i < node.childCount; i++) {
+					queue.add(node.children[i]);
+					depths.add(depth + 1);
+				}
+			}
+			return null;
+		}
+	}
+
+}
@@ -1,30 +1,33 @@
 package be.kuleuven.pylos.player.codes;
 
 import be.kuleuven.pylos.battle.Battle;
+import be.kuleuven.pylos.endgame.EndgameTable;
 import be.kuleuven.pylos.game.*;
+import be.kuleuven.pylos.game.bits.PylosBitBoard;
 import be.kuleuven.pylos.player.PylosPlayer;
+import be.kuleuven.pylos.player.PylosPlayerObserver;
+import be.kuleuven.pylos.search.BackgroundProofSearch;
+import be.kuleuven.pylos.search.SearchStats;
+import be.kuleuven.pylos.search.TranspositionTable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Created by Jan on 20/02/2015.
  */
 public class PylosPlayerMiniMax extends PylosPlayer {
 
-	/* four highest significant bits are used as follows:
-	 * ...x	0=Light, 1=Dark
-	 * ..x. MOVE
-	 * .x..	REMOVE_FIRST
-	 * x...	REMOVE_SECOND
-	 * 000.	COMPLETED */
-	private static final long COLOR_FLAG = 1l << 60;
-	private static final long MOVE_FLAG = 1l << 61;
-	private static final long REMOVE_FIRST_FLAG = 1l << 62;
-	private static final long REMOVE_SECOND_FLAG = 1l << 63;
-
 	private final double WIN_THRESHOLD_THIS = 1000;
 	private final double WIN_THRESHOLD_OTHER = -1000;
 	private final double WIN_THIS = 2000;        // decremented with branch depth (winning earlier is better)
@@ -41,38 +44,327 @@ public class PylosPlayerMiniMax extends PylosPlayer {
 
 	private final boolean USE_RANDOM = true;
 	private final boolean SAVE_STATES = true;
+	private static final int DEFAULT_TABLE_SIZE_MB = 16;
+
+	/* time managed search: iterative deepening until the budget of the move runs out (0 = no limit) */
+	private final long MOVE_TIME_MILLIS;
+	private final long GAME_TIME_MILLIS;
+	private final int MAX_ITERATIVE_DEPTH = 64;
+	private final int TIME_CHECK_INTERVAL = 1024;       // branches between two clock reads
+	private long gameTimeUsed;
+	private long deadline;
+	private boolean deadlineActive;
+	private boolean timeUp;
+	private boolean horizonReached;
+	private int timeCheckCounter;
+
+	/* lazy SMP: helpers search their own copy of the board on other threads and share the transposition table */
+	private static final ExecutorService HELPER_POOL = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "minimax-helper");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final int THREADS;
+	private final Parallelism PARALLELISM;
+	private PylosPlayerMiniMax[] helpers;
+	private Future<?>[] helperFutures;
+	private SharedResult shared;        // deepest result of all threads, null when searching alone
+
+	/* young brothers wait: the first plies are split over a fork/join pool, every worker searches its own board; the
+	 * pool lives for one game, so the threads of a player which no longer plays are released */
+	private final int SPLIT_DEPTH = 2;
+	private final boolean EXACT_DEPTH_PROBES;       // only use table entries of the same depth, keeps the result reproducible
+	private ForkJoinPool forkJoinPool;
+	private ThreadLocal<PylosPlayerMiniMax> searchers;
+
+	public enum Parallelism {
+		LAZY_SMP,               // threads search the whole tree and share the table, not reproducible
+		YOUNG_BROTHERS_WAIT     // fork/join split below the first move of a node, same move as the serial search
+	}
 
 	private PylosGameSimulator simulator;
 	private PylosBoard board;
 	private int branchDepth = 0;
+	private long nodes;
+	private int reachedDepth;           // deepest branch of the decision, quiescence included
 
 	/* we try to maximize the difference (reserves_this - reserves_other) */
 	private double bestMinimax;
 	private PylosSphere bestSphere;
 	private PylosLocation bestLocation;
 
-	private HashMap<Long, Double> minimaxResults;
+	private final TranspositionTable minimaxResults;
+	private int branchBestMove;        // best move of the last branchDo.. call, see PylosMove
+
+	/* the table is kept over the decisions of a game, every decision is a new generation of it (see
+	 * TranspositionTable.newSearch); with keepTable also over the games, unless the scores in it are for the other
+	 * color (see TranspositionTable.getColor) */
+	private boolean keepTable;
+	private boolean newGame;
+
+	/* move ordering of move branches: table move, square completing, killer moves and history, see MoveOrdering */
+	private final boolean ORDER_MOVES = true;
+	private final MoveOrdering moveOrdering = new MoveOrdering();
+	private long cutoffs;
+	private long firstMoveCutoffs;
+
+	/* quiescence: beyond the horizon only square completions, square blocks and the removes after a completed square
+	 * are searched, until the position is quiet or a cap is reached, then the reserve difference is used */
+	private boolean quiescence = true;
+	private final int QUIESCENCE_MAX_NODES = 32;       // per horizon branch
+	private final int QUIESCENCE_MAX_DEPTH = 4;        // branches beyond the horizon
+	private int quiescenceNodes;
+
+	/* search statistics of the decision, published to the observer, see SearchStats */
+	private long decisionStartTime;
+	private long decisionProbes;        // table counters at the start of the decision
+	private long decisionHits;
+	private long decisionStores;
+	private long decisionOverwrites;
+
+	/* endgame table: a branch of which the table knows the result is not searched, null if there is none */
+	private EndgameTable endgameTable;
+
+	/* pondering: when the turn of this player ends, a helper searches the position after the expected reply of the
+	 * other player on a copy of the board; if that reply is played the next decision finds the table filled */
+	private boolean ponder;
+	private PylosPlayerMiniMax ponderer;
+	private Future<?> ponderFuture;
+	private SharedResult ponderResult;
+	private long ponderState;           // position of the ponder search, see PylosBoard.toLong()
+	private int ponderHits;
+
+	/* proof-number search: a solve of the position of a decision runs in the background, once it proves a win this
+	 * player follows the proof tree instead of the minimax, see BackgroundProofSearch */
+	private BackgroundProofSearch proofSearch;  // null = off
+	private boolean provenWin;                  // the move of the decision is from the proof tree
 
 	public PylosPlayerMiniMax() {
 		VAR_BRANCH_DEPTH = true;
 		VAR_BRANCH_START_DEPTH = 10;
 		MAX_BRANCH_DEPTH = VAR_BRANCH_START_DEPTH;
+		MOVE_TIME_MILLIS = 0;
+		GAME_TIME_MILLIS = 0;
+		THREADS = 1;
+		PARALLELISM = Parallelism.LAZY_SMP;
+		EXACT_DEPTH_PROBES = false;
+		minimaxResults = new TranspositionTable(DEFAULT_TABLE_SIZE_MB);
 	}
 
 	public PylosPlayerMiniMax(Integer branchDepth) {
+		this(branchDepth, DEFAULT_TABLE_SIZE_MB);
+	}
+
+	public PylosPlayerMiniMax(Integer branchDepth, Integer tableSizeMb) {
+		this(branchDepth, tableSizeMb, 1);
+	}
+
+	/**
+	 * fixed depth player searching with 'threads' threads (lazy SMP)
+	 *
+	 * @param branchDepth
+	 * @param tableSizeMb size of the transposition table shared by all threads
+	 * @param threads
+	 */
+	public PylosPlayerMiniMax(Integer branchDepth, Integer tableSizeMb, Integer threads) {
+		this(branchDepth, tableSizeMb, threads, Parallelism.LAZY_SMP);
+	}
+
+	/**
+	 * fixed depth player searching with 'threads' threads
+	 *
+	 * @param branchDepth
+	 * @param tableSizeMb size of the transposition table shared by all threads
+	 * @param threads
+	 * @param parallelism how the search is spread over the threads
+	 */
+	public PylosPlayerMiniMax(Integer branchDepth, Integer tableSizeMb, Integer threads, Parallelism parallelism) {
+		if (threads < 1) throw new IllegalArgumentException("Specify at least one thread");
 		VAR_BRANCH_DEPTH = false;
 		VAR_BRANCH_START_DEPTH = Integer.MAX_VALUE;    // not used
 		MAX_BRANCH_DEPTH = branchDepth;
+		MOVE_TIME_MILLIS = 0;
+		GAME_TIME_MILLIS = 0;
+		THREADS = threads;
+		PARALLELISM = parallelism;
+		EXACT_DEPTH_PROBES = false;
+		minimaxResults = new TranspositionTable(tableSizeMb);
+	}
+
+	/**
+	 * fixed depth player searching with 'threads' threads (lazy SMP) in 'table', e.g. a MappedTranspositionTable for
+	 * deep offline searches; the table is kept over the games, and cleared when a game starts with the scores in it
+	 * for the other color, so it should not be shared with the other player of the same game
+	 *
+	 * @param branchDepth
+	 * @param table
+	 * @param threads
+	 */
+	public PylosPlayerMiniMax(Integer branchDepth, TranspositionTable table, Integer threads) {
+		if (threads < 1) throw new IllegalArgumentException("Specify at least one thread");
+		VAR_BRANCH_DEPTH = false;
+		VAR_BRANCH_START_DEPTH = Integer.MAX_VALUE;    // not used
+		MAX_BRANCH_DEPTH = branchDepth;
+		MOVE_TIME_MILLIS = 0;
+		GAME_TIME_MILLIS = 0;
+		THREADS = threads;
+		PARALLELISM = Parallelism.LAZY_SMP;
+		EXACT_DEPTH_PROBES = false;
+		minimaxResults = table;
+		keepTable = true;
+	}
+
+	/**
+	 * time managed player: deepens iteratively and plays the best move of the deepest completed iteration
+	 *
+	 * @param moveTimeMillis budget per decision, 0 for no limit
+	 * @param gameTimeMillis budget for the whole game, spread over the remaining reserves, 0 for no limit
+	 */
+	public PylosPlayerMiniMax(Long moveTimeMillis, Long gameTimeMillis) {
+		this(moveTimeMillis, gameTimeMillis, 1);
+	}
+
+	/**
+	 * time managed player searching with 'threads' threads (lazy SMP)
+	 *
+	 * @param moveTimeMillis budget per decision, 0 for no limit
+	 * @param gameTimeMillis budget for the whole game, spread over the remaining reserves, 0 for no limit
+	 * @param threads
+	 */
+	public PylosPlayerMiniMax(Long moveTimeMillis, Long gameTimeMillis, Integer threads) {
+		if (moveTimeMillis <= 0 && gameTimeMillis <= 0) throw new IllegalArgumentException("Specify a move or game time budget");
+		if (threads < 1) throw new IllegalArgumentException("Specify at least one thread");
+		VAR_BRANCH_DEPTH = false;
+		VAR_BRANCH_START_DEPTH = Integer.MAX_VALUE;    // not used
+		MOVE_TIME_MILLIS = Math.max(0, moveTimeMillis);
+		GAME_TIME_MILLIS = Math.max(0, gameTimeMillis);
+		THREADS = threads;
+		PARALLELISM = Parallelism.LAZY_SMP;
+		EXACT_DEPTH_PROBES = false;
+		minimaxResults = new TranspositionTable(DEFAULT_TABLE_SIZE_MB);
+	}
+
+	/* helper or searcher of a multi-threaded player, searches with the table of that player */
+	private PylosPlayerMiniMax(TranspositionTable minimaxResults, boolean exactDepthProbes) {
+		VAR_BRANCH_DEPTH = false;
+		VAR_BRANCH_START_DEPTH = Integer.MAX_VALUE;    // not used
+		MOVE_TIME_MILLIS = 0;
+		GAME_TIME_MILLIS = 0;
+		THREADS = 1;
+		PARALLELISM = Parallelism.LAZY_SMP;
+		EXACT_DEPTH_PROBES = exactDepthProbes;
+		this.minimaxResults = minimaxResults;
+	}
+
+	@Override
+	public void init(PylosPlayerColor playerColor, PylosPlayer other, PylosPlayerObserver observer, Random random) {
+		super.init(playerColor, other, observer, random);
+		stopPondering();
+		if (proofSearch != null) proofSearch.stop();
+		releaseForkJoinPool();
+		gameTimeUsed = 0;
+		helpers = null;
+		ponderer = null;
+		ponderHits = 0;
+		newGame = true;
 	}
 
 	@Override
 	public void doMove(PylosGameIF game, PylosBoard board) {
 
-		if (PRUNE_TEST) PRUNE_ENABLE = false;
+		if (PRUNE_TEST) {
+			/* both searches start from an empty table */
+			PRUNE_ENABLE = false;
+			minimaxResults.clear();
+		}
 		init(game.getState(), board);
 
-		PylosSphere myReserveSphere = board.getReserve(this);
-		PylosSphere[] mySpheres = board.getSpheres(this);
+		ArrayList<RootMove> rootMoves = createRootMoves(PylosGameState.MOVE);
+		search(rootMoves);
+
+		/* ----------------------------------- */
+
+		if (PRUNE_TEST) {
+			double tmpBestMinimax = bestMinimax;
+			PylosSphere tmpBestSphere = bestSphere;
+			PylosLocation tmpBestLocation = bestLocation;
+
+			PRUNE_ENABLE = true;
+			minimaxResults.clear();
+			init(game.getState(), board);
+			search(rootMoves);
+
+			assert tmpBestMinimax == bestMinimax;
+			assert tmpBestSphere == bestSphere;
+			assert tmpBestLocation == bestLocation;
+		}
+
+		/* ----------------------------- */
+
+		shoutIfWinnerIsKnown();
+		publishStats(PylosGameState.MOVE);
+
+		/* execute the best move */
+		assert bestSphere != null;
+		if (PRINT_MINIMAX_RESULT) System.out.println("-------> " + bestMinimax);
+		game.moveSphere(bestSphere, bestLocation);
+		startPondering(game);
+	}
+
+	@Override
+	public void doRemove(PylosGameIF game, PylosBoard board) {
+		init(game.getState(), board);
+
+		search(createRootMoves(PylosGameState.REMOVE_FIRST));
+
+		shoutIfWinnerIsKnown();
+		publishStats(PylosGameState.REMOVE_FIRST);
+		/* execute the best move */
+		if (PRINT_MINIMAX_RESULT) System.out.println("-------> " + bestMinimax);
+		game.removeSphere(bestSphere);
+	}
+
+	@Override
+	public void doRemoveOrPass(PylosGameIF game, PylosBoard board) {
+		init(game.getState(), board);
+
+		search(createRootMoves(PylosGameState.REMOVE_SECOND));
+
+		shoutIfWinnerIsKnown();
+		publishStats(PylosGameState.REMOVE_SECOND);
+		if (PRINT_MINIMAX_RESULT) System.out.println("-------> " + bestMinimax);
+
+		/* execute the best move */
+		if (bestSphere != null) {
+			game.removeSphere(bestSphere);
+		} else {
+			game.pass();
+		}
+		startPondering(game);
+	}
+
+	/**
+	 * returns the actions of this player on the current board in 'state', in the order they are searched
+	 *
+	 * @param state
+	 * @return
+	 */
+	private ArrayList<RootMove> createRootMoves(PylosGameState state) {
+		ArrayList<RootMove> rootMoves = new ArrayList<>();
+		if (state != PylosGameState.MOVE) {
+			for (PylosSphere sphere : board.getSpheres(PLAYER_COLOR)) {
+				if (sphere.canRemove()) {
+					rootMoves.add(new RootMove(sphere, null));
+				}
+			}
+			if (state == PylosGameState.REMOVE_SECOND) {
+				rootMoves.add(new RootMove(null, null));
+			}
+			return rootMoves;
+		}
+
+		PylosSphere myReserveSphere = board.getReserve(PLAYER_COLOR);
+		PylosSphere[] mySpheres = board.getSpheres(PLAYER_COLOR);
 		PylosLocation[] locations = board.getLocations();
 
 		/* shuffle */
@@ -96,12 +388,7 @@ public class PylosPlayerMiniMax extends PylosPlayer {
 				for (int locationId = 0; locationId < locations.length; locationId++) {
 					PylosLocation location = locations[locationId];
 					if (sphere.canMoveTo(location)) {
-						PylosLocation prevLocation = sphere.getLocation();
-						getObserver().checkingMoveSphere(sphere, location);
-						simulator.moveSphere(sphere, location);
-						double minimax = branchStep(bestMinimax, bestMinimax);
-						eval(minimax, sphere, location);
-						simulator.undoMoveSphere(sphere, prevLocation, PylosGameState.MOVE, this.PLAYER_COLOR);
+						rootMoves.add(new RootMove(sphere, location));
 					}
 				}
 			}
@@ -111,144 +398,622 @@ public class PylosPlayerMiniMax extends PylosPlayer {
 		for (int locationId = 0; locationId < locations.length; locationId++) {
 			PylosLocation location = locations[locationId];
 			if (location.isUsable()) {
-				getObserver().checkingMoveSphere(myReserveSphere, location);
-				simulator.moveSphere(myReserveSphere, location);
-				double minimax = branchStep(bestMinimax, bestMinimax);
-				eval(minimax, myReserveSphere, location);
-				simulator.undoAddSphere(myReserveSphere, PylosGameState.MOVE, this.PLAYER_COLOR);
+				rootMoves.add(new RootMove(myReserveSphere, location));
 			}
 		}
+		return rootMoves;
+	}
+
+	private void init(PylosGameState state, PylosBoard board) {
+		boolean ponderHit = stopPondering() && state == PylosGameState.MOVE && board.toLong() == ponderState;
+		if (ponderHit) {
+			ponderHits++;
+			getObserver().shout("Ponder hit");
+		}
+		this.simulator = new PylosGameSimulator(state, PLAYER_COLOR, board);
+		this.board = board;
+		this.bestMinimax = INITIAL_THIS;
+		this.bestSphere = null;
+		this.bestLocation = null;
+		this.provenWin = false;
+		this.branchDepth = 0;
+		this.nodes = 0;
+		this.reachedDepth = 0;
+		this.cutoffs = 0;
+		this.firstMoveCutoffs = 0;
+		this.decisionStartTime = System.currentTimeMillis();
+		this.decisionProbes = minimaxResults.getProbes();
+		this.decisionHits = minimaxResults.getHits();
+		this.decisionStores = minimaxResults.getStores();
+		this.decisionOverwrites = minimaxResults.getOverwrites();
+		if (newGame) {
+			PylosPlayerColor tableColor = minimaxResults.getColor();
+			if (!keepTable || tableColor != null && PLAYER_COLOR != tableColor) this.minimaxResults.clear();
+			minimaxResults.setColor(PLAYER_COLOR);
+			newGame = false;
+		}
+		this.minimaxResults.newSearch();
+		this.moveOrdering.clear();
+		setBranchDepth();
+	}
 
-		double tmpBestMinimax = bestMinimax;
-		PylosSphere tmpBestSphere = bestSphere;
-		PylosLocation tmpBestLocation = bestLocation;
+	/**
+	 * reports the counters of the decision just searched to the observer
+	 *
+	 * @param state
+	 */
+	private void publishStats(PylosGameState state) {
+		getObserver().searchStats(this, new SearchStats(state, System.currentTimeMillis() - decisionStartTime, nodes, reachedDepth,
+				minimaxResults.getProbes() - decisionProbes, minimaxResults.getHits() - decisionHits,
+				minimaxResults.getStores() - decisionStores, minimaxResults.getOverwrites() - decisionOverwrites,
+				cutoffs, firstMoveCutoffs));
+	}
 
-		/* ----------------------------------- */
+	/**
+	 * returns the number of branches visited during the last decision
+	 *
+	 * @return
+	 */
+	public long getNodes() {
+		return nodes;
+	}
 
-		if (PRUNE_TEST) {
-			PRUNE_ENABLE = true;
-			init(game.getState(), board);
+	/**
+	 * returns the number of move branches pruned during the last decision
+	 *
+	 * @return
+	 */
+	public long getCutoffs() {
+		return cutoffs;
+	}
 
-		/* try to move a sphere to higher level */
-			for (int sphereId = 0; sphereId < mySpheres.length; sphereId++) {
-				PylosSphere sphere = mySpheres[sphereId];
-				if (!sphere.isReserve()) {
-					for (int locationId = 0; locationId < locations.length; locationId++) {
-						PylosLocation location = locations[locationId];
-						if (sphere.canMoveTo(location)) {
-							PylosLocation prevLocation = sphere.getLocation();
-							simulator.moveSphere(sphere, location);
-							double minimax = branchStep(bestMinimax, bestMinimax);
-							eval(minimax, sphere, location);
-							simulator.undoMoveSphere(sphere, prevLocation, PylosGameState.MOVE, this.PLAYER_COLOR);
-						}
-					}
-				}
+	/**
+	 * returns the number of move branches of the last decision which were pruned by their first move
+	 *
+	 * @return
+	 */
+	public long getFirstMoveCutoffs() {
+		return firstMoveCutoffs;
+	}
+
+	/**
+	 * returns the fraction of the pruned move branches of the last decision which were pruned by their first move
+	 *
+	 * @return
+	 */
+	public double getFirstMoveCutoffRate() {
+		return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+	}
+
+	/**
+	 * lets the search use the results of 'endgameTable', null to search without
+	 *
+	 * @param endgameTable
+	 */
+	public void setEndgameTable(EndgameTable endgameTable) {
+		this.endgameTable = endgameTable;
+		helpers = null;
+	}
+
+	/**
+	 * lets the search look at square threats beyond the horizon (the default), false to score the horizon with the
+	 * reserve difference
+	 *
+	 * @param quiescence
+	 */
+	public void setQuiescence(boolean quiescence) {
+		this.quiescence = quiescence;
+		helpers = null;
+	}
+
+	/**
+	 * keeps the table warm from one game to the next, if this player keeps playing the same color
+	 *
+	 * @param keepTable
+	 */
+	public void setKeepTable(boolean keepTable) {
+		this.keepTable = keepTable;
+	}
+
+	/**
+	 * lets this player search on the time of the other player, meant for games against a human: against an engine
+	 * on the same processor both searches get slower
+	 *
+	 * @param ponder
+	 */
+	public void setPonder(boolean ponder) {
+		if (!ponder) stopPondering();
+		this.ponder = ponder;
+	}
+
+	/**
+	 * lets this player check in the background whether the positions of its decisions are forced wins, with proof
+	 * trees of at most 'maxNodes' nodes (see BackgroundProofSearch), 0 to play without; once a win is proven the
+	 * moves of the proof are played without searching. The solve runs on another thread, so it slows down the minimax
+	 * unless a processor is free
+	 *
+	 * @param maxNodes
+	 */
+	public void setProofNumberSearch(int maxNodes) {
+		if (maxNodes < 0) throw new IllegalArgumentException("Node cap should not be negative: " + maxNodes);
+		if (proofSearch != null) proofSearch.stop();
+		proofSearch = maxNodes == 0 ? null : new BackgroundProofSearch(maxNodes, HELPER_POOL);
+	}
+
+	/**
+	 * returns the number of decisions of this game which started from the table of a ponder search
+	 *
+	 * @return
+	 */
+	public int getPonderHits() {
+		return ponderHits;
+	}
+
+	private void setBranchDepth() {
+		if (VAR_BRANCH_DEPTH) {
+			MAX_BRANCH_DEPTH = VAR_BRANCH_START_DEPTH + board.getNumberOfSpheresOnBoard() / 3;
+		}
+		if (!isTimed()) getObserver().shout("Thinking... depth: " + MAX_BRANCH_DEPTH);
+	}
+
+	private boolean isTimed() {
+		return MOVE_TIME_MILLIS > 0 || GAME_TIME_MILLIS > 0;
+	}
+
+	/* returns the time budget for this decision, the game budget is spread over the moves we still have to do */
+	private long getTimeBudget() {
+		long budget = Long.MAX_VALUE;
+		if (GAME_TIME_MILLIS > 0) {
+			int movesLeft = Math.max(1, board.getReservesSize(PLAYER_COLOR));
+			budget = Math.max(1, (GAME_TIME_MILLIS - gameTimeUsed) / movesLeft);
+		}
+		if (MOVE_TIME_MILLIS > 0) {
+			budget = Math.min(budget, MOVE_TIME_MILLIS);
+		}
+		return budget;
+	}
+
+	/**
+	 * searches the root moves, iteratively deepening if this player is time managed
+	 * the best move of the deepest completed iteration is left in bestMinimax, bestSphere and bestLocation, unless the
+	 * proof-number search proved a win, then its move is left in bestSphere and bestLocation
+	 *
+	 * @param rootMoves
+	 */
+	private void search(ArrayList<RootMove> rootMoves) {
+		if (followProof()) return;
+		if (proofSearch != null) proofSearch.start(board, simulator.getState(), PLAYER_COLOR);
+		if (THREADS > 1 && PARALLELISM == Parallelism.YOUNG_BROTHERS_WAIT && !isTimed()) {
+			searchYoungBrothersWait(rootMoves);
+		} else {
+			if (THREADS > 1) startHelpers();
+			if (isTimed()) {
+				searchIterative(rootMoves);
+			} else {
+				offer(MAX_BRANCH_DEPTH, searchRoot(rootMoves));
 			}
+			if (shared != null) joinHelpers(rootMoves);
+		}
+		/* the solve may have finished meanwhile, a win found by the minimax is kept */
+		if (bestMinimax <= WIN_THRESHOLD_THIS) followProof();
+	}
 
-		/* try to add a reserve sphere */
-			for (int locationId = 0; locationId < locations.length; locationId++) {
-				PylosLocation location = locations[locationId];
-				if (location.isUsable()) {
-					simulator.moveSphere(myReserveSphere, location);
-					double minimax = branchStep(bestMinimax, bestMinimax);
-					eval(minimax, myReserveSphere, location);
-					simulator.undoAddSphere(myReserveSphere, PylosGameState.MOVE, this.PLAYER_COLOR);
-				}
+	/**
+	 * sets bestSphere and bestLocation to the move of the proven win if the proof-number search proved one which
+	 * holds for the current position, returns whether it did
+	 *
+	 * @return
+	 */
+	private boolean followProof() {
+		if (proofSearch == null) return false;
+		int move = proofSearch.getWinningMove(board, simulator.getState(), PLAYER_COLOR);
+		if (move == PylosMove.NONE) return false;
+		setBestMove(move);
+		provenWin = true;
+		return true;
+	}
+
+	/* sets bestSphere and bestLocation to the PylosMove encoded 'move' of this player on the current board */
+	private void setBestMove(int move) {
+		PylosLocation[] locations = board.getLocations();
+		switch (PylosMove.kind(move)) {
+			case PylosMove.ADD:
+				bestSphere = board.getReserve(PLAYER_COLOR);
+				bestLocation = locations[PylosMove.to(move)];
+				break;
+			case PylosMove.MOVE:
+				bestSphere = locations[PylosMove.from(move)].getSphere();
+				bestLocation = locations[PylosMove.to(move)];
+				break;
+			case PylosMove.REMOVE:
+				bestSphere = locations[PylosMove.from(move)].getSphere();
+				bestLocation = null;
+				break;
+			default:
+				bestSphere = null;
+				bestLocation = null;
+				break;
+		}
+	}
+
+	private void searchIterative(ArrayList<RootMove> rootMoves) {
+		long startTime = System.currentTimeMillis();
+		deadline = startTime + getTimeBudget();
+		deadlineActive = false;        // the first iteration always completes
+		timeUp = false;
+
+		double completedMinimax = INITIAL_THIS;
+		RootMove completedMove = null;
+		for (int depth = 1; depth <= MAX_ITERATIVE_DEPTH; depth++) {
+			MAX_BRANCH_DEPTH = depth;
+			horizonReached = false;
+			getObserver().shout("Thinking... depth: " + depth);
+
+			RootMove best = searchRoot(rootMoves);
+			if (timeUp) break;
+
+			completedMinimax = bestMinimax;
+			completedMove = best;
+			deadlineActive = true;
+			offer(depth, best);
+
+			/* search the best move first in the next iteration */
+			rootMoves.remove(best);
+			rootMoves.add(0, best);
+
+			if (!horizonReached || bestMinimax > WIN_THRESHOLD_THIS || bestMinimax < WIN_THRESHOLD_OTHER) break;
+			if (System.currentTimeMillis() >= deadline) break;
+		}
+
+		bestMinimax = completedMinimax;
+		bestSphere = completedMove.sphere;
+		bestLocation = completedMove.location;
+		deadlineActive = false;
+		gameTimeUsed += System.currentTimeMillis() - startTime;
+	}
+
+	/**
+	 * starts a helper search on a copy of the board for every thread but this one
+	 */
+	private void startHelpers() {
+		if (helpers == null) {
+			helpers = new PylosPlayerMiniMax[THREADS - 1];
+			helperFutures = new Future<?>[THREADS - 1];
+			for (int i = 0; i < helpers.length; i++) {
+				helpers[i] = new PylosPlayerMiniMax(minimaxResults, false);
+				helpers[i].endgameTable = endgameTable;
+				helpers[i].quiescence = quiescence;
+				helpers[i].init(PLAYER_COLOR, OTHER, PylosPlayerObserver.NONE, new Random(getRandom().nextLong()));
 			}
+		}
+		shared = new SharedResult();
+		final SharedResult result = shared;
+		final PylosGameState state = simulator.getState();
+		final int maxDepth = isTimed() ? MAX_ITERATIVE_DEPTH : MAX_BRANCH_DEPTH;
+		for (int i = 0; i < helpers.length; i++) {
+			final PylosPlayerMiniMax helper = helpers[i];
+			final PylosBoard copy = PylosBitBoard.fromBoard(board).toBoard();
+			final int index = i + 1;
+			helperFutures[i] = HELPER_POOL.submit(() -> helper.help(copy, state, index, maxDepth, Long.MAX_VALUE, result));
+		}
+	}
 
-			assert tmpBestMinimax == bestMinimax;
-			assert tmpBestSphere == bestSphere;
-			assert tmpBestLocation == bestLocation;
+	/**
+	 * stops the helpers and plays the best move of the deepest iteration completed by any thread
+	 *
+	 * @param rootMoves
+	 */
+	private void joinHelpers(ArrayList<RootMove> rootMoves) {
+		shared.stop = true;
+		for (int i = 0; i < helpers.length; i++) {
+			try {
+				helperFutures[i].get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Helper search failed", e.getCause());
+			}
+			nodes += helpers[i].nodes;
+			reachedDepth = Math.max(reachedDepth, helpers[i].reachedDepth);
+			cutoffs += helpers[i].cutoffs;
+			firstMoveCutoffs += helpers[i].firstMoveCutoffs;
+		}
+		for (RootMove rootMove : rootMoves) {
+			if (rootMove.id == shared.move) {
+				bestMinimax = shared.minimax;
+				bestSphere = rootMove.sphere;
+				bestLocation = rootMove.location;
+			}
 		}
+		shared = null;
+	}
 
-		/* ----------------------------- */
+	/**
+	 * helper thread: deepens iteratively on 'board', a copy of the board of the main player, until 'shared' stops
+	 * or the clock passes 'deadline' (Long.MAX_VALUE for none)
+	 * the helpers do not all start at the same depth and shuffle the moves with their own random, so they
+	 * spread over the tree and fill the shared table for each other
+	 */
+	private void help(PylosBoard board, PylosGameState state, int index, int maxDepth, long deadline, SharedResult shared) {
+		this.board = board;
+		this.simulator = new PylosGameSimulator(state, PLAYER_COLOR, board);
+		this.shared = shared;
+		this.nodes = 0;
+		this.reachedDepth = 0;
+		this.cutoffs = 0;
+		this.firstMoveCutoffs = 0;
+		this.timeUp = false;
+		this.deadline = deadline;
+		this.deadlineActive = deadline != Long.MAX_VALUE;
+
+		ArrayList<RootMove> rootMoves = createRootMoves(state);
+		for (int depth = 1 + index % 2; depth <= maxDepth && !shared.stop; depth++) {
+			MAX_BRANCH_DEPTH = depth;
+			horizonReached = false;
+
+			RootMove best = searchRoot(rootMoves);
+			if (timeUp) break;
+			offer(depth, best);
+
+			rootMoves.remove(best);
+			rootMoves.add(0, best);
+			if (!horizonReached || bestMinimax > WIN_THRESHOLD_THIS || bestMinimax < WIN_THRESHOLD_OTHER) break;
+		}
+		this.shared = null;
+	}
 
-		shoutIfWinnerIsKnown();
+	/**
+	 * starts a ponder search if the turn of this player ended: the expected reply of the other player is the chain of
+	 * table moves from the current position, the helper searches the position after it until the next decision
+	 * a timed player ponders at most one decision budget, the search stops by itself when the game ended meanwhile
+	 *
+	 * @param game
+	 */
+	private void startPondering(PylosGameIF game) {
+		if (!ponder || game.isFinished() || game.getState() != PylosGameState.MOVE) return;
+
+		final PylosBoard copy = PylosBitBoard.fromBoard(board).toBoard();
+		PylosGameSimulator copySimulator = new PylosGameSimulator(PylosGameState.MOVE, PLAYER_COLOR.other(), copy);
+		while (copySimulator.getColor() != PLAYER_COLOR) {
+			PylosGameState state = copySimulator.getState();
+			if (state == PylosGameState.COMPLETED || state == PylosGameState.DRAW) return;
+			int move = TranspositionTable.move(minimaxResults.probe(copy.getZobristKey(copySimulator.getColor(), state)));
+			if (!isLegal(copy, state, copySimulator.getColor(), move)) return;
+			copySimulator.doMove(move);
+		}
+		if (copySimulator.getState() != PylosGameState.MOVE) return;
 
-		/* execute the best move */
-		assert bestSphere != null;
-		if (PRINT_MINIMAX_RESULT) System.out.println("-------> " + bestMinimax);
-		game.moveSphere(bestSphere, bestLocation);
+		if (ponderer == null) {
+			ponderer = new PylosPlayerMiniMax(minimaxResults, false);
+			ponderer.init(PLAYER_COLOR, OTHER, PylosPlayerObserver.NONE, new Random(getRandom().nextLong()));
+		}
+		ponderer.endgameTable = endgameTable;
+		ponderer.quiescence = quiescence;
+		ponderState = copy.toLong();
+		ponderResult = new SharedResult();
+		final PylosPlayerMiniMax helper = ponderer;
+		final SharedResult result = ponderResult;
+		final int maxDepth = isTimed() ? MAX_ITERATIVE_DEPTH : VAR_BRANCH_DEPTH ? VAR_BRANCH_START_DEPTH + copy.getNumberOfSpheresOnBoard() / 3 : MAX_BRANCH_DEPTH;
+		final long ponderDeadline = isTimed() ? System.currentTimeMillis() + getTimeBudget() : Long.MAX_VALUE;
+		ponderFuture = HELPER_POOL.submit(() -> helper.help(copy, PylosGameState.MOVE, 0, maxDepth, ponderDeadline, result));
 	}
 
-	@Override
-	public void doRemove(PylosGameIF game, PylosBoard board) {
-		init(game.getState(), board);
+	/**
+	 * stops the ponder search, returns whether there was one
+	 *
+	 * @return
+	 */
+	private boolean stopPondering() {
+		if (ponderFuture == null) return false;
+		ponderResult.stop = true;
+		try {
+			ponderFuture.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Ponder search failed", e.getCause());
+		} finally {
+			ponderFuture = null;
+			ponderResult = null;
+		}
+		return true;
+	}
 
-		for (PylosSphere sphere : board.getSpheres(PLAYER_COLOR)) {
-			if (sphere.canRemove()) {
-				PylosLocation prevLocation = sphere.getLocation();
-				getObserver().checkingRemoveSphere(sphere);
-				simulator.removeSphere(sphere);
-				double minimax = branchStep(bestMinimax, bestMinimax);
-				eval(minimax, sphere, null);
-				simulator.undoRemoveFirstSphere(sphere, prevLocation, PylosGameState.REMOVE_FIRST, this.PLAYER_COLOR);
-			}
+	/* returns whether 'move' is an action of 'color' in 'state' on 'board' */
+	private static boolean isLegal(PylosBoard board, PylosGameState state, PylosPlayerColor color, int move) {
+		if (move == PylosMove.NONE) return false;
+		MoveList moves = new MoveList();
+		moves.generate(board, state, color);
+		for (int i = 0; i < moves.size(); i++) {
+			if (PylosMove.action(moves.get(i)) == PylosMove.action(move)) return true;
 		}
+		return false;
+	}
 
-		shoutIfWinnerIsKnown();
-		/* execute the best move */
-		if (PRINT_MINIMAX_RESULT) System.out.println("-------> " + bestMinimax);
-		game.removeSphere(bestSphere);
+	private void offer(int depth, RootMove best) {
+		if (shared != null) shared.offer(depth, bestMinimax, best.id);
 	}
 
-	@Override
-	public void doRemoveOrPass(PylosGameIF game, PylosBoard board) {
-		init(game.getState(), board);
+	/**
+	 * searches the root moves to MAX_BRANCH_DEPTH on the fork/join pool (young brothers wait)
+	 * the first move of a split node is searched before its younger brothers are forked, these start with the
+	 * bound of the brothers done so far; a tie goes to the first root move, so the move is the one of the serial search
+	 *
+	 * @param rootMoves
+	 */
+	private void searchYoungBrothersWait(ArrayList<RootMove> rootMoves) {
+		if (forkJoinPool == null) forkJoinPool = new ForkJoinPool(THREADS);
+
+		final PylosBitBoard root = PylosBitBoard.fromBoard(board);
+		final PylosGameState state = simulator.getState();
+		final int maxBranchDepth = MAX_BRANCH_DEPTH;
+		final List<PylosPlayerMiniMax> decisionSearchers = Collections.synchronizedList(new ArrayList<>());
+		searchers = ThreadLocal.withInitial(() -> {
+			PylosPlayerMiniMax searcher = new PylosPlayerMiniMax(minimaxResults, true);
+			searcher.init(PLAYER_COLOR, OTHER, PylosPlayerObserver.NONE, new Random(getRandom().nextLong()));
+			searcher.board = root.toBoard();
+			searcher.simulator = new PylosGameSimulator(state, PLAYER_COLOR, searcher.board);
+			searcher.MAX_BRANCH_DEPTH = maxBranchDepth;
+			searcher.endgameTable = endgameTable;
+			searcher.quiescence = quiescence;
+			decisionSearchers.add(searcher);
+			return searcher;
+		});
+
+		int[] moves = new int[rootMoves.size()];
+		for (int i = 0; i < moves.length; i++) {
+			moves[i] = rootMoves.get(i).toMove(PLAYER_COLOR);
+		}
+		RootSplit split = new RootSplit(moves);
+		forkJoinPool.invoke(split);
+		searchers = null;
 
-		for (PylosSphere sphere : board.getSpheres(PLAYER_COLOR)) {
-			if (sphere.canRemove()) {
-				PylosLocation prevLocation = sphere.getLocation();
-				getObserver().checkingRemoveSphere(sphere);
-				simulator.removeSphere(sphere);
-				double minimax = branchStep(bestMinimax, bestMinimax);
-				eval(minimax, sphere, null);
-				simulator.undoRemoveSecondSphere(sphere, prevLocation, PylosGameState.REMOVE_SECOND, this.PLAYER_COLOR);
+		this.bestMinimax = INITIAL_THIS;
+		for (int i = 0; i < moves.length; i++) {
+			if (split.results[i] > bestMinimax) {
+				bestMinimax = split.results[i];
+				bestSphere = rootMoves.get(i).sphere;
+				bestLocation = rootMoves.get(i).location;
 			}
 		}
+		for (PylosPlayerMiniMax searcher : decisionSearchers) {
+			nodes += searcher.nodes;
+			reachedDepth = Math.max(reachedDepth, searcher.reachedDepth);
+			cutoffs += searcher.cutoffs;
+			firstMoveCutoffs += searcher.firstMoveCutoffs;
+		}
+	}
 
-		getObserver().checkingPass();
-		simulator.pass();
-		double chance = branchStep(bestMinimax, bestMinimax);
-		eval(chance, null, null);
-		simulator.undoPass(PylosGameState.REMOVE_SECOND, this.PLAYER_COLOR);
+	/**
+	 * shuts down the fork/join pool of the last game, its idle threads end
+	 */
+	private void releaseForkJoinPool() {
+		if (forkJoinPool == null) return;
+		forkJoinPool.shutdown();
+		forkJoinPool = null;
+	}
 
-		shoutIfWinnerIsKnown();
-		if (PRINT_MINIMAX_RESULT) System.out.println("-------> " + bestMinimax);
+	/**
+	 * plays 'path' from the root, searches the position with branchStep and takes 'path' back
+	 * runs on a searcher, its board is at the root before and after
+	 *
+	 * @param path
+	 * @param siblingMinimax
+	 * @param parentSiblingMinimax
+	 * @return
+	 */
+	private double searchPath(int[] path, double siblingMinimax, double parentSiblingMinimax) {
+		PylosGameState[] prevStates = new PylosGameState[path.length];
+		PylosPlayerColor[] prevColors = new PylosPlayerColor[path.length];
+		for (int i = 0; i < path.length; i++) {
+			prevStates[i] = simulator.getState();
+			prevColors[i] = simulator.getColor();
+			simulator.doMove(path[i]);
+		}
+		branchDepth = path.length - 1;
+		double result = branchStep(siblingMinimax, parentSiblingMinimax);
+		branchDepth = 0;
+		for (int i = path.length - 1; i >= 0; i--) {
+			simulator.undoMove(path[i], prevStates[i], prevColors[i]);
+		}
+		return result;
+	}
 
-		/* execute the best move */
-		if (bestSphere != null) {
-			game.removeSphere(bestSphere);
-		} else {
-			game.pass();
+	/**
+	 * returns the moves of the position after 'path' if it is split further, null if it is searched serially
+	 * runs on a searcher, its board is at the root before and after
+	 *
+	 * @param path
+	 * @return
+	 */
+	private int[] getSplitMoves(int[] path) {
+		if (path.length >= SPLIT_DEPTH || path.length >= MAX_BRANCH_DEPTH) return null;
+		PylosGameState[] prevStates = new PylosGameState[path.length];
+		PylosPlayerColor[] prevColors = new PylosPlayerColor[path.length];
+		for (int i = 0; i < path.length; i++) {
+			prevStates[i] = simulator.getState();
+			prevColors[i] = simulator.getColor();
+			simulator.doMove(path[i]);
+		}
+		int[] moves = null;
+		/* only move nodes are split, removes and passes follow the pruning rules of their parent */
+		if (simulator.getState() == PylosGameState.MOVE && board.getReservesSize(simulator.getColor()) > 0) {
+			MoveList moveList = new MoveList();
+			moveList.generate(board, PylosGameState.MOVE, simulator.getColor());
+			moves = new int[moveList.size()];
+			for (int i = 0; i < moves.length; i++) moves[i] = moveList.get(i);
+		}
+		for (int i = path.length - 1; i >= 0; i--) {
+			simulator.undoMove(path[i], prevStates[i], prevColors[i]);
 		}
+		return moves;
 	}
 
-	private void init(PylosGameState state, PylosBoard board) {
-		this.simulator = new PylosGameSimulator(state, PLAYER_COLOR, board);
-		this.board = board;
+	/**
+	 * searches all root moves to MAX_BRANCH_DEPTH and returns the best one
+	 *
+	 * @param rootMoves
+	 * @return
+	 */
+	private RootMove searchRoot(ArrayList<RootMove> rootMoves) {
 		this.bestMinimax = INITIAL_THIS;
 		this.bestSphere = null;
 		this.bestLocation = null;
 		this.branchDepth = 0;
-		this.minimaxResults = new HashMap<>();
-		setBranchDepth();
-	}
 
-	private void setBranchDepth() {
-		if (VAR_BRANCH_DEPTH) {
-			MAX_BRANCH_DEPTH = VAR_BRANCH_START_DEPTH + board.getNumberOfSpheresOnBoard() / 3;
+		final PylosGameState state = simulator.getState();
+		RootMove best = null;
+		/* a remove branch of this player has no upper bound at the root, so it is not pruned against bestMinimax */
+		for (RootMove rootMove : rootMoves) {
+			PylosSphere sphere = rootMove.sphere;
+			double minimax;
+			switch (state) {
+				case MOVE:
+					getObserver().checkingMoveSphere(sphere, rootMove.location);
+					simulator.moveSphere(sphere, rootMove.location);
+					minimax = branchStep(bestMinimax, INITIAL_OTHER);
+					if (rootMove.from == null) {
+						simulator.undoAddSphere(sphere, PylosGameState.MOVE, this.PLAYER_COLOR);
+					} else {
+						simulator.undoMoveSphere(sphere, rootMove.from, PylosGameState.MOVE, this.PLAYER_COLOR);
+					}
+					break;
+				case REMOVE_FIRST:
+					getObserver().checkingRemoveSphere(sphere);
+					simulator.removeSphere(sphere);
+					minimax = branchStep(bestMinimax, INITIAL_OTHER);
+					simulator.undoRemoveFirstSphere(sphere, rootMove.from, PylosGameState.REMOVE_FIRST, this.PLAYER_COLOR);
+					break;
+				case REMOVE_SECOND:
+					if (sphere == null) {
+						getObserver().checkingPass();
+						simulator.pass();
+						minimax = branchStep(bestMinimax, INITIAL_OTHER);
+						simulator.undoPass(PylosGameState.REMOVE_SECOND, this.PLAYER_COLOR);
+					} else {
+						getObserver().checkingRemoveSphere(sphere);
+						simulator.removeSphere(sphere);
+						minimax = branchStep(bestMinimax, INITIAL_OTHER);
+						simulator.undoRemoveSecondSphere(sphere, rootMove.from, PylosGameState.REMOVE_SECOND, this.PLAYER_COLOR);
+					}
+					break;
+				default:
+					throw new IllegalStateException("Game state is: " + state);
+			}
+			if (timeUp) break;
+			if (eval(minimax, sphere, rootMove.location)) best = rootMove;
 		}
-		getObserver().shout("Thinking... depth: " + MAX_BRANCH_DEPTH);
+		return best;
 	}
 
-	private void eval(double minimax, PylosSphere sphere, PylosLocation location) {
+	private boolean eval(double minimax, PylosSphere sphere, PylosLocation location) {
 		if (PRINT_MINIMAX_RESULT) System.out.println(minimax + "  best: " + bestMinimax);
+		boolean improved = false;
 		if (minimax > bestMinimax) {
 			bestMinimax = minimax;
 			bestSphere = sphere;
 			bestLocation = location;
+			improved = true;
 		}
 		if (PRINT_MINIMAX_RESULT) {
 			if (minimax < WIN_THRESHOLD_OTHER) {
@@ -258,10 +1023,13 @@ public class PylosPlayerMiniMax extends PylosPlayer {
 				System.out.println("Minimax can win in " + (WIN_THIS - minimax) + " steps (" + minimax + ")");
 			}
 		}
+		return improved;
 	}
 
 	private void shoutIfWinnerIsKnown() {
-		if (bestMinimax < WIN_THRESHOLD_OTHER) {
+		if (provenWin) {
+			getObserver().shoutBad("Even if you do optimal moves\nI'll win, it is proven :)");
+		} else if (bestMinimax < WIN_THRESHOLD_OTHER) {
 			getObserver().shoutGood("If you do optimal moves\nYou can win in " + (int) (bestMinimax - WIN_OTHER) + " steps :)");
 		} else if (bestMinimax > WIN_THRESHOLD_THIS) {
 			getObserver().shoutBad("Even if you do optimal moves\nI'll win in " + (int) (WIN_THIS - bestMinimax) + " steps :)");
@@ -274,71 +1042,69 @@ public class PylosPlayerMiniMax extends PylosPlayer {
 
 	/* ------------------------------------------------------------------------------------------------------------ */
 
-	private double branchDoMove(double siblingMinimax) {
+	private double branchDoMove(double siblingMinimax, int tableMove) {
 
 		final PylosPlayerColor currentColor = simulator.getColor();
 		double minimax = currentColor == PLAYER_COLOR ? INITIAL_THIS : INITIAL_OTHER;
 		boolean prune = false;
-
-		PylosSphere myReserveSphere = board.getReserve(currentColor);
-		PylosSphere[] mySpheres = board.getSpheres(currentColor);
-		PylosLocation[] locations = board.getLocations();
-
-		/* try to move a sphere to higher level */
-		for (int sphereId = 0; sphereId < mySpheres.length && !(PRUNE_ENABLE && prune); sphereId++) {
-			PylosSphere sphere = mySpheres[sphereId];
-			if (!sphere.isReserve()) {
-				for (int locationId = 0; locationId < locations.length && !(PRUNE_ENABLE && prune); locationId++) {
-					PylosLocation location = locations[locationId];
-					if (sphere.canMoveTo(location)) {
-						// check chance
-						PylosLocation prevLocation = sphere.getLocation();
-						simulator.moveSphere(sphere, location);
-						double result = branchStep(minimax, siblingMinimax);
-						if (currentColor == PLAYER_COLOR) {
-							if (result > minimax) minimax = result;
-							if (minimax >= siblingMinimax) prune = true;
-						} else {
-							if (result < minimax) minimax = result;
-							if (minimax <= siblingMinimax) prune = true;
-						}
-						simulator.undoMoveSphere(sphere, prevLocation, PylosGameState.MOVE, currentColor);
-						assert simulator.getState() == PylosGameState.MOVE && simulator.getColor() == currentColor : simulator.getState() + " " + simulator.getColor() + "\tshould be: " + PylosGameState.MOVE + " " + currentColor;
-					}
+		int bestMove = 0;
+
+		/* moves to a higher level first, then the reserve additions, reordered if ORDER_MOVES */
+		MoveList moves = moveOrdering.getMoveList(branchDepth);
+		moves.generate(board, PylosGameState.MOVE, currentColor);
+		if (ORDER_MOVES) moveOrdering.orderMoves(moves, branchDepth, board, currentColor, tableMove);
+
+		for (int i = 0; i < moves.size() && !(PRUNE_ENABLE && prune); i++) {
+			// check chance
+			int move = moves.get(i);
+			simulator.doMove(move);
+			double result = branchStep(minimax, siblingMinimax);
+			simulator.undoMove(move, PylosGameState.MOVE, currentColor);
+			assert simulator.getState() == PylosGameState.MOVE && simulator.getColor() == currentColor : simulator.getState() + " " + simulator.getColor() + "\tshould be: " + PylosGameState.MOVE + " " + currentColor;
+			/* the result of an aborted branch is not real, it must not prune nor count as a cutoff */
+			if (timeUp) break;
+			if (currentColor == PLAYER_COLOR) {
+				if (result > minimax) {
+					minimax = result;
+					bestMove = move;
 				}
-			}
-		}
-
-		/* try to add a reserve sphere */
-		for (int locationId = 0; locationId < locations.length && !(PRUNE_ENABLE && prune); locationId++) {
-			PylosLocation location = locations[locationId];
-			if (location.isUsable()) {
-				// check chance
-				simulator.moveSphere(myReserveSphere, location);
-				double result = branchStep(minimax, siblingMinimax);
-				if (currentColor == PLAYER_COLOR) {
-					if (result > minimax) minimax = result;
-					if (minimax >= siblingMinimax) prune = true;
-				} else {
-					if (result < minimax) minimax = result;
-					if (minimax <= siblingMinimax) prune = true;
+				if (minimax >= siblingMinimax) prune = true;
+			} else {
+				if (result < minimax) {
+					minimax = result;
+					bestMove = move;
 				}
-				simulator.undoAddSphere(myReserveSphere, PylosGameState.MOVE, currentColor);
-				assert simulator.getState() == PylosGameState.MOVE && simulator.getColor() == currentColor : simulator.getState() + " " + simulator.getColor() + "\tshould be: " + PylosGameState.MOVE + " " + currentColor;
+				if (minimax <= siblingMinimax) prune = true;
 			}
+			if (PRUNE_ENABLE && prune) addCutoff(move, i, currentColor);
 		}
 
-		assert !(currentColor == PLAYER_COLOR && minimax == INITIAL_THIS);
-		assert !(currentColor != PLAYER_COLOR && minimax == INITIAL_OTHER);
+		assert timeUp || !(currentColor == PLAYER_COLOR && minimax == INITIAL_THIS);
+		assert timeUp || !(currentColor != PLAYER_COLOR && minimax == INITIAL_OTHER);
 
+		branchBestMove = bestMove;
 		return minimax;
 	}
 
+	/**
+	 * registers that 'move', the move at 'index' in its branch, pruned the branch
+	 *
+	 * @param move
+	 * @param index
+	 * @param color
+	 */
+	private void addCutoff(int move, int index, PylosPlayerColor color) {
+		cutoffs++;
+		if (index == 0) firstMoveCutoffs++;
+		if (ORDER_MOVES) moveOrdering.addCutoff(move, branchDepth, MAX_BRANCH_DEPTH - branchDepth + 1, color);
+	}
+
 	private double branchDoRemove(double parentSiblingMinimax) {
 
 		final PylosPlayerColor currentColor = simulator.getColor();
 		double minimax = currentColor == PLAYER_COLOR ? INITIAL_THIS : INITIAL_OTHER;
 		boolean prune = false;
+		int bestMove = 0;
 
 		PylosSphere[] mySpheres = board.getSpheres(currentColor);
 
@@ -347,23 +1113,32 @@ public class PylosPlayerMiniMax extends PylosPlayer {
 			PylosSphere sphere = mySpheres[sphereId];
 			if (sphere.canRemove()) {
 				PylosLocation prevLocation = sphere.getLocation();
+				int move = PylosMove.remove(sphere);
 				simulator.removeSphere(sphere);
 				double result = branchStep(parentSiblingMinimax, parentSiblingMinimax);
+				simulator.undoRemoveFirstSphere(sphere, prevLocation, PylosGameState.REMOVE_FIRST, currentColor);
+				assert simulator.getState() == PylosGameState.REMOVE_FIRST && simulator.getColor() == currentColor : simulator.getState() + " " + simulator.getColor() + "\tshould be: " + PylosGameState.REMOVE_FIRST + " " + currentColor;
+				if (timeUp) break;
 				if (currentColor == PLAYER_COLOR) {
-					if (result > minimax) minimax = result;
+					if (result > minimax) {
+						minimax = result;
+						bestMove = move;
+					}
 					if (minimax >= parentSiblingMinimax) prune = true;
 				} else {
-					if (result < minimax) minimax = result;
+					if (result < minimax) {
+						minimax = result;
+						bestMove = move;
+					}
 					if (minimax <= parentSiblingMinimax) prune = true;
 				}
-				simulator.undoRemoveFirstSphere(sphere, prevLocation, PylosGameState.REMOVE_FIRST, currentColor);
-				assert simulator.getState() == PylosGameState.REMOVE_FIRST && simulator.getColor() == currentColor : simulator.getState() + " " + simulator.getColor() + "\tshould be: " + PylosGameState.REMOVE_FIRST + " " + currentColor;
 			}
 		}
 
-		assert !(currentColor == PLAYER_COLOR && minimax == INITIAL_THIS);
-		assert !(currentColor != PLAYER_COLOR && minimax == INITIAL_OTHER);
+		assert timeUp || !(currentColor == PLAYER_COLOR && minimax == INITIAL_THIS);
+		assert timeUp || !(currentColor != PLAYER_COLOR && minimax == INITIAL_OTHER);
 
+		branchBestMove = bestMove;
 		return minimax;
 	}
 
@@ -372,6 +1147,7 @@ public class PylosPlayerMiniMax extends PylosPlayer {
 		final PylosPlayerColor currentColor = simulator.getColor();
 		double minimax = currentColor == PLAYER_COLOR ? INITIAL_THIS : INITIAL_OTHER;
 		boolean prune = false;
+		int bestMove = 0;
 
 		PylosSphere[] mySpheres = board.getSpheres(currentColor);
 
@@ -380,17 +1156,25 @@ public class PylosPlayerMiniMax extends PylosPlayer {
 			PylosSphere sphere = mySpheres[sphereId];
 			if (sphere.canRemove()) {
 				PylosLocation prevLocation = sphere.getLocation();
+				int move = PylosMove.remove(sphere);
 				simulator.removeSphere(sphere);
 				double result = branchStep(minimax, minimax);
+				simulator.undoRemoveSecondSphere(sphere, prevLocation, PylosGameState.REMOVE_SECOND, currentColor);
+				assert simulator.getState() == PylosGameState.REMOVE_SECOND && simulator.getColor() == currentColor : simulator.getState() + " " + simulator.getColor() + "\tshould be: " + PylosGameState.REMOVE_SECOND + " " + currentColor;
+				if (timeUp) break;
 				if (currentColor == PLAYER_COLOR) {
-					if (result > minimax) minimax = result;
+					if (result > minimax) {
+						minimax = result;
+						bestMove = move;
+					}
 					if (minimax >= parentSiblingMinimax) prune = true;
 				} else {
-					if (result < minimax) minimax = result;
+					if (result < minimax) {
+						minimax = result;
+						bestMove = move;
+					}
 					if (minimax <= parentSiblingMinimax) prune = true;
 				}
-				simulator.undoRemoveSecondSphere(sphere, prevLocation, PylosGameState.REMOVE_SECOND, currentColor);
-				assert simulator.getState() == PylosGameState.REMOVE_SECOND && simulator.getColor() == currentColor : simulator.getState() + " " + simulator.getColor() + "\tshould be: " + PylosGameState.REMOVE_SECOND + " " + currentColor;
 			}
 		}
 
@@ -398,16 +1182,23 @@ public class PylosPlayerMiniMax extends PylosPlayer {
 		simulator.pass();
 		double result = board.getReservesSize(this.PLAYER_COLOR.other()) - board.getReservesSize(this.PLAYER_COLOR);
 		if (currentColor == PLAYER_COLOR) {
-			if (result > minimax) minimax = result;
+			if (result > minimax) {
+				minimax = result;
+				bestMove = PylosMove.pass(currentColor);
+			}
 		} else {
-			if (result < minimax) minimax = result;
+			if (result < minimax) {
+				minimax = result;
+				bestMove = PylosMove.pass(currentColor);
+			}
 		}
 		simulator.undoPass(PylosGameState.REMOVE_SECOND, currentColor);
 		assert simulator.getState() == PylosGameState.REMOVE_SECOND && simulator.getColor() == currentColor : simulator.getState() + " " + simulator.getColor() + "\tshould be: " + PylosGameState.REMOVE_SECOND + " " + currentColor;
 
-		assert !(currentColor == PLAYER_COLOR && minimax == INITIAL_THIS);
-		assert !(currentColor != PLAYER_COLOR && minimax == INITIAL_OTHER);
+		assert timeUp || !(currentColor == PLAYER_COLOR && minimax == INITIAL_THIS);
+		assert timeUp || !(currentColor != PLAYER_COLOR && minimax == INITIAL_OTHER);
 
+		branchBestMove = bestMove;
 		return minimax;
 	}
 
@@ -435,53 +1226,74 @@ public class PylosPlayerMiniMax extends PylosPlayer {
 //		return branchStep(siblingMinimax, 0);
 //	}
 
-	private long addGameState(long boardState, PylosGameState gameState, PylosPlayerColor color) {
+	private double branchStep(double siblingMinimax, double parentSiblingMinimax) {
 
-		if (color == PylosPlayerColor.DARK) {
-			boardState |= COLOR_FLAG;
+		if (++timeCheckCounter % TIME_CHECK_INTERVAL == 0
+				&& (deadlineActive && System.currentTimeMillis() >= deadline || shared != null && shared.stop)) {
+			timeUp = true;
 		}
-		switch (gameState) {
-			case MOVE:
-				boardState |= MOVE_FLAG;
-				break;
-			case REMOVE_FIRST:
-				boardState |= REMOVE_FIRST_FLAG;
-				break;
-			case REMOVE_SECOND:
-				boardState |= REMOVE_SECOND_FLAG;
-				break;
-			case COMPLETED:
-				break;
-			default:
-				throw new IllegalStateException("Game state is: " + gameState);
+		if (timeUp) {
+			/* unwind, the result of this iteration is discarded */
+			return 0;
+		}
+		nodes++;
+		if (branchDepth >= reachedDepth) reachedDepth = branchDepth + 1;
+
+		if (endgameTable != null) {
+			int value = endgameTable.probe(board, simulator.getState(), simulator.getColor());
+			if (value != EndgameTable.UNKNOWN) {
+				/* scored like the completed game 'value' actions further */
+				int depth = branchDepth + Math.abs(value) + 1;
+				boolean won = (value > 0) == (simulator.getColor() == PLAYER_COLOR);
+				return won ? WIN_THIS - depth : WIN_OTHER + depth;
+			}
 		}
-
-		return boardState;
-	}
-
-	private double branchStep(double siblingMinimax, double parentSiblingMinimax) {
 
 		if (branchDepth == MAX_BRANCH_DEPTH) {
-			return board.getReservesSize(PLAYER_COLOR) - board.getReservesSize(PLAYER_COLOR.other());
+			horizonReached = true;
+			if (!quiescence) return evaluate();
+			/* the bound of this branch becomes the window of the quiescence search */
+			quiescenceNodes = 0;
+			double horizonBound = simulator.getState() == PylosGameState.MOVE ? siblingMinimax : parentSiblingMinimax;
+			return simulator.getColor() == PLAYER_COLOR ? quiesce(INITIAL_THIS, horizonBound) : quiesce(horizonBound, INITIAL_OTHER);
 		}
 
 		final PylosPlayerColor color = simulator.getColor();
 		final PylosGameState state = simulator.getState();
-		final Long minimaxBranchState = addGameState(board.toLong(), state, color);
+		final long minimaxBranchState = board.getZobristKey(color, state);
+		final int remainingDepth = MAX_BRANCH_DEPTH - branchDepth;
+		/* a move branch is pruned against its sibling, a remove branch against the sibling of its parent */
+		final double bound = state == PylosGameState.MOVE ? siblingMinimax : parentSiblingMinimax;
+		final boolean maximizing = color == PLAYER_COLOR;
 
-		Double result;
+		int tableMove = 0;
 		if (SAVE_STATES) {
-			result = minimaxResults.get(minimaxBranchState);
-			if (result != null) {
-				return result;
+			long entry = minimaxResults.probe(minimaxBranchState);
+			tableMove = TranspositionTable.move(entry);
+			if (entry != TranspositionTable.MISS && (EXACT_DEPTH_PROBES ? TranspositionTable.depth(entry) == remainingDepth : TranspositionTable.depth(entry) >= remainingDepth)) {
+				double result = fromTableScore(TranspositionTable.score(entry));
+				/* the stored branch may have been cut off by the horizon as well */
+				horizonReached = true;
+				switch (TranspositionTable.bound(entry)) {
+					case TranspositionTable.EXACT:
+						return result;
+					case TranspositionTable.LOWER:
+						if (maximizing && result >= bound) return result;
+						break;
+					case TranspositionTable.UPPER:
+						if (!maximizing && result <= bound) return result;
+						break;
+				}
 			}
 		}
 
+		double result;
+		branchBestMove = 0;
 		branchDepth++;
 
 		switch (state) {
 			case MOVE:
-				result = branchDoMove(siblingMinimax);
+				result = branchDoMove(siblingMinimax, tableMove);
 				assert simulator.getColor() == color && simulator.getState() == state;
 				break;
 			case REMOVE_FIRST:
@@ -508,14 +1320,276 @@ public class PylosPlayerMiniMax extends PylosPlayer {
 				throw new IllegalStateException("Game state is: " + state);
 		}
 
-		if (SAVE_STATES) {
-			minimaxResults.put(minimaxBranchState, result);
+		branchDepth--;
+
+		if (SAVE_STATES && !timeUp) {
+			/* a branch which reached the bound was (or could have been) pruned, its result is only a bound */
+			int tableBound;
+			if (maximizing) {
+				tableBound = result >= bound ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+			} else {
+				tableBound = result <= bound ? TranspositionTable.UPPER : TranspositionTable.EXACT;
+			}
+			minimaxResults.store(minimaxBranchState, toTableScore(result), remainingDepth, tableBound, branchBestMove);
 		}
 
-		branchDepth--;
 		return result;
 	}
 
+	/**
+	 * returns the result of the position beyond the horizon, a result outside (alpha, beta) is only a bound
+	 * in a move state only square completions and blocks are searched, the player to move may also keep the reserve
+	 * difference unless the other player threatens to complete a square; a completed square is followed by all removes
+	 *
+	 * @param alpha
+	 * @param beta
+	 * @return
+	 */
+	private double quiesce(double alpha, double beta) {
+		final PylosPlayerColor color = simulator.getColor();
+		final PylosGameState state = simulator.getState();
+		if (state == PylosGameState.COMPLETED) {
+			return simulator.getWinner() == PLAYER_COLOR ? WIN_THIS - (branchDepth + 1) : WIN_OTHER + (branchDepth + 1);
+		}
+		final double standPat = evaluate();
+		if (++quiescenceNodes > QUIESCENCE_MAX_NODES || branchDepth - MAX_BRANCH_DEPTH >= QUIESCENCE_MAX_DEPTH) return standPat;
+
+		final boolean maximizing = color == PLAYER_COLOR;
+		/* the moves of a branch are kept at the branch depth of its children, like in branchDoMove */
+		MoveList moves = moveOrdering.getMoveList(branchDepth + 1);
+		moves.generate(board, state, color);
+		double minimax = maximizing ? INITIAL_THIS : INITIAL_OTHER;
+		if (state == PylosGameState.MOVE) {
+			/* keep the square completions first, then the blocks */
+			final PylosLocation[] locations = board.getLocations();
+			int size = 0;
+			boolean threatened = false;
+			for (int i = 0; i < moves.size(); i++) {
+				int move = moves.get(i);
+				PylosLocation to = locations[PylosMove.to(move)];
+				threatened |= to.getMaxInSquare(color.other()) == 3;
+				if (to.getMaxInSquare(color) == 3) {
+					moves.set(i, moves.get(size));
+					moves.set(size++, move);
+				}
+			}
+			for (int i = size; i < moves.size(); i++) {
+				int move = moves.get(i);
+				if (locations[PylosMove.to(move)].getMaxInSquare(color.other()) == 3) {
+					moves.set(i, moves.get(size));
+					moves.set(size++, move);
+				}
+			}
+			moves.truncate(size);
+			if (moves.isEmpty()) return standPat;
+			if (!threatened) minimax = standPat;
+		}
+
+		if (maximizing) {
+			if (minimax >= beta) return minimax;
+			alpha = Math.max(alpha, minimax);
+		} else {
+			if (minimax <= alpha) return minimax;
+			beta = Math.min(beta, minimax);
+		}
+
+		branchDepth++;
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			simulator.doMove(move);
+			nodes++;
+			if (branchDepth >= reachedDepth) reachedDepth = branchDepth + 1;
+			double result = quiesce(alpha, beta);
+			simulator.undoMove(move, state, color);
+			if (maximizing) {
+				if (result > minimax) minimax = result;
+				if (minimax >= beta) break;
+				alpha = Math.max(alpha, minimax);
+			} else {
+				if (result < minimax) minimax = result;
+				if (minimax <= alpha) break;
+				beta = Math.min(beta, minimax);
+			}
+		}
+		branchDepth--;
+		return minimax;
+	}
+
+	private double evaluate() {
+		return board.getReservesSize(PLAYER_COLOR) - board.getReservesSize(PLAYER_COLOR.other());
+	}
+
+	/* win results depend on the branch depth, the table stores them relative to the current branch */
+	private int toTableScore(double result) {
+		if (result > WIN_THRESHOLD_THIS) return (int) result + branchDepth;
+		if (result < WIN_THRESHOLD_OTHER) return (int) result - branchDepth;
+		return (int) result;
+	}
+
+	private double fromTableScore(int score) {
+		if (score > WIN_THRESHOLD_THIS) return score - branchDepth;
+		if (score < WIN_THRESHOLD_OTHER) return score + branchDepth;
+		return score;
+	}
+
+	private static final class RootMove {
+
+		final PylosSphere sphere;        // null to pass
+		final PylosLocation from;        // null for a reserve sphere
+		final PylosLocation location;    // null to remove
+		final int id;                    // from and to location index, the same on a copy of the board
+
+		RootMove(PylosSphere sphere, PylosLocation location) {
+			this.sphere = sphere;
+			this.from = sphere == null ? null : sphere.getLocation();
+			this.location = location;
+			this.id = (from == null ? PylosMove.NO_LOCATION : from.ID) << 5 | (location == null ? PylosMove.NO_LOCATION : location.ID);
+		}
+
+		int toMove(PylosPlayerColor color) {
+			if (sphere == null) return PylosMove.pass(color);
+			if (location == null) return PylosMove.remove(sphere);
+			return from == null ? PylosMove.add(sphere, location) : PylosMove.move(sphere, location);
+		}
+	}
+
+	/* root of the young brothers wait search, keeps the result of every root move */
+	private final class RootSplit extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		final int[] moves;
+		final double[] results;
+		private final boolean[] done;
+
+		RootSplit(int[] moves) {
+			this.moves = moves;
+			this.results = new double[moves.length];
+			this.done = new boolean[moves.length];
+		}
+
+		@Override
+		protected void compute() {
+			/* the eldest brother first, it sets the bound for the others */
+			search(0);
+			List<RecursiveAction> younger = new ArrayList<>();
+			for (int i = 1; i < moves.length; i++) {
+				final int index = i;
+				younger.add(new RecursiveAction() {
+					@Override
+					protected void compute() {
+						search(index);
+					}
+				});
+			}
+			invokeAll(younger);
+		}
+
+		private void search(int index) {
+			int[] path = {moves[index]};
+			double bound = getBound(index);
+			double result;
+			int[] splitMoves = searchers.get().getSplitMoves(path);
+			if (splitMoves == null) {
+				result = searchers.get().searchPath(path, bound, INITIAL_OTHER);
+			} else {
+				result = new NodeSplit(path, splitMoves, bound).invoke();
+			}
+			synchronized (this) {
+				results[index] = result;
+				done[index] = true;
+			}
+		}
+
+		/* the best result so far, one less if it comes from a later root move, so an equal earlier move is still found */
+		private synchronized double getBound(int index) {
+			double bound = INITIAL_THIS;
+			for (int i = 0; i < moves.length; i++) {
+				if (done[i]) bound = Math.max(bound, i < index ? results[i] : results[i] - 1);
+			}
+			return bound;
+		}
+	}
+
+	/* move node below the root, split like the root: the first move alone, then the others in parallel */
+	private final class NodeSplit extends RecursiveTask<Double> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] path;
+		private final int[] moves;
+		private final double siblingMinimax;
+		private double minimax;
+		private boolean maximizing;
+		private boolean prune;
+
+		NodeSplit(int[] path, int[] moves, double siblingMinimax) {
+			this.path = path;
+			this.moves = moves;
+			this.siblingMinimax = siblingMinimax;
+		}
+
+		@Override
+		protected Double compute() {
+			maximizing = PylosMove.color(moves[0]) == PLAYER_COLOR;
+			minimax = maximizing ? INITIAL_THIS : INITIAL_OTHER;
+			search(0);
+			List<RecursiveAction> younger = new ArrayList<>();
+			for (int i = 1; i < moves.length; i++) {
+				final int index = i;
+				younger.add(new RecursiveAction() {
+					@Override
+					protected void compute() {
+						search(index);
+					}
+				});
+			}
+			if (!isPruned()) invokeAll(younger);
+			return minimax;
+		}
+
+		private void search(int index) {
+			double bound;
+			synchronized (this) {
+				if (prune) return;
+				bound = minimax;
+			}
+			int[] childPath = Arrays.copyOf(path, path.length + 1);
+			childPath[path.length] = moves[index];
+			double result = searchers.get().searchPath(childPath, bound, siblingMinimax);
+			synchronized (this) {
+				if (maximizing) {
+					minimax = Math.max(minimax, result);
+					if (minimax >= siblingMinimax) prune = true;
+				} else {
+					minimax = Math.min(minimax, result);
+					if (minimax <= siblingMinimax) prune = true;
+				}
+			}
+		}
+
+		private synchronized boolean isPruned() {
+			return prune;
+		}
+	}
+
+	/* best root move of the deepest iteration completed by any of the threads */
+	private static final class SharedResult {
+
+		volatile boolean stop;
+		private int depth = -1;
+		private double minimax;
+		private int move;
+
+		synchronized void offer(int depth, double minimax, int move) {
+			if (depth > this.depth) {
+				this.depth = depth;
+				this.minimax = minimax;
+				this.move = move;
+			}
+		}
+	}
+
 	public static void main(String[] args) {
 		Battle.play(new PylosPlayerMiniMax(), new PylosPlayerBestFit(), 50);
 	}
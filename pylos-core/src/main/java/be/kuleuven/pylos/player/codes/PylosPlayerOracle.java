@@ -0,0 +1,177 @@
+package be.kuleuven.pylos.player.codes;
+
+import be.kuleuven.pylos.game.*;
+import be.kuleuven.pylos.game.bits.PylosBitBoard;
+import be.kuleuven.pylos.oracle.Oracle;
+import be.kuleuven.pylos.player.PylosPlayer;
+import be.kuleuven.pylos.player.PylosPlayerObserver;
+
+import java.util.Random;
+
+/**
+ * Plays perfectly with an Oracle: the action with the best value, the fastest win, else a draw, else the slowest
+ * loss. Every action takes one probe of the position after it.
+ * <p>
+ * The oracle does not know the history of the game, PylosGame does: an action after which a board is repeated
+ * MAX_BOARD_STATE_COUNT times ends the game in a draw, whatever the oracle says. Such an action is valued as a draw,
+ * so a winning player avoids the repetitions and a losing player seeks them. Positions the oracle does not know are
+ * decided by another player.
+ * <p>
+ * The play is only perfect with an oracle which isExact(). Of an oracle with capped distances all wins of
+ * getMaxDistance() actions or more score the same, so the player may not make progress towards them and may run
+ * into a repetition draw it only sees one action ahead.
+ */
+public class PylosPlayerOracle extends PylosPlayer {
+
+	/* larger than any distance, so every win scores above a draw and every loss below */
+	private static final int WIN_SCORE = 1 << 20;
+
+	private final Oracle oracle;
+	private final PylosPlayer fallback;
+	private int oracleMoves;
+
+	/**
+	 * @param oracle
+	 * @param fallback player deciding the positions which are not in the oracle
+	 */
+	public PylosPlayerOracle(Oracle oracle, PylosPlayer fallback) {
+		this.oracle = oracle;
+		this.fallback = fallback;
+	}
+
+	@Override
+	public void init(PylosPlayerColor playerColor, PylosPlayer other, PylosPlayerObserver observer, Random random) {
+		super.init(playerColor, other, observer, random);
+		fallback.init(playerColor, other, observer, random);
+		oracleMoves = 0;
+	}
+
+	@Override
+	public void doMove(PylosGameIF game, PylosBoard board) {
+		int move = bestMove(game, board, PylosGameState.MOVE);
+		if (move == PylosMove.NONE) {
+			fallback.doMove(game, board);
+			return;
+		}
+		game.moveSphere(PylosMove.getSphere(move, board), PylosMove.getTo(move, board));
+	}
+
+	@Override
+	public void doRemove(PylosGameIF game, PylosBoard board) {
+		int move = bestMove(game, board, PylosGameState.REMOVE_FIRST);
+		if (move == PylosMove.NONE) {
+			fallback.doRemove(game, board);
+			return;
+		}
+		game.removeSphere(PylosMove.getSphere(move, board));
+	}
+
+	@Override
+	public void doRemoveOrPass(PylosGameIF game, PylosBoard board) {
+		int move = bestMove(game, board, PylosGameState.REMOVE_SECOND);
+		if (move == PylosMove.NONE) {
+			fallback.doRemoveOrPass(game, board);
+		} else if (PylosMove.kind(move) == PylosMove.PASS) {
+			game.pass();
+		} else {
+			game.removeSphere(PylosMove.getSphere(move, board));
+		}
+	}
+
+	/**
+	 * returns the number of decisions taken from the oracle in this game
+	 *
+	 * @return
+	 */
+	public int getOracleMoves() {
+		return oracleMoves;
+	}
+
+	/* internals -------------------------------------------------------------------------------------------------- */
+
+	/* returns the move with the best value, PylosMove.NONE if the oracle does not know the position */
+	private int bestMove(PylosGameIF game, PylosBoard board, PylosGameState state) {
+		PylosBitBoard bits = PylosBitBoard.fromBoard(board);
+		if (oracle.probe(bits, state, PLAYER_COLOR) == Oracle.UNKNOWN) return PylosMove.NONE;
+		MoveList moves = new MoveList();
+		moves.generate(board, state, PLAYER_COLOR);
+		int bestMove = PylosMove.NONE;
+		int bestScore = Integer.MIN_VALUE;
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			int score = isDraw(game, board, move) ? 0 : score(bits, state, move);
+			if (score == Integer.MIN_VALUE) return PylosMove.NONE;
+			if (score > bestScore) {
+				bestMove = move;
+				bestScore = score;
+			}
+		}
+		oracleMoves++;
+		getObserver().shout(bestScore == 0 ? "Oracle: draw" : bestScore > 0 ? "Oracle: win in " + (WIN_SCORE - bestScore) : "Oracle: loss in " + (WIN_SCORE + bestScore));
+		return bestMove;
+	}
+
+	/* returns true if the game ends in a draw by repetition after 'move' */
+	private static boolean isDraw(PylosGameIF game, PylosBoard board, int move) {
+		switch (PylosMove.kind(move)) {
+			case PylosMove.ADD:
+			case PylosMove.MOVE:
+				return game.moveSphereIsDraw(PylosMove.getSphere(move, board), PylosMove.getTo(move, board));
+			case PylosMove.REMOVE:
+				return game.removeSphereIsDraw(PylosMove.getSphere(move, board));
+			default:
+				return game.passIsDraw();
+		}
+	}
+
+	/* returns the score of 'move' for this player: WIN_SCORE - distance, 0 for a draw, distance - WIN_SCORE for a loss,
+	 * Integer.MIN_VALUE if the oracle does not know the position after it */
+	private int score(PylosBitBoard bits, PylosGameState state, int move) {
+		final PylosPlayerColor other = PLAYER_COLOR.other();
+		int from = PylosMove.from(move);
+		int to = PylosMove.to(move);
+		PylosGameState nextState;
+		PylosPlayerColor nextColor;
+		int value;
+		switch (PylosMove.kind(move)) {
+			case PylosMove.ADD:
+				if (bits.add(PLAYER_COLOR, to)) {
+					nextState = PylosGameState.REMOVE_FIRST;
+					nextColor = PLAYER_COLOR;
+				} else if (bits.getReservesSize(PLAYER_COLOR) == 0) {
+					/* the last reserve sphere is gone: the game is lost after this action */
+					bits.remove(PLAYER_COLOR, to);
+					return 1 - WIN_SCORE;
+				} else {
+					nextState = PylosGameState.MOVE;
+					nextColor = other;
+				}
+				value = oracle.probe(bits, nextState, nextColor);
+				bits.remove(PLAYER_COLOR, to);
+				break;
+			case PylosMove.MOVE:
+				boolean completed = bits.move(PLAYER_COLOR, from, to);
+				nextState = completed ? PylosGameState.REMOVE_FIRST : PylosGameState.MOVE;
+				nextColor = completed ? PLAYER_COLOR : other;
+				value = oracle.probe(bits, nextState, nextColor);
+				bits.moveDown(PLAYER_COLOR, to, from);
+				break;
+			case PylosMove.REMOVE:
+				bits.remove(PLAYER_COLOR, from);
+				nextState = state == PylosGameState.REMOVE_FIRST ? PylosGameState.REMOVE_SECOND : PylosGameState.MOVE;
+				nextColor = state == PylosGameState.REMOVE_FIRST ? PLAYER_COLOR : other;
+				value = oracle.probe(bits, nextState, nextColor);
+				bits.add(PLAYER_COLOR, from);
+				break;
+			default:
+				nextColor = other;
+				value = oracle.probe(bits, PylosGameState.MOVE, other);
+		}
+		if (value == Oracle.UNKNOWN) return Integer.MIN_VALUE;
+		if (value == Oracle.DRAW) return 0;
+		/* one action more than the position after it, for the player who played it */
+		int distance = Math.abs(value) + 1;
+		return (value > 0) == (nextColor == PLAYER_COLOR) ? WIN_SCORE - distance : distance - WIN_SCORE;
+	}
+
+}
@@ -0,0 +1,463 @@
+package be.kuleuven.pylos.player.codes;
+
+import be.kuleuven.pylos.game.*;
+import be.kuleuven.pylos.player.PylosPlayer;
+import be.kuleuven.pylos.player.PylosPlayerObserver;
+import be.kuleuven.pylos.search.SearchStats;
+import be.kuleuven.pylos.search.TranspositionTable;
+
+import java.util.Random;
+
+/**
+ * Principal variation search with an explicit (alpha, beta) window and int scores.
+ * <p>
+ * The first move of a branch is searched with the full window, the others with a null window around the best
+ * result so far and searched again if they fall inside the window. Every decision deepens iteratively, from the
+ * second iteration on the root window is an aspiration window around the score of the previous iteration.
+ * <p>
+ * Scores are from the point of view of this player: the reserve difference at the horizon, WIN - depth for a win.
+ * Unlike PylosPlayerMiniMax a pass is searched like any other move.
+ */
+public class PylosPlayerPVS extends PylosPlayer {
+
+	private static final int WIN = 2000;                // decremented with branch depth (winning earlier is better)
+	private static final int WIN_THRESHOLD = 1000;
+	private static final int INFINITY = 9999;
+	private static final int ASPIRATION_WINDOW = 1;     // scores are reserve differences, a sphere is 1
+	private static final int DEFAULT_DEPTH = 8;
+	private static final int DEFAULT_TABLE_SIZE_MB = 16;
+	private static final int MAX_ITERATIVE_DEPTH = 64;
+	private static final int TIME_CHECK_INTERVAL = 1024;    // branches between two clock reads
+
+	private final int MAX_DEPTH;
+	private final long MOVE_TIME_MILLIS;
+	private final long GAME_TIME_MILLIS;
+
+	private final TranspositionTable table;
+	private final MoveOrdering moveOrdering = new MoveOrdering();
+
+	private PylosGameSimulator simulator;
+	private PylosBoard board;
+	private int depth;                  // depth of the current iteration
+	private int branchDepth;
+	private int rootBestMove;
+	private int bestScore;
+	private boolean horizonReached;
+
+	private long gameTimeUsed;
+	private long deadline;
+	private boolean deadlineActive;
+	private boolean timeUp;
+	private int timeCheckCounter;
+
+	private long nodes;
+	private int reachedDepth;           // deepest branch of the decision
+	private long cutoffs;
+	private long firstMoveCutoffs;
+
+	public PylosPlayerPVS() {
+		this(DEFAULT_DEPTH);
+	}
+
+	public PylosPlayerPVS(Integer depth) {
+		this(depth, DEFAULT_TABLE_SIZE_MB);
+	}
+
+	/**
+	 * fixed depth player, deepens iteratively up to 'depth'
+	 *
+	 * @param depth       same branch depth as PylosPlayerMiniMax
+	 * @param tableSizeMb
+	 */
+	public PylosPlayerPVS(Integer depth, Integer tableSizeMb) {
+		if (depth < 1) throw new IllegalArgumentException("Specify a depth of at least 1");
+		MAX_DEPTH = depth;
+		MOVE_TIME_MILLIS = 0;
+		GAME_TIME_MILLIS = 0;
+		table = new TranspositionTable(tableSizeMb);
+	}
+
+	/**
+	 * time managed player: deepens iteratively and plays the best move of the deepest completed iteration
+	 *
+	 * @param moveTimeMillis budget per decision, 0 for no limit
+	 * @param gameTimeMillis budget for the whole game, spread over the remaining reserves, 0 for no limit
+	 */
+	public PylosPlayerPVS(Long moveTimeMillis, Long gameTimeMillis) {
+		if (moveTimeMillis <= 0 && gameTimeMillis <= 0) throw new IllegalArgumentException("Specify a move or game time budget");
+		MAX_DEPTH = MAX_ITERATIVE_DEPTH;
+		MOVE_TIME_MILLIS = Math.max(0, moveTimeMillis);
+		GAME_TIME_MILLIS = Math.max(0, gameTimeMillis);
+		table = new TranspositionTable(DEFAULT_TABLE_SIZE_MB);
+	}
+
+	@Override
+	public void init(PylosPlayerColor playerColor, PylosPlayer other, PylosPlayerObserver observer, Random random) {
+		super.init(playerColor, other, observer, random);
+		gameTimeUsed = 0;
+	}
+
+	@Override
+	public void doMove(PylosGameIF game, PylosBoard board) {
+		int move = search(PylosGameState.MOVE, board);
+		game.moveSphere(PylosMove.getSphere(move, board), PylosMove.getTo(move, board));
+	}
+
+	@Override
+	public void doRemove(PylosGameIF game, PylosBoard board) {
+		int move = search(PylosGameState.REMOVE_FIRST, board);
+		game.removeSphere(PylosMove.getSphere(move, board));
+	}
+
+	@Override
+	public void doRemoveOrPass(PylosGameIF game, PylosBoard board) {
+		int move = search(PylosGameState.REMOVE_SECOND, board);
+		if (PylosMove.kind(move) == PylosMove.PASS) {
+			game.pass();
+		} else {
+			game.removeSphere(PylosMove.getSphere(move, board));
+		}
+	}
+
+	/* statistics ------------------------------------------------------------------------------------------------- */
+
+	/**
+	 * returns the number of branches visited during the last decision, searches again included
+	 *
+	 * @return
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * returns the number of branches pruned during the last decision
+	 *
+	 * @return
+	 */
+	public long getCutoffs() {
+		return cutoffs;
+	}
+
+	/**
+	 * returns the fraction of the pruned branches of the last decision which were pruned by their first move
+	 *
+	 * @return
+	 */
+	public double getFirstMoveCutoffRate() {
+		return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+	}
+
+	/**
+	 * returns the score of the move played last
+	 *
+	 * @return
+	 */
+	public int getScore() {
+		return bestScore;
+	}
+
+	/* search ----------------------------------------------------------------------------------------------------- */
+
+	/**
+	 * returns the best action of this player on 'board' in 'state', see PylosMove
+	 *
+	 * @param state
+	 * @param board
+	 * @return
+	 */
+	private int search(PylosGameState state, PylosBoard board) {
+		this.board = board;
+		this.simulator = new PylosGameSimulator(state, PLAYER_COLOR, board);
+		this.branchDepth = 0;
+		this.nodes = 0;
+		this.reachedDepth = 0;
+		this.cutoffs = 0;
+		this.firstMoveCutoffs = 0;
+		long probes = table.getProbes();
+		long hits = table.getHits();
+		long stores = table.getStores();
+		long overwrites = table.getOverwrites();
+		this.table.clear();
+		this.moveOrdering.clear();
+
+		long startTime = System.currentTimeMillis();
+		deadline = isTimed() ? startTime + getTimeBudget() : Long.MAX_VALUE;
+		deadlineActive = false;        // the first iteration always completes
+		timeUp = false;
+
+		/* shuffled, so equal moves are played in a random order */
+		MoveList rootMoves = new MoveList();
+		rootMoves.generate(board, state, PLAYER_COLOR);
+		for (int i = rootMoves.size() - 1; i > 0; i--) {
+			rootMoves.swap(i, getRandom().nextInt(i + 1));
+		}
+		if (state == PylosGameState.MOVE) moveOrdering.orderMoves(rootMoves, 0, board, PLAYER_COLOR, 0);
+
+		int bestMove = rootMoves.get(0);
+		int score = 0;
+		for (depth = 1; depth <= MAX_DEPTH; depth++) {
+			getObserver().shout("Thinking... depth: " + depth);
+			horizonReached = false;
+
+			int alpha = -INFINITY;
+			int beta = INFINITY;
+			if (depth > 1 && Math.abs(score) < WIN_THRESHOLD) {
+				alpha = score - ASPIRATION_WINDOW;
+				beta = score + ASPIRATION_WINDOW;
+			}
+			int result;
+			while (true) {
+				result = searchRoot(rootMoves, alpha, beta);
+				if (timeUp) break;
+				/* outside the aspiration window the result is only a bound, search again with that side open */
+				if (result <= alpha) {
+					alpha = -INFINITY;
+				} else if (result >= beta) {
+					beta = INFINITY;
+				} else {
+					break;
+				}
+			}
+			if (timeUp) break;
+
+			score = result;
+			bestMove = rootBestMove;
+			deadlineActive = true;
+
+			/* search the best move first in the next iteration */
+			int index = rootMoves.indexOf(bestMove);
+			for (int i = index; i > 0; i--) rootMoves.swap(i, i - 1);
+
+			if (!horizonReached || Math.abs(score) > WIN_THRESHOLD) break;
+			if (System.currentTimeMillis() >= deadline) break;
+		}
+
+		deadlineActive = false;
+		long time = System.currentTimeMillis() - startTime;
+		gameTimeUsed += time;
+		bestScore = score;
+		shoutIfWinnerIsKnown();
+		getObserver().searchStats(this, new SearchStats(state, time, nodes, reachedDepth, table.getProbes() - probes, table.getHits() - hits,
+				table.getStores() - stores, table.getOverwrites() - overwrites, cutoffs, firstMoveCutoffs));
+		return bestMove;
+	}
+
+	/**
+	 * searches all root moves within (alpha, beta) and returns the best score, its move is left in rootBestMove
+	 *
+	 * @param rootMoves
+	 * @param alpha
+	 * @param beta
+	 * @return
+	 */
+	private int searchRoot(MoveList rootMoves, int alpha, int beta) {
+		final PylosGameState state = simulator.getState();
+		int best = -INFINITY;
+		rootBestMove = rootMoves.get(0);
+		for (int i = 0; i < rootMoves.size(); i++) {
+			int move = rootMoves.get(i);
+			checking(move);
+			simulator.doMove(move);
+			int score;
+			if (i == 0) {
+				score = pvs(alpha, beta);
+			} else {
+				score = pvs(alpha, alpha + 1);
+				if (score > alpha && score < beta) score = pvs(alpha, beta);
+			}
+			simulator.undoMove(move, state, PLAYER_COLOR);
+			if (timeUp) break;
+
+			if (score > best) {
+				best = score;
+				rootBestMove = move;
+			}
+			if (best > alpha) alpha = best;
+			if (alpha >= beta) break;
+		}
+		return best;
+	}
+
+	/**
+	 * returns the score of the current position, searched with window (alpha, beta)
+	 * a score outside the window is a bound: at most alpha when it is below, at least beta when it is above
+	 *
+	 * @param alpha
+	 * @param beta
+	 * @return
+	 */
+	private int pvs(int alpha, int beta) {
+
+		if (++timeCheckCounter % TIME_CHECK_INTERVAL == 0 && deadlineActive && System.currentTimeMillis() >= deadline) {
+			timeUp = true;
+		}
+		if (timeUp) {
+			/* unwind, the result of this iteration is discarded */
+			return 0;
+		}
+		nodes++;
+		if (branchDepth >= reachedDepth) reachedDepth = branchDepth + 1;
+
+		if (branchDepth == depth) {
+			horizonReached = true;
+			return evaluate();
+		}
+
+		final PylosPlayerColor color = simulator.getColor();
+		final PylosGameState state = simulator.getState();
+		if (state == PylosGameState.COMPLETED) {
+			return simulator.getWinner() == PLAYER_COLOR ? WIN - (branchDepth + 1) : -WIN + (branchDepth + 1);
+		}
+
+		final long key = board.getZobristKey(color, state);
+		final int remainingDepth = depth - branchDepth;
+		final boolean maximizing = color == PLAYER_COLOR;
+		final int alphaOrig = alpha;
+		final int betaOrig = beta;
+
+		long entry = table.probe(key);
+		if (entry != TranspositionTable.MISS && TranspositionTable.depth(entry) >= remainingDepth) {
+			int score = fromTableScore(TranspositionTable.score(entry));
+			/* the stored branch may have been cut off by the horizon as well */
+			horizonReached = true;
+			switch (TranspositionTable.bound(entry)) {
+				case TranspositionTable.EXACT:
+					return score;
+				case TranspositionTable.LOWER:
+					if (score >= beta) return score;
+					break;
+				case TranspositionTable.UPPER:
+					if (score <= alpha) return score;
+					break;
+			}
+		}
+
+		final int ply = branchDepth;
+		MoveList moves = moveOrdering.getMoveList(ply);
+		moves.generate(board, state, color);
+		if (state == PylosGameState.MOVE) {
+			moveOrdering.orderMoves(moves, ply, board, color, TranspositionTable.move(entry));
+		} else {
+			moveOrdering.tableMoveFirst(moves, TranspositionTable.move(entry));
+		}
+
+		int best = maximizing ? -INFINITY : INFINITY;
+		int bestMove = 0;
+		branchDepth++;
+		for (int i = 0; i < moves.size(); i++) {
+			int move = moves.get(i);
+			simulator.doMove(move);
+			int score;
+			if (i == 0) {
+				score = pvs(alpha, beta);
+			} else if (maximizing) {
+				score = pvs(alpha, alpha + 1);
+				if (score > alpha && score < beta) score = pvs(alpha, beta);
+			} else {
+				score = pvs(beta - 1, beta);
+				if (score > alpha && score < beta) score = pvs(alpha, beta);
+			}
+			simulator.undoMove(move, state, color);
+			assert simulator.getState() == state && simulator.getColor() == color : simulator.getState() + " " + simulator.getColor() + "\tshould be: " + state + " " + color;
+
+			if (maximizing) {
+				if (score > best) {
+					best = score;
+					bestMove = move;
+				}
+				if (best > alpha) alpha = best;
+			} else {
+				if (score < best) {
+					best = score;
+					bestMove = move;
+				}
+				if (best < beta) beta = best;
+			}
+			if (alpha >= beta) {
+				cutoffs++;
+				if (i == 0) firstMoveCutoffs++;
+				if (state == PylosGameState.MOVE) moveOrdering.addCutoff(move, ply, remainingDepth, color);
+				break;
+			}
+		}
+		branchDepth--;
+
+		if (timeUp) return 0;
+
+		int bound;
+		if (best <= alphaOrig) {
+			bound = TranspositionTable.UPPER;
+		} else if (best >= betaOrig) {
+			bound = TranspositionTable.LOWER;
+		} else {
+			bound = TranspositionTable.EXACT;
+		}
+		table.store(key, toTableScore(best), remainingDepth, bound, bestMove);
+		return best;
+	}
+
+	private int evaluate() {
+		return board.getReservesSize(PLAYER_COLOR) - board.getReservesSize(PLAYER_COLOR.other());
+	}
+
+	/* win scores depend on the branch depth, the table stores them relative to the current branch */
+	private int toTableScore(int score) {
+		if (score > WIN_THRESHOLD) return score + branchDepth;
+		if (score < -WIN_THRESHOLD) return score - branchDepth;
+		return score;
+	}
+
+	private int fromTableScore(int score) {
+		if (score > WIN_THRESHOLD) return score - branchDepth;
+		if (score < -WIN_THRESHOLD) return score + branchDepth;
+		return score;
+	}
+
+	/* helpers ---------------------------------------------------------------------------------------------------- */
+
+	private boolean isTimed() {
+		return MOVE_TIME_MILLIS > 0 || GAME_TIME_MILLIS > 0;
+	}
+
+	/* returns the time budget for this decision, the game budget is spread over the moves we still have to do */
+	private long getTimeBudget() {
+		long budget = Long.MAX_VALUE;
+		if (GAME_TIME_MILLIS > 0) {
+			int movesLeft = Math.max(1, board.getReservesSize(PLAYER_COLOR));
+			budget = Math.max(1, (GAME_TIME_MILLIS - gameTimeUsed) / movesLeft);
+		}
+		if (MOVE_TIME_MILLIS > 0) {
+			budget = Math.min(budget, MOVE_TIME_MILLIS);
+		}
+		return budget;
+	}
+
+	private void checking(int move) {
+		switch (PylosMove.kind(move)) {
+			case PylosMove.ADD:
+			case PylosMove.MOVE:
+				getObserver().checkingMoveSphere(PylosMove.getSphere(move, board), PylosMove.getTo(move, board));
+				break;
+			case PylosMove.REMOVE:
+				getObserver().checkingRemoveSphere(PylosMove.getSphere(move, board));
+				break;
+			default:
+				getObserver().checkingPass();
+				break;
+		}
+	}
+
+	private void shoutIfWinnerIsKnown() {
+		if (bestScore < -WIN_THRESHOLD) {
+			getObserver().shoutGood("If you do optimal moves\nYou can win in " + (bestScore + WIN) + " steps :)");
+		} else if (bestScore > WIN_THRESHOLD) {
+			getObserver().shoutBad("Even if you do optimal moves\nI'll win in " + (WIN - bestScore) + " steps :)");
+		} else {
+			String shoutString = "In the worst case,\nI'll have " + Math.abs(bestScore) + " spheres ";
+			shoutString += (bestScore < 0 ? "less" : "more") + " than you";
+			getObserver().shout(shoutString);
+		}
+	}
+
+}
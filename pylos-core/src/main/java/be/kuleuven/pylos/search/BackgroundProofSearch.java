@@ -0,0 +1,102 @@
+package be.kuleuven.pylos.search;
+
+import be.kuleuven.pylos.game.PylosBoard;
+import be.kuleuven.pylos.game.PylosGameState;
+import be.kuleuven.pylos.game.PylosMove;
+import be.kuleuven.pylos.game.PylosPlayerColor;
+import be.kuleuven.pylos.game.bits.PylosBitBoard;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the solves of a ProofNumberSearch on another thread for a player of one game, which follows the proof tree
+ * once a solve proves its win.
+ * <p>
+ * A solve of the position of a decision is left running over the next decisions until it is done: every later
+ * position of the game follows from its root, so its proof tree may hold them. Once it is done, a decision of which
+ * the position is not in a proof of a win of the player starts a solve of that position. All solves reuse the tree
+ * of one ProofNumberSearch, which grows up to maxNodes.
+ * <p>
+ * The methods are called by the player only, the solve itself runs on 'executor'.
+ */
+public class BackgroundProofSearch {
+
+	private final ProofNumberSearch search;
+	private final ExecutorService executor;
+	private Future<?> future;       // the last solve, null if there was none in this game
+
+	/**
+	 * @param maxNodes node cap of the proof tree (see ProofNumberSearch)
+	 * @param executor runs the solves
+	 */
+	public BackgroundProofSearch(int maxNodes, ExecutorService executor) {
+		this.search = new ProofNumberSearch(maxNodes);
+		this.executor = executor;
+	}
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * returns the action (see PylosMove.action) which keeps the forced win of 'color' if the last solve is done and
+	 * the position is in its proof of a win of 'color', PylosMove.NONE otherwise
+	 *
+	 * @param board
+	 * @param state
+	 * @param color
+	 * @return
+	 */
+	public int getWinningMove(PylosBoard board, PylosGameState state, PylosPlayerColor color) {
+		if (future == null || !future.isDone()) return PylosMove.NONE;
+		/* the result of the solve is seen by this thread once it joined it */
+		join();
+		return search.getWinningMove(board, state, color);
+	}
+
+	/**
+	 * starts a solve of 'color' to play in 'state' on 'board' unless a solve of an earlier position is still running
+	 *
+	 * @param board
+	 * @param state
+	 * @param color
+	 */
+	public void start(PylosBoard board, PylosGameState state, PylosPlayerColor color) {
+		if (isRunning()) return;
+		final PylosBoard copy = PylosBitBoard.fromBoard(board).toBoard();
+		future = executor.submit(() -> search.solve(copy, state, color));
+	}
+
+	/**
+	 * returns true if a solve is running
+	 *
+	 * @return
+	 */
+	public boolean isRunning() {
+		return future != null && !future.isDone();
+	}
+
+	/**
+	 * stops a running solve and forgets the last one, for a new game
+	 */
+	public void stop() {
+		if (future == null) return;
+		search.stop();
+		join();
+		search.resume();
+		future = null;
+	}
+
+	/* internals -------------------------------------------------------------------------------------------------- */
+
+	private void join() {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Proof-number search failed", e.getCause());
+		}
+	}
+
+}
@@ -0,0 +1,180 @@
+package be.kuleuven.pylos.search;
+
+import be.kuleuven.pylos.game.PylosPlayerColor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * TranspositionTable in a memory-mapped file, for offline searches which need a table larger than the heap. The
+ * operating system pages the slots in and out, the heap only holds the chunk buffers.
+ * <p>
+ * A slot is 16 bytes, key ^ data and data, so a bucket is 64 bytes. Every state of the file is a valid table: a slot
+ * of which only one word reached the disk reads as a miss. checkpoint writes the slots and the generation to the
+ * disk and may be called while threads search, e.g. from a timer, so a solve that is stopped afterwards resumes
+ * with all entries up to the checkpoint when the file is opened again.
+ * <p>
+ * The color the scores are for is kept in the file as well, so a player of the other color which opens the table
+ * knows it has to clear it.
+ * <p>
+ * file layout: MAGIC (long), number of slots (long), generation (long), color (long: 0 none, 1 + ordinal), zeros up
+ * to HEADER_BYTES, the slots
+ */
+public class MappedTranspositionTable extends TranspositionTable implements Closeable {
+
+	private static final long MAGIC = 0x50594C4F53545442L;     // "PYLOSTTB"
+	private static final int HEADER_BYTES = 4096;               // the slots start on a page
+	private static final int GENERATION_OFFSET = 2 * Long.BYTES;
+	private static final int COLOR_OFFSET = 3 * Long.BYTES;
+	private static final int CHUNK_BITS = 30;                   // a mapped buffer holds at most 2 GB
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+	private static final VarHandle WORD = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer header;
+	private final MappedByteBuffer[] chunks;
+
+	private MappedTranspositionTable(long entries, RandomAccessFile file) throws IOException {
+		super(entries);
+		this.file = file;
+		FileChannel channel = file.getChannel();
+		long size = entries * ENTRY_BYTES;
+		header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+		chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+		for (int c = 0; c < chunks.length; c++) {
+			long position = (long) c << CHUNK_BITS;
+			chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + position, Math.min(CHUNK_MASK + 1, size - position));
+		}
+	}
+
+	/**
+	 * creates an empty table of at most 'sizeInMb' in the file at 'path'
+	 *
+	 * @param path
+	 * @param sizeInMb
+	 * @return
+	 * @throws IOException
+	 */
+	public static MappedTranspositionTable create(Path path, long sizeInMb) throws IOException {
+		if (sizeInMb <= 0) throw new IllegalArgumentException("Size should be positive: " + sizeInMb + " MB");
+		/* largest power of two number of entries which fits in the given size */
+		long entries = Long.highestOneBit(sizeInMb * 1024 * 1024 / ENTRY_BYTES);
+		RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+		try {
+			/* a new file reads as zeros, which are empty slots */
+			file.setLength(0);
+			file.setLength(HEADER_BYTES + entries * ENTRY_BYTES);
+			file.writeLong(MAGIC);
+			file.writeLong(entries);
+			file.writeLong(0);
+			return new MappedTranspositionTable(entries, file);
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * maps the table in the file at 'path', with the entries, the generation and the color of its last checkpoint
+	 *
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static MappedTranspositionTable open(Path path) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+		try {
+			if (file.length() < HEADER_BYTES || file.readLong() != MAGIC) throw new IOException("Not a transposition table: " + path);
+			long entries = file.readLong();
+			int generation = (int) file.readLong();
+			long color = file.readLong();
+			if (entries < BUCKET_SIZE || Long.bitCount(entries) != 1 || file.length() != HEADER_BYTES + entries * ENTRY_BYTES) {
+				throw new IOException("Table size is " + file.length() + " bytes for " + entries + " entries");
+			}
+			if (color < 0 || color > PylosPlayerColor.values().length) throw new IOException("Invalid table color: " + color);
+			MappedTranspositionTable table = new MappedTranspositionTable(entries, file);
+			table.setGeneration(generation);
+			table.setColor(color == 0 ? null : PylosPlayerColor.values()[(int) color - 1]);
+			return table;
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * writes the slots and the generation to the file
+	 */
+	public void checkpoint() {
+		for (MappedByteBuffer chunk : chunks) chunk.force();
+		header.putLong(GENERATION_OFFSET, getGeneration());
+		header.force();
+	}
+
+	/**
+	 * sets the color and writes it to the file at once: a search clears the table before it changes the color, so
+	 * the file never holds entries for the other color under this one
+	 *
+	 * @param color
+	 */
+	@Override
+	public void setColor(PylosPlayerColor color) {
+		super.setColor(color);
+		header.putLong(COLOR_OFFSET, color == null ? 0 : 1 + color.ordinal());
+		header.force();
+	}
+
+	@Override
+	public void clear() {
+		byte[] zeros = new byte[1 << 20];
+		for (MappedByteBuffer chunk : chunks) {
+			ByteBuffer slots = chunk.duplicate();
+			while (slots.hasRemaining()) slots.put(zeros, 0, Math.min(zeros.length, slots.remaining()));
+		}
+	}
+
+	/**
+	 * checkpoints and closes the file
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	public void close() throws IOException {
+		checkpoint();
+		file.close();
+	}
+
+	/* slots ------------------------------------------------------------------------------------------------------ */
+
+	@Override
+	protected long getSlotKey(long slot) {
+		long offset = slot * ENTRY_BYTES;
+		return (long) WORD.getOpaque(chunks[(int) (offset >>> CHUNK_BITS)], (int) (offset & CHUNK_MASK));
+	}
+
+	@Override
+	protected long getSlotData(long slot) {
+		long offset = slot * ENTRY_BYTES + Long.BYTES;
+		return (long) WORD.getOpaque(chunks[(int) (offset >>> CHUNK_BITS)], (int) (offset & CHUNK_MASK));
+	}
+
+	@Override
+	protected void setSlot(long slot, long keyXorData, long data) {
+		long offset = slot * ENTRY_BYTES;
+		MappedByteBuffer chunk = chunks[(int) (offset >>> CHUNK_BITS)];
+		int position = (int) (offset & CHUNK_MASK);
+		WORD.setOpaque(chunk, position, keyXorData);
+		WORD.setOpaque(chunk, position + Long.BYTES, data);
+	}
+
+}
@@ -0,0 +1,347 @@
+package be.kuleuven.pylos.search;
+
+import be.kuleuven.pylos.game.MoveList;
+import be.kuleuven.pylos.game.PylosBoard;
+import be.kuleuven.pylos.game.PylosGameSimulator;
+import be.kuleuven.pylos.game.PylosGameState;
+import be.kuleuven.pylos.game.PylosMove;
+import be.kuleuven.pylos.game.PylosPlayerColor;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Proof-number search (Allis, 1994): decides whether the side to move in a position can force a win, without a
+ * depth limit or an evaluation function.
+ * <p>
+ * The search grows a tree of which every node keeps a proof number, the number of leaves which at least have to be
+ * proven to prove a win of the attacker (the side to move at the root), and a disproof number, the same for a win
+ * of the defender. It expands the most-proving leaf: from the root the child with the smallest proof number where
+ * the attacker moves (OR node) and the one with the smallest disproof number where the defender moves (AND node).
+ * The search follows the moves which are hard to answer, so a forced win in a tactical position is found with far
+ * fewer nodes than a full-width search to the same depth.
+ * <p>
+ * The tree is kept in parallel arrays of NODE_BYTES bytes per node, grown up to maxNodes. The positions are those
+ * of PylosGameSimulator, so a game loop is no draw: a proof may not hold in a PylosGame which ends in a draw on the
+ * way (PylosGame.MAX_BOARD_STATE_COUNT).
+ */
+public class ProofNumberSearch {
+
+	public enum Result {
+		PROVEN,         // the side to move wins
+		DISPROVEN,      // the side to move loses
+		UNKNOWN         // node cap reached or stopped
+	}
+
+	/** memory of one node */
+	public static final int NODE_BYTES = 6 * Integer.BYTES + 2;
+
+	private static final int INFINITY = 1 << 30;
+	private static final int INITIAL_CAPACITY = 1 << 12;
+	private static final PylosGameState[] STATES = PylosGameState.values();
+	private static final PylosPlayerColor[] COLORS = PylosPlayerColor.values();
+
+	private final int maxNodes;
+
+	/* the tree, the children of a node are consecutive */
+	private int[] proof;
+	private int[] disproof;
+	private int[] parent;
+	private int[] firstChild;
+	private int[] childCount;
+	private int[] move;             // PylosMove from the parent, NONE for the root
+	private byte[] state;           // PylosGameState ordinal
+	private byte[] color;           // PylosPlayerColor ordinal, the side to move
+	private int size;
+
+	private PylosBoard board;       // in the root position between searches
+	private PylosGameSimulator simulator;
+	private PylosPlayerColor attacker;
+	private final MoveList moves = new MoveList();
+	private volatile boolean stopped;
+
+	/**
+	 * @param maxNodes node cap, the tree takes at most maxNodes * NODE_BYTES bytes
+	 */
+	public ProofNumberSearch(int maxNodes) {
+		if (maxNodes < 1) throw new IllegalArgumentException("Specify at least one node");
+		this.maxNodes = maxNodes;
+	}
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * searches whether 'color' can force a win in 'state' on 'board', until the position is solved, the node cap is
+	 * reached or stop is called; the board is kept (and left in the same position) for getWinningMove and
+	 * exportProofTree, so it should not be changed afterwards
+	 *
+	 * @param board
+	 * @param state MOVE, REMOVE_FIRST or REMOVE_SECOND
+	 * @param color
+	 * @return
+	 */
+	public Result solve(PylosBoard board, PylosGameState state, PylosPlayerColor color) {
+		this.board = board;
+		this.simulator = new PylosGameSimulator(state, color, board);
+		this.attacker = color;
+		if (proof == null) allocate(Math.min(INITIAL_CAPACITY, maxNodes));
+		size = 0;
+		int root = addNode(-1, PylosMove.NONE, state, color);
+		proof[root] = 1;
+		disproof[root] = 1;
+
+		int current = root;
+		while (proof[root] != 0 && disproof[root] != 0 && !stopped) {
+			int mostProving = selectMostProving(current);
+			if (!expand(mostProving)) {
+				current = mostProving;
+				break;
+			}
+			current = updateAncestors(mostProving);
+		}
+		/* back to the root position */
+		for (; current != root; current = parent[current]) undo(current);
+		return getResult();
+	}
+
+	/**
+	 * makes a running solve return UNKNOWN as soon as possible, may be called from another thread; the search stays
+	 * stopped until resume, a later solve returns UNKNOWN at once
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * lets a stopped search solve again, not while a solve runs
+	 */
+	public void resume() {
+		stopped = false;
+	}
+
+	/**
+	 * returns the result of the last solve
+	 *
+	 * @return
+	 */
+	public Result getResult() {
+		if (size == 0) return Result.UNKNOWN;
+		return proof[0] == 0 ? Result.PROVEN : disproof[0] == 0 ? Result.DISPROVEN : Result.UNKNOWN;
+	}
+
+	/**
+	 * returns the number of nodes of the tree of the last solve
+	 *
+	 * @return
+	 */
+	public int getNodes() {
+		return size;
+	}
+
+	/**
+	 * returns the action (see PylosMove.action) which keeps the forced win of 'color' if the position is in the proof
+	 * tree of the last solve and 'color' is the winner of it, PylosMove.NONE otherwise
+	 *
+	 * @param board
+	 * @param state
+	 * @param color
+	 * @return
+	 */
+	public int getWinningMove(PylosBoard board, PylosGameState state, PylosPlayerColor color) {
+		Result result = getResult();
+		if (result == Result.UNKNOWN || (result == Result.PROVEN) != (color == attacker)) return PylosMove.NONE;
+		return findWinningMove(0, board.toLong(), state, color);
+	}
+
+	/**
+	 * writes the proof tree of the last solve (of a disproven root the tree which proves the win of the defender):
+	 * one line per action, indented by its depth, all replies of the loser and one action of the winner
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	public void exportProofTree(Appendable out) throws IOException {
+		Result result = getResult();
+		out.append("# ").append(String.valueOf(attacker)).append(" to move in ").append(String.valueOf(STATES[state[0]]))
+				.append(": ").append(String.valueOf(result)).append(", ").append(String.valueOf(size)).append(" nodes\n");
+		if (result != Result.UNKNOWN) exportNode(out, 0, 0);
+	}
+
+	/* search ----------------------------------------------------------------------------------------------------- */
+
+	/* walks down from 'node' to the most-proving leaf, the board follows */
+	private int selectMostProving(int node) {
+		while (childCount[node] > 0) {
+			int[] numbers = isOr(node) ? proof : disproof;
+			int best = firstChild[node];
+			for (int child = best + 1; child < firstChild[node] + childCount[node]; child++) {
+				if (numbers[child] < numbers[best]) best = child;
+			}
+			simulator.doMove(move[best]);
+			node = best;
+		}
+		return node;
+	}
+
+	/* adds the children of the leaf 'node', the board is in its position; returns false if the node cap is reached */
+	private boolean expand(int node) {
+		int count = moves.generate(board, STATES[state[node]], COLORS[color[node]]);
+		if (count == 0) {
+			/* no action: the side to move loses */
+			setSolved(node, COLORS[color[node]].other());
+			return true;
+		}
+		if (size + count > maxNodes) return false;
+		ensureCapacity(size + count);
+
+		firstChild[node] = size;
+		childCount[node] = count;
+		for (int i = 0; i < count; i++) {
+			int m = moves.get(i);
+			simulator.doMove(m);
+			int child = addNode(node, m, simulator.getState(), simulator.getColor());
+			if (simulator.getState() == PylosGameState.COMPLETED) {
+				setSolved(child, simulator.getWinner());
+			} else {
+				proof[child] = 1;
+				disproof[child] = 1;
+			}
+			simulator.undoMove(m, STATES[state[node]], COLORS[color[node]]);
+		}
+		return true;
+	}
+
+	/* updates the numbers from 'node' up until they no longer change, returns the node where the board is left */
+	private int updateAncestors(int node) {
+		while (true) {
+			int oldProof = proof[node];
+			int oldDisproof = disproof[node];
+			if (childCount[node] > 0) setNumbers(node);
+			if (node == 0 || proof[node] == oldProof && disproof[node] == oldDisproof) return node;
+			undo(node);
+			node = parent[node];
+		}
+	}
+
+	private void setNumbers(int node) {
+		int[] min = isOr(node) ? proof : disproof;
+		int[] sum = isOr(node) ? disproof : proof;
+		int minValue = INFINITY;
+		long sumValue = 0;
+		for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+			minValue = Math.min(minValue, min[child]);
+			sumValue += sum[child];
+		}
+		min[node] = minValue;
+		sum[node] = (int) Math.min(INFINITY, sumValue);
+	}
+
+	private void setSolved(int node, PylosPlayerColor winner) {
+		proof[node] = winner == attacker ? 0 : INFINITY;
+		disproof[node] = winner == attacker ? INFINITY : 0;
+	}
+
+	/* the board goes from the position of 'node' to the one of its parent */
+	private void undo(int node) {
+		int p = parent[node];
+		simulator.undoMove(move[node], STATES[state[p]], COLORS[color[p]]);
+	}
+
+	private boolean isOr(int node) {
+		return COLORS[color[node]] == attacker;
+	}
+
+	/* proof tree ------------------------------------------------------------------------------------------------- */
+
+	/* the winner of the root moves in 'node' */
+	private boolean isWinnerNode(int node) {
+		return isOr(node) == (proof[0] == 0);
+	}
+
+	/* returns the first child which keeps the win of the winner of the root, -1 if there is none */
+	private int solutionChild(int node) {
+		int[] numbers = proof[0] == 0 ? proof : disproof;
+		for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+			if (numbers[child] == 0) return child;
+		}
+		return -1;
+	}
+
+	/* depth-first over the proof tree below 'node', the board follows */
+	private int findWinningMove(int node, long position, PylosGameState targetState, PylosPlayerColor targetColor) {
+		if (childCount[node] == 0) return PylosMove.NONE;
+		if (isWinnerNode(node)) {
+			int child = solutionChild(node);
+			if (STATES[state[node]] == targetState && COLORS[color[node]] == targetColor && board.toLong() == position) {
+				return PylosMove.action(move[child]);
+			}
+			return findWinningMoveBelow(child, position, targetState, targetColor);
+		}
+		for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+			int found = findWinningMoveBelow(child, position, targetState, targetColor);
+			if (found != PylosMove.NONE) return found;
+		}
+		return PylosMove.NONE;
+	}
+
+	private int findWinningMoveBelow(int child, long position, PylosGameState targetState, PylosPlayerColor targetColor) {
+		simulator.doMove(move[child]);
+		int found = findWinningMove(child, position, targetState, targetColor);
+		undo(child);
+		return found;
+	}
+
+	private void exportNode(Appendable out, int node, int depth) throws IOException {
+		if (childCount[node] == 0) return;
+		if (isWinnerNode(node)) {
+			exportChild(out, solutionChild(node), depth);
+		} else {
+			for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) exportChild(out, child, depth);
+		}
+	}
+
+	private void exportChild(Appendable out, int child, int depth) throws IOException {
+		for (int i = 0; i < depth; i++) out.append('\t');
+		out.append(String.valueOf(COLORS[color[parent[child]]])).append(' ').append(PylosMove.toString(move[child])).append('\n');
+		exportNode(out, child, depth + 1);
+	}
+
+	/* nodes ------------------------------------------------------------------------------------------------------ */
+
+	private int addNode(int parentNode, int m, PylosGameState s, PylosPlayerColor c) {
+		int node = size++;
+		parent[node] = parentNode;
+		move[node] = m;
+		state[node] = (byte) s.ordinal();
+		color[node] = (byte) c.ordinal();
+		firstChild[node] = 0;
+		childCount[node] = 0;
+		return node;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= proof.length) return;
+		int newCapacity = proof.length;
+		while (newCapacity < capacity) newCapacity = (int) Math.min(maxNodes, 2L * newCapacity);
+		proof = Arrays.copyOf(proof, newCapacity);
+		disproof = Arrays.copyOf(disproof, newCapacity);
+		parent = Arrays.copyOf(parent, newCapacity);
+		firstChild = Arrays.copyOf(firstChild, newCapacity);
+		childCount = Arrays.copyOf(childCount, newCapacity);
+		move = Arrays.copyOf(move, newCapacity);
+		state = Arrays.copyOf(state, newCapacity);
+		color = Arrays.copyOf(color, newCapacity);
+	}
+
+	private void allocate(int capacity) {
+		proof = new int[capacity];
+		disproof = new int[capacity];
+		parent = new int[capacity];
+		firstChild = new int[capacity];
+		childCount = new int[capacity];
+		move = new int[capacity];
+		state = new byte[capacity];
+		color = new byte[capacity];
+	}
+
+}
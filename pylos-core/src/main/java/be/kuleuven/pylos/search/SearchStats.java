@@ -0,0 +1,170 @@
+package be.kuleuven.pylos.search;
+
+import be.kuleuven.pylos.game.PylosGameState;
+
+/**
+ * Counters of the searches of a player: one decision, published through PylosPlayerObserver.searchStats, or the
+ * sum of many decisions (see add).
+ */
+public class SearchStats {
+
+	/* the game states a player decides in */
+	private static final PylosGameState[] PHASES = {PylosGameState.MOVE, PylosGameState.REMOVE_FIRST, PylosGameState.REMOVE_SECOND};
+
+	private int decisions;
+	private long nodes;
+	private int maxDepth;
+	private long tableProbes;
+	private long tableHits;
+	private long tableStores;
+	private long tableOverwrites;
+	private long cutoffs;
+	private long firstMoveCutoffs;
+	private final long[] phaseMillis = new long[PHASES.length];    // [game state]
+
+	/**
+	 * empty counters, to add decisions to
+	 */
+	public SearchStats() {
+	}
+
+	/**
+	 * counters of one decision
+	 *
+	 * @param phase            game state of the decision
+	 * @param timeMillis
+	 * @param nodes            branches visited
+	 * @param maxDepth         deepest number of actions searched below the root
+	 * @param tableProbes
+	 * @param tableHits        probes which found an entry of the position
+	 * @param tableStores
+	 * @param tableOverwrites  stores which replaced an entry of another position
+	 * @param cutoffs          branches pruned
+	 * @param firstMoveCutoffs branches pruned by their first move
+	 */
+	public SearchStats(PylosGameState phase, long timeMillis, long nodes, int maxDepth, long tableProbes, long tableHits, long tableStores,
+					   long tableOverwrites, long cutoffs, long firstMoveCutoffs) {
+		this.decisions = 1;
+		this.phaseMillis[phaseIndex(phase)] = timeMillis;
+		this.nodes = nodes;
+		this.maxDepth = maxDepth;
+		this.tableProbes = tableProbes;
+		this.tableHits = tableHits;
+		this.tableStores = tableStores;
+		this.tableOverwrites = tableOverwrites;
+		this.cutoffs = cutoffs;
+		this.firstMoveCutoffs = firstMoveCutoffs;
+	}
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * adds the counters of 'other', the max depth is the deepest of both
+	 *
+	 * @param other
+	 */
+	public void add(SearchStats other) {
+		decisions += other.decisions;
+		nodes += other.nodes;
+		maxDepth = Math.max(maxDepth, other.maxDepth);
+		tableProbes += other.tableProbes;
+		tableHits += other.tableHits;
+		tableStores += other.tableStores;
+		tableOverwrites += other.tableOverwrites;
+		cutoffs += other.cutoffs;
+		firstMoveCutoffs += other.firstMoveCutoffs;
+		for (int i = 0; i < phaseMillis.length; i++) phaseMillis[i] += other.phaseMillis[i];
+	}
+
+	public int getDecisions() {
+		return decisions;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * returns the number of nodes per second of search time
+	 *
+	 * @return
+	 */
+	public double getNodesPerSecond() {
+		return nodes * 1000.0 / Math.max(1, getTimeMillis());
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public long getTableProbes() {
+		return tableProbes;
+	}
+
+	public long getTableHits() {
+		return tableHits;
+	}
+
+	public double getTableHitRate() {
+		return tableProbes == 0 ? 0 : (double) tableHits / tableProbes;
+	}
+
+	public long getTableStores() {
+		return tableStores;
+	}
+
+	public long getTableOverwrites() {
+		return tableOverwrites;
+	}
+
+	public long getCutoffs() {
+		return cutoffs;
+	}
+
+	public long getFirstMoveCutoffs() {
+		return firstMoveCutoffs;
+	}
+
+	/**
+	 * returns the fraction of the cutoffs which were caused by the first move of the branch
+	 *
+	 * @return
+	 */
+	public double getFirstMoveCutoffRate() {
+		return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+	}
+
+	/**
+	 * returns the search time of the decisions in game state 'phase'
+	 *
+	 * @param phase MOVE, REMOVE_FIRST or REMOVE_SECOND
+	 * @return
+	 */
+	public long getTimeMillis(PylosGameState phase) {
+		return phaseMillis[phaseIndex(phase)];
+	}
+
+	public long getTimeMillis() {
+		long total = 0;
+		for (long millis : phaseMillis) total += millis;
+		return total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d decisions, %d nodes (%.0f nodes/s), max depth %d, table %d probes (%.1f%% hits), %d stores (%d overwrites), "
+						+ "%d cutoffs (%.1f%% first move), time move %d ms, remove %d ms, remove or pass %d ms",
+				decisions, nodes, getNodesPerSecond(), maxDepth, tableProbes, 100 * getTableHitRate(), tableStores, tableOverwrites,
+				cutoffs, 100 * getFirstMoveCutoffRate(), phaseMillis[0], phaseMillis[1], phaseMillis[2]);
+	}
+
+	/* internals -------------------------------------------------------------------------------------------------- */
+
+	private static int phaseIndex(PylosGameState phase) {
+		for (int i = 0; i < PHASES.length; i++) {
+			if (PHASES[i] == phase) return i;
+		}
+		throw new IllegalArgumentException("Not a decision state: " + phase);
+	}
+
+}
@@ -0,0 +1,298 @@
+package be.kuleuven.pylos.search;
+
+import be.kuleuven.pylos.game.PylosPlayerColor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size transposition table on two preallocated long arrays, one for the keys and one for the packed data.
+ * <p>
+ * A key hashes to a bucket of BUCKET_SIZE consecutive slots. A store replaces the entry of the same key when it
+ * is searched at least as deep, otherwise an empty slot, an entry of an earlier search or the shallowest entry of
+ * the bucket (depth-preferred).
+ * <p>
+ * The table can be kept over many searches: newSearch starts a new generation, the entries of earlier generations
+ * can still be found but are the first to be replaced. A probe which finds one moves it to the current generation.
+ * The scores of a search are for one color, getColor tells a search which keeps the table for which one.
+ * <p>
+ * data layout (an empty slot has data 0):
+ * <pre>
+ * bits  0-23	best move (caller defined, 0 = none)
+ * bits 24-39	score (signed)
+ * bits 40-47	depth
+ * bits 48-49	bound: EXACT, LOWER or UPPER
+ * bits 50-57	generation
+ * </pre>
+ * The table can be shared by search threads without locking: a slot keeps key ^ data instead of the key, so an
+ * entry of which the two words were written by different threads no longer matches its key and reads as a miss.
+ * The words are read and written with opaque accesses, so a word is never torn (a plain long may be, JLS 17.7) and
+ * a read is never cached or repeated by the compiler; the XOR check needs no ordering between the two words.
+ * Only newSearch and clear need the other threads to be stopped, a thread started afterwards sees their effect.
+ * <p>
+ * The slots are kept in two arrays on the heap, a subclass may keep them elsewhere (see MappedTranspositionTable).
+ */
+public class TranspositionTable {
+
+	public static final int EXACT = 1;
+	public static final int LOWER = 2;
+	public static final int UPPER = 3;
+
+	public static final long MISS = 0;
+	public static final int MAX_MOVE = (1 << 24) - 1;
+	public static final int MAX_SCORE = Short.MAX_VALUE;
+	public static final int MAX_DEPTH = 255;
+
+	static final int BUCKET_SIZE = 4;
+	static final int ENTRY_BYTES = 2 * Long.BYTES;
+	private static final int GENERATION_SHIFT = 50;
+	private static final long GENERATION_MASK = 0xFF;
+	private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(long[].class);
+
+	private final long[] keys;    // key ^ data, null if a subclass keeps the slots
+	private final long[] data;
+	private final long mask;
+	private int generation;
+	private PylosPlayerColor color;    // the scores are for this color, null while unknown
+
+	/* counters since the table was created, striped so the threads do not contend on them */
+	private final LongAdder probes = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder stores = new LongAdder();
+	private final LongAdder overwrites = new LongAdder();
+
+	public TranspositionTable(int sizeInMb) {
+		if (sizeInMb <= 0) throw new IllegalArgumentException("Size should be positive: " + sizeInMb + " MB");
+		/* largest power of two number of entries which fits in the given size */
+		long entries = Long.highestOneBit((long) sizeInMb * 1024 * 1024 / ENTRY_BYTES);
+		if (entries > (1 << 30)) throw new IllegalArgumentException("Size is too large: " + sizeInMb + " MB");
+		keys = new long[(int) entries];
+		data = new long[(int) entries];
+		mask = entries - 1;
+	}
+
+	/**
+	 * table of which a subclass keeps the slots, it overrides the slot accessors and clear
+	 *
+	 * @param entries number of slots, a power of two
+	 */
+	protected TranspositionTable(long entries) {
+		if (entries < BUCKET_SIZE || Long.bitCount(entries) != 1) throw new IllegalArgumentException("Entries should be a power of two: " + entries);
+		keys = null;
+		data = null;
+		mask = entries - 1;
+	}
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * returns the packed data stored for 'key', or MISS
+	 *
+	 * @param key
+	 * @return
+	 */
+	public long probe(long key) {
+		probes.increment();
+		long bucket = bucket(key);
+		for (long i = bucket; i < bucket + BUCKET_SIZE; i++) {
+			long entry = getSlotData(i);
+			if (entry != MISS && (getSlotKey(i) ^ entry) == key) {
+				hits.increment();
+				if (generation(entry) != generation) {
+					/* still in use, so no longer stale */
+					entry = entry & ~(GENERATION_MASK << GENERATION_SHIFT) | (long) generation << GENERATION_SHIFT;
+					setSlot(i, key ^ entry, entry);
+				}
+				return entry;
+			}
+		}
+		return MISS;
+	}
+
+	/**
+	 * stores an entry for 'key'
+	 *
+	 * @param key
+	 * @param score
+	 * @param depth remaining depth the score was searched with
+	 * @param bound EXACT, LOWER or UPPER
+	 * @param move  best move, 0 if unknown
+	 */
+	public void store(long key, int score, int depth, int bound, int move) {
+		long bucket = bucket(key);
+		long replace = -1;
+		long replaceEntry = MISS;
+		for (long i = bucket; i < bucket + BUCKET_SIZE; i++) {
+			long entry = getSlotData(i);
+			if (entry != MISS && (getSlotKey(i) ^ entry) == key) {
+				/* same position: keep the deeper result */
+				if (depth < depth(entry)) return;
+				if (move == 0) move = move(entry);
+				replace = i;
+				break;
+			}
+			if (entry == MISS) {
+				if (replace == -1 || replaceEntry != MISS) {
+					replace = i;
+					replaceEntry = entry;
+				}
+			} else if (replace == -1 || (replaceEntry != MISS && replaceValue(entry) < replaceValue(replaceEntry))) {
+				replace = i;
+				replaceEntry = entry;
+			}
+		}
+		stores.increment();
+		long old = getSlotData(replace);
+		if (old != MISS && (getSlotKey(replace) ^ old) != key) overwrites.increment();
+		long entry = pack(score, depth, bound, move, generation);
+		setSlot(replace, key ^ entry, entry);
+	}
+
+	/**
+	 * starts a new generation, the entries stored so far are replaced before the entries of the new one
+	 */
+	public void newSearch() {
+		generation = (int) ((generation + 1) & GENERATION_MASK);
+	}
+
+	/**
+	 * removes all entries
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(data, MISS);
+	}
+
+	/**
+	 * returns the number of entries
+	 *
+	 * @return
+	 */
+	public long getCapacity() {
+		return mask + 1;
+	}
+
+	public int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * continues the generations of a table stored earlier
+	 *
+	 * @param generation
+	 */
+	protected void setGeneration(int generation) {
+		this.generation = (int) (generation & GENERATION_MASK);
+	}
+
+	/**
+	 * returns the color the scores in the table are for, null if no search set it
+	 *
+	 * @return
+	 */
+	public PylosPlayerColor getColor() {
+		return color;
+	}
+
+	public void setColor(PylosPlayerColor color) {
+		this.color = color;
+	}
+
+	public long getProbes() {
+		return probes.sum();
+	}
+
+	/**
+	 * returns the number of probes which found an entry
+	 *
+	 * @return
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getStores() {
+		return stores.sum();
+	}
+
+	/**
+	 * returns the number of stores which replaced an entry of another key
+	 *
+	 * @return
+	 */
+	public long getOverwrites() {
+		return overwrites.sum();
+	}
+
+	/* slots, opaque accesses (see above) ------------------------------------------------------------------------- */
+
+	/**
+	 * returns key ^ data of 'slot'
+	 *
+	 * @param slot
+	 * @return
+	 */
+	protected long getSlotKey(long slot) {
+		return (long) SLOT.getOpaque(keys, (int) slot);
+	}
+
+	protected long getSlotData(long slot) {
+		return (long) SLOT.getOpaque(data, (int) slot);
+	}
+
+	/**
+	 * writes a slot, the key word first
+	 *
+	 * @param slot
+	 * @param keyXorData
+	 * @param data
+	 */
+	protected void setSlot(long slot, long keyXorData, long data) {
+		SLOT.setOpaque(keys, (int) slot, keyXorData);
+		SLOT.setOpaque(this.data, (int) slot, data);
+	}
+
+	/* data accessors --------------------------------------------------------------------------------------------- */
+
+	public static int move(long data) {
+		return (int) (data & MAX_MOVE);
+	}
+
+	public static int score(long data) {
+		return (short) (data >>> 24);
+	}
+
+	public static int depth(long data) {
+		return (int) ((data >>> 40) & 0xFF);
+	}
+
+	public static int bound(long data) {
+		return (int) ((data >>> 48) & 0b11);
+	}
+
+	public static int generation(long data) {
+		return (int) ((data >>> GENERATION_SHIFT) & GENERATION_MASK);
+	}
+
+	/* internals -------------------------------------------------------------------------------------------------- */
+
+	private long bucket(long key) {
+		return (key ^ (key >>> 32)) & mask & -BUCKET_SIZE;
+	}
+
+	/* the entry with the lowest value is replaced: entries of earlier generations first, then the shallowest */
+	private int replaceValue(long entry) {
+		return depth(entry) + (generation(entry) == generation ? MAX_DEPTH + 1 : 0);
+	}
+
+	private static long pack(int score, int depth, int bound, int move, int generation) {
+		assert score >= Short.MIN_VALUE && score <= MAX_SCORE : "Score out of range: " + score;
+		assert depth >= 0 && depth <= MAX_DEPTH : "Depth out of range: " + depth;
+		assert bound == EXACT || bound == LOWER || bound == UPPER : "Unknown bound: " + bound;
+		assert move >= 0 && move <= MAX_MOVE : "Move out of range: " + move;
+		return move | ((score & 0xFFFFL) << 24) | ((long) depth << 40) | ((long) bound << 48) | ((long) generation << GENERATION_SHIFT);
+	}
+
+}
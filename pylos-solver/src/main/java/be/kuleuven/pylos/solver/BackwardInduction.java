@@ -0,0 +1,116 @@
+package be.kuleuven.pylos.solver;
+
+import be.kuleuven.pylos.endgame.Actions;
+import be.kuleuven.pylos.endgame.PositionIndex;
+import be.kuleuven.pylos.game.PylosGameState;
+import be.kuleuven.pylos.game.PylosPlayerColor;
+import be.kuleuven.pylos.game.bits.PylosBitBoard;
+import be.kuleuven.pylos.oracle.Oracle;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Solves the REACHED positions of an Oracle by backward induction, a position at a time with Actions.solve.
+ * <p>
+ * Pass d solves the positions which are won or lost in exactly d actions: a position is won if an action leads to
+ * a position lost for the other player (or won for the same player) in d - 1 actions, and lost if all its actions
+ * lead to such positions and the longest in d - 1. A pass only reads the results of the previous passes: the
+ * positions it solves itself are one action further, so the threads of a pass need no ordering.
+ * <p>
+ * These are the iterated forward value passes of EndgameGenerator, not a retrograde analysis: every pass scans all
+ * REACHED positions which are not solved yet, so the cost is O(N * D) for N reached positions and D passes.
+ * <p>
+ * The exact passes stop at getMaxDistance() of the oracle, which the codes can not hold: the solver then copies the
+ * codes to an oracle with more value bits and continues there (see SolverMain). Only if that is not possible the
+ * capped passes follow: a pass solves a position as soon as an action wins or all actions lose, whatever their
+ * distance, and stores getMaxDistance(). The induction stops after a pass which solves nothing. The positions still
+ * REACHED are draws: neither player can force the end of the game from them, as every action of a position which is
+ * not won leads to a position which is not lost.
+ */
+class BackwardInduction {
+
+	private final BlockSet reachedBlocks;
+	private final int threads;
+
+	private final LongAdder wins = new LongAdder();
+	private final LongAdder losses = new LongAdder();
+
+	/**
+	 * @param reachedBlocks the blocks with REACHED positions
+	 * @param threads
+	 */
+	BackwardInduction(BlockSet reachedBlocks, int threads) {
+		if (threads < 1) throw new IllegalArgumentException("Please specify at least one thread");
+		this.reachedBlocks = reachedBlocks;
+		this.threads = threads;
+	}
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * runs the exact passes from 'distance' on, the passes before it are done; returns 0 once a pass solves nothing,
+	 * or the first distance the codes of 'oracle' can not hold
+	 *
+	 * @param oracle
+	 * @param distance
+	 * @return
+	 */
+	int solveExact(Oracle oracle, int distance) {
+		for (; distance < oracle.getMaxDistance(); distance++) {
+			if (pass(oracle, distance, true) == 0) return 0;
+		}
+		return distance;
+	}
+
+	/**
+	 * runs the capped passes after the exact ones, until a pass solves nothing
+	 *
+	 * @param oracle
+	 */
+	void solveCapped(Oracle oracle) {
+		while (pass(oracle, oracle.getMaxDistance(), false) > 0) ;
+	}
+
+	long getWins() {
+		return wins.sum();
+	}
+
+	long getLosses() {
+		return losses.sum();
+	}
+
+	/* internals -------------------------------------------------------------------------------------------------- */
+
+	/* solves the positions won or lost in 'distance' actions, in any number if not 'exact', returns their number */
+	private long pass(Oracle oracle, int distance, boolean exact) {
+		final PositionIndex index = oracle.getIndex();
+		final LongAdder solved = new LongAdder();
+		long startTime = System.currentTimeMillis();
+		reachedBlocks.forEach(threads, block -> {
+			long first = block << BlockSet.BLOCK_BITS;
+			long last = Math.min(first + BlockSet.BLOCK_SIZE, index.size());
+			long count = 0;
+			for (long position = first; position < last; position++) {
+				if (oracle.getCode(position) != Oracle.REACHED) continue;
+				int value = Actions.solve(index.getBoard(position), index.getState(position), index.getColor(position), distance, exact,
+						(board, state, color) -> value(oracle, board, state, color));
+				if (value == Oracle.DRAW) continue;
+				oracle.setCode(position, value > 0 ? Oracle.winCode(value) : Oracle.lossCode(-value));
+				if (value > 0) wins.increment();
+				else losses.increment();
+				count++;
+			}
+			solved.add(count);
+		});
+		System.out.printf("distance %3d%s\t%12d positions\t%8.1f s%n", distance, exact ? "" : "+", solved.sum(), (System.currentTimeMillis() - startTime) / 1e3);
+		return solved.sum();
+	}
+
+	/* returns the value of a successor position for 'color' to play, DRAW if it is not solved */
+	private static int value(Oracle oracle, PylosBitBoard board, PylosGameState state, PylosPlayerColor color) {
+		int value = Oracle.value(oracle.getCode(oracle.getIndex().indexOf(board, state, color)));
+		assert value != Oracle.UNKNOWN : "Successor not reached: " + board.toLong() + " " + state + " " + color;
+		return value;
+	}
+
+}
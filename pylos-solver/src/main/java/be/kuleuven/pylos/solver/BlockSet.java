@@ -0,0 +1,99 @@
+package be.kuleuven.pylos.solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongConsumer;
+
+/**
+ * Set of the blocks of BLOCK_SIZE consecutive position indices, on the heap: a summary of the positions in a file,
+ * so a scan skips the blocks without positions of interest. Threads may add blocks at the same time.
+ */
+class BlockSet {
+
+	static final int BLOCK_BITS = 18;
+	static final long BLOCK_SIZE = 1L << BLOCK_BITS;
+
+	private final AtomicLongArray words;
+
+	/**
+	 * @param positions number of position indices
+	 */
+	BlockSet(long positions) {
+		long blocks = (positions + BLOCK_SIZE - 1) >>> BLOCK_BITS;
+		words = new AtomicLongArray((int) ((blocks + Long.SIZE - 1) / Long.SIZE));
+	}
+
+	/**
+	 * adds the block of the position at 'index'
+	 *
+	 * @param index
+	 */
+	void addPosition(long index) {
+		long block = index >>> BLOCK_BITS;
+		int word = (int) (block >>> 6);
+		long bit = 1L << block;
+		/* most positions fall in a block which is already set, a read avoids contention on the word */
+		if ((words.get(word) & bit) == 0) words.getAndUpdate(word, w -> w | bit);
+	}
+
+	/**
+	 * returns the blocks in the set, ascending
+	 *
+	 * @return
+	 */
+	long[] toArray() {
+		long[] result = new long[(int) size()];
+		int i = 0;
+		for (int word = 0; word < words.length(); word++) {
+			for (long w = words.get(word); w != 0; w &= w - 1) result[i++] = (long) word << 6 | Long.numberOfTrailingZeros(w);
+		}
+		return result;
+	}
+
+	long size() {
+		long size = 0;
+		for (int word = 0; word < words.length(); word++) size += Long.bitCount(words.get(word));
+		return size;
+	}
+
+	void clear() {
+		for (int word = 0; word < words.length(); word++) words.set(word, 0);
+	}
+
+	/**
+	 * calls 'action' for the blocks in the set on 'threads' threads, each block once
+	 *
+	 * @param threads
+	 * @param action  called with the number of a block
+	 */
+	void forEach(int threads, LongConsumer action) {
+		final long[] blocks = toArray();
+		final AtomicInteger next = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			futures.add(executor.submit(() -> {
+				for (int i = next.getAndIncrement(); i < blocks.length; i = next.getAndIncrement()) action.accept(blocks[i]);
+			}));
+		}
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Scan interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Scan failed", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,159 @@
+package be.kuleuven.pylos.solver;
+
+import be.kuleuven.pylos.endgame.Actions;
+import be.kuleuven.pylos.endgame.PositionIndex;
+import be.kuleuven.pylos.game.PylosGameState;
+import be.kuleuven.pylos.game.PylosPlayerColor;
+import be.kuleuven.pylos.game.bits.PylosBitBoard;
+import be.kuleuven.pylos.oracle.Oracle;
+import be.kuleuven.pylos.oracle.PackedValues;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Marks the positions reachable from a start position in an Oracle as REACHED, level by level: level n holds the
+ * positions first reached after n actions.
+ * <p>
+ * The oracle codes are the set of reached positions, a thread claims a position by a compare-and-set from
+ * NOT_REACHED. The current and the next level are bitmaps over all position indices in two memory-mapped files in
+ * the work directory, one bit per position, so the search holds almost nothing on the heap; the files are sparse
+ * until a level writes to them and are deleted afterwards. A BlockSet per level lets the threads skip the empty
+ * parts of the bitmap, and a thread clears the words of the current level it has expanded, so the bitmap is empty
+ * again when it becomes the next level.
+ */
+class BreadthFirstSearch {
+
+	private final Oracle oracle;
+	private final PositionIndex index;
+	private final int threads;
+	private final Path workDirectory;
+
+	private final BlockSet reachedBlocks;
+	private long positions;
+	private int levels;
+
+	/**
+	 * @param oracle        oracle without reached positions
+	 * @param threads
+	 * @param workDirectory directory of the level files
+	 */
+	BreadthFirstSearch(Oracle oracle, int threads, Path workDirectory) {
+		if (threads < 1) throw new IllegalArgumentException("Please specify at least one thread");
+		this.oracle = oracle;
+		this.index = oracle.getIndex();
+		this.threads = threads;
+		this.workDirectory = workDirectory;
+		this.reachedBlocks = new BlockSet(index.size());
+	}
+
+	/* public methods --------------------------------------------------------------------------------------------- */
+
+	/**
+	 * marks the positions reachable from 'color' to play in 'state' on 'board', returns their number
+	 *
+	 * @param board
+	 * @param state
+	 * @param color
+	 * @return
+	 * @throws IOException
+	 */
+	long search(PylosBitBoard board, PylosGameState state, PylosPlayerColor color) throws IOException {
+		long start = index.indexOf(board, state, color);
+		if (start < 0) throw new IllegalArgumentException("Not a position of the game: " + board.toLong() + " " + state + " " + color);
+		Path[] paths = {workDirectory.resolve("level-0.bin"), workDirectory.resolve("level-1.bin")};
+		RandomAccessFile[] files = new RandomAccessFile[paths.length];
+		try {
+			PackedValues[] bitmaps = new PackedValues[paths.length];
+			for (int i = 0; i < paths.length; i++) {
+				files[i] = new RandomAccessFile(paths[i].toFile(), "rw");
+				files[i].setLength(0);
+				files[i].setLength(PackedValues.bytes(index.size(), 1));
+				bitmaps[i] = new PackedValues(files[i].getChannel(), 0, index.size(), 1, true);
+			}
+			BlockSet[] levelBlocks = {new BlockSet(index.size()), new BlockSet(index.size())};
+
+			if (oracle.compareAndSetCode(start, Oracle.NOT_REACHED, Oracle.REACHED)) {
+				reachedBlocks.addPosition(start);
+				bitmaps[0].set(start, 1);
+				levelBlocks[0].addPosition(start);
+				positions++;
+			}
+			long found = positions;
+			for (int level = 0; found > 0; level++) {
+				long startTime = System.currentTimeMillis();
+				final PackedValues current = bitmaps[level & 1];
+				final PackedValues next = bitmaps[~level & 1];
+				final BlockSet nextBlocks = levelBlocks[~level & 1];
+				final LongAdder count = new LongAdder();
+				levelBlocks[level & 1].forEach(threads, block -> expand(block, current, next, nextBlocks, count));
+				levelBlocks[level & 1].clear();
+				System.out.printf("level %3d\t%12d positions\t%8.1f s%n", level, found, (System.currentTimeMillis() - startTime) / 1e3);
+				levels++;
+				found = count.sum();
+				positions += found;
+			}
+		} finally {
+			for (RandomAccessFile file : files) {
+				if (file != null) file.close();
+			}
+			for (Path path : paths) Files.deleteIfExists(path);
+		}
+		return positions;
+	}
+
+	/**
+	 * returns the number of reached positions
+	 *
+	 * @return
+	 */
+	long getPositions() {
+		return positions;
+	}
+
+	int getLevels() {
+		return levels;
+	}
+
+	/**
+	 * returns the blocks with reached positions
+	 *
+	 * @return
+	 */
+	BlockSet getReachedBlocks() {
+		return reachedBlocks;
+	}
+
+	/* internals -------------------------------------------------------------------------------------------------- */
+
+	/* expands the positions of 'block' in 'current', marks their new successors in 'next' */
+	private void expand(long block, PackedValues current, PackedValues next, BlockSet nextBlocks, LongAdder count) {
+		long firstWord = (block << BlockSet.BLOCK_BITS) / Long.SIZE;
+		long lastWord = Math.min(((block + 1) << BlockSet.BLOCK_BITS) / Long.SIZE, (index.size() + Long.SIZE - 1) / Long.SIZE);
+		for (long word = firstWord; word < lastWord; word++) {
+			long bits = current.getWord(word);
+			if (bits == 0) continue;
+			current.setWord(word, 0);
+			for (; bits != 0; bits &= bits - 1) {
+				long position = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+				PylosBitBoard board = index.getBoard(position);
+				Actions.forEach(board, index.getState(position), index.getColor(position), (move, state, color) -> {
+					if (state == PylosGameState.COMPLETED) return true;
+					long successor = index.indexOf(board, state, color);
+					assert successor >= 0 : "Successor not indexed: " + board.toLong() + " " + state + " " + color;
+					if (oracle.compareAndSetCode(successor, Oracle.NOT_REACHED, Oracle.REACHED)) {
+						reachedBlocks.addPosition(successor);
+						next.set(successor, 1);
+						nextBlocks.addPosition(successor);
+						count.increment();
+					}
+					return true;
+				});
+			}
+		}
+	}
+
+}
@@ -0,0 +1,94 @@
+package be.kuleuven.pylos.solver;
+
+import be.kuleuven.pylos.game.PylosGameState;
+import be.kuleuven.pylos.game.PylosPlayerColor;
+import be.kuleuven.pylos.game.bits.PylosBitBoard;
+import be.kuleuven.pylos.oracle.Oracle;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Solves the game offline: a breadth-first search marks the positions reachable from the start, backward induction
+ * gives them their values, the result is an Oracle for PylosPlayerOracle.
+ * <p>
+ * usage: SolverMain [threads] [value bits] [file] [start] [color]
+ * <p>
+ * The oracle holds all 63.6 billion indexed positions, 63.6 GB with the default 8 value bits (win and loss distances
+ * up to 126), 15.9 GB with 2 bits; the search needs two level files of 7.9 GB next to it, sparse where no level
+ * reaches. When the induction finds a longer distance than the value bits hold, the codes are copied to an oracle
+ * with twice the bits, which needs the disk space of both for a while; only beyond Oracle.MAX_VALUE_BITS the
+ * distances are capped. 'start' is a PylosBoard.toLong() board with 'color' to move, to solve only the positions
+ * reachable from it (default the empty board with LIGHT to move).
+ */
+public class SolverMain {
+
+	private static final int DEFAULT_VALUE_BITS = 8;
+	private static final String DEFAULT_FILE = "pylos-oracle.bin";
+
+	public static void main(String[] args) throws IOException {
+		int threads = args.length >= 1 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		int valueBits = args.length >= 2 ? Integer.parseInt(args[1]) : DEFAULT_VALUE_BITS;
+		Path path = Paths.get(args.length >= 3 ? args[2] : DEFAULT_FILE).toAbsolutePath();
+		PylosBitBoard board = PylosBitBoard.fromLong(args.length >= 4 ? Long.parseLong(args[3]) : 0);
+		PylosPlayerColor color = args.length >= 5 ? PylosPlayerColor.valueOf(args[4].toUpperCase()) : PylosPlayerColor.LIGHT;
+
+		long startTime = System.currentTimeMillis();
+		Oracle oracle = Oracle.create(path, valueBits);
+		try {
+			System.out.println("Solving " + path + ": " + oracle.size() + " positions, " + valueBits + " bits per position");
+			BreadthFirstSearch search = new BreadthFirstSearch(oracle, threads, path.getParent());
+			search.search(board, PylosGameState.MOVE, color);
+			System.out.printf("%d reachable positions in %d levels, %.1f s%n", search.getPositions(), search.getLevels(), (System.currentTimeMillis() - startTime) / 1e3);
+
+			BackwardInduction induction = new BackwardInduction(search.getReachedBlocks(), threads);
+			int distance = induction.solveExact(oracle, 1);
+			while (distance > 0 && oracle.getValueBits() < Oracle.MAX_VALUE_BITS) {
+				System.out.println("Distance " + distance + " does not fit in " + oracle.getValueBits() + " bits, widening to " + 2 * oracle.getValueBits() + " bits");
+				oracle = widen(oracle, path, 2 * oracle.getValueBits(), search.getReachedBlocks(), threads);
+				distance = induction.solveExact(oracle, distance);
+			}
+			if (distance > 0) {
+				System.out.println("Distance " + distance + " does not fit in " + oracle.getValueBits() + " bits, longer distances are capped");
+				oracle.setCapped();
+				induction.solveCapped(oracle);
+			}
+			oracle.force();
+			System.out.printf("%d wins, %d losses, %d draws, %.1f s%n", induction.getWins(), induction.getLosses(),
+					search.getPositions() - induction.getWins() - induction.getLosses(), (System.currentTimeMillis() - startTime) / 1e3);
+
+			int value = oracle.probe(board, PylosGameState.MOVE, color);
+			System.out.println(color + " to move " + (value == Oracle.DRAW ? "draws" : value > 0 ? "wins in " + value : "loses in " + -value));
+		} finally {
+			oracle.close();
+		}
+	}
+
+	/**
+	 * copies the codes of the reached positions of 'oracle' to an oracle with 'valueBits' bits, which replaces it in
+	 * the file at 'path'; returns the new oracle, 'oracle' is closed
+	 */
+	private static Oracle widen(Oracle oracle, Path path, int valueBits, BlockSet reachedBlocks, int threads) throws IOException {
+		long startTime = System.currentTimeMillis();
+		Path widePath = path.resolveSibling(path.getFileName() + ".tmp");
+		try (Oracle wide = Oracle.create(widePath, valueBits)) {
+			reachedBlocks.forEach(threads, block -> {
+				long first = block << BlockSet.BLOCK_BITS;
+				long last = Math.min(first + BlockSet.BLOCK_SIZE, oracle.size());
+				for (long position = first; position < last; position++) {
+					int code = oracle.getCode(position);
+					if (code != Oracle.NOT_REACHED) wide.setCode(position, code);
+				}
+			});
+			wide.force();
+		}
+		oracle.close();
+		Files.move(widePath, path, StandardCopyOption.REPLACE_EXISTING);
+		System.out.printf("widened to %d bits\t%8.1f s%n", valueBits, (System.currentTimeMillis() - startTime) / 1e3);
+		return Oracle.open(path, true);
+	}
+
+}
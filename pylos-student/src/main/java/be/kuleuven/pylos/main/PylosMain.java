@@ -6,6 +6,8 @@ import be.kuleuven.pylos.game.PylosGame;
 import be.kuleuven.pylos.game.PylosGameObserver;
 import be.kuleuven.pylos.player.PylosPlayer;
 import be.kuleuven.pylos.player.PylosPlayerObserver;
+import be.kuleuven.pylos.player.PylosPlayerType;
+import be.kuleuven.pylos.player.codes.PlayerFactoryCodes;
 import be.kuleuven.pylos.player.codes.PylosPlayerBestFit;
 import be.kuleuven.pylos.player.codes.PylosPlayerMiniMax;
 import be.kuleuven.pylos.player.codes.PylosPlayerRandomFit;
@@ -21,14 +23,19 @@ public class PylosMain {
 	}
 
 	public void startPerformanceBattles() {
-		Random random = new Random(0);
-		PylosPlayer[] players = new PylosPlayer[]{new PylosPlayerBestFit(), new PylosPlayerMiniMax(2), new PylosPlayerMiniMax(5), new PylosPlayerMiniMax(8)};
+		PylosPlayerType student = new PylosPlayerType("Student - Best Fit") {
+			@Override
+			public PylosPlayer create() {
+				return new StudentPlayerBestFit();
+			}
+		};
+		PlayerFactoryCodes codes = new PlayerFactoryCodes();
+		PylosPlayerType[] players = new PylosPlayerType[]{codes.getType("CODeS - Best Fit"), codes.getType("CODeS - Level 2"), codes.getType("CODeS - Level 5"), codes.getType("CODeS - Level 8")};
+		int threads = Runtime.getRuntime().availableProcessors();
 
 		int[] wins = new int[players.length];
 		for (int i = 0; i < players.length; i++) {
-			PylosPlayer player = new StudentPlayerBestFit();
-			PylosPlayer playerDark = players[i];
-			double[] results = Battle.play(player, playerDark, 1000);
+			double[] results = Battle.play(student, players[i], 1000, 0, threads, true);
 			wins[i] = (int) Math.round(results[0] * 100);
 		}
 